@@ -0,0 +1,98 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Runs the normalizer benchmarks with the gc profiler attached and prints, per benchmark and
+ * parameter combination, ops/s, ns/doc and the allocation rate. Accepts the usual JMH command line
+ * options, e.g. a benchmark regular expression or {@code -p windowSize=1000}.
+ */
+public final class BenchmarkRunner {
+
+  private static final String ALLOC_RATE = "gc.alloc.rate";
+  private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+  private BenchmarkRunner() {}
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options =
+        new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+    Collection<RunResult> results = new Runner(options).run();
+
+    System.out.println();
+    System.out.printf(
+        "%-60s %-70s %14s %10s %12s %10s%n",
+        "Benchmark", "Params", "ops/s", "ns/doc", "alloc MB/s", "alloc B/op");
+    for (RunResult result : results) {
+      String benchmark = result.getParams().getBenchmark();
+      double nsPerOp = result.getPrimaryResult().getScore();
+      int windowSize = Integer.parseInt(result.getParams().getParam("windowSize"));
+      System.out.printf(
+          "%-60s %-70s %14.0f %10.2f %12.2f %10.1f%n",
+          benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1),
+          params(result),
+          1_000_000_000d / nsPerOp,
+          nsPerOp / windowSize,
+          secondary(result, ALLOC_RATE),
+          secondary(result, ALLOC_RATE_NORM));
+    }
+  }
+
+  private static String params(RunResult result) {
+    StringBuilder params = new StringBuilder();
+    for (String key : result.getParams().getParamsKeys()) {
+      if (params.length() > 0) {
+        params.append(',');
+      }
+      params.append(key).append('=').append(result.getParams().getParam(key));
+    }
+    return params.toString();
+  }
+
+  private static double secondary(RunResult result, String name) {
+    for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+      // gc profiler labels are prefixed with a middle dot, match on the suffix only
+      if (entry.getKey().endsWith(name)) {
+        return entry.getValue().getScore();
+      }
+    }
+    return Double.NaN;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.benchmark;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Shapes of first pass score windows the normalizers are benchmarked against. */
+public enum ScoreDistribution {
+  /** scores spread evenly over the range, e.g. a match_all with a mild boost. */
+  flat {
+    @Override
+    float next(Random random) {
+      return 0.5f + random.nextFloat() * 15.0f;
+    }
+  },
+  /** long tailed BM25 like scores, few strong hits and many weak ones. */
+  skewed {
+    @Override
+    float next(Random random) {
+      return (float) Math.exp(1.0 + 0.75 * random.nextGaussian());
+    }
+  },
+  /** every doc has the same score, e.g. a constant_score or filter only query. */
+  all_equal {
+    @Override
+    float next(Random random) {
+      return 4.2f;
+    }
+  };
+
+  private static final long SEED = 42L;
+
+  abstract float next(Random random);
+
+  /**
+   * generates a window of scores sorted in descending order, the way the query phase hands it to
+   * the rescorer.
+   *
+   * @param windowSize number of docs in the window
+   * @return scores sorted in descending order
+   */
+  public float[] scores(int windowSize) {
+    Random random = new Random(SEED);
+    float[] scores = new float[windowSize];
+    for (int i = 0; i < windowSize; i++) {
+      scores[i] = next(random);
+    }
+    Arrays.sort(scores);
+    for (int i = 0, j = windowSize - 1; i < j; i++, j--) {
+      float tmp = scores[i];
+      scores[i] = scores[j];
+      scores[j] = tmp;
+    }
+    return scores;
+  }
+
+  /**
+   * shuffles the window in place, e.g. to mimic a window left in doc id order by an earlier
+   * rescorer.
+   *
+   * @param scores scores to shuffle
+   */
+  public static void shuffle(float[] scores) {
+    Random random = new Random(SEED);
+    for (int i = scores.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      float tmp = scores[i];
+      scores[i] = scores[j];
+      scores[j] = tmp;
+    }
+  }
+
+  /**
+   * creates top docs holding the given scores, doc ids follow the window position.
+   *
+   * @param scores scores of the window
+   * @return top docs over the given scores
+   */
+  public static TopDocs topDocs(float[] scores) {
+    ScoreDoc[] scoreDocs = new ScoreDoc[scores.length];
+    for (int i = 0; i < scores.length; i++) {
+      scoreDocs[i] = new ScoreDoc(i, scores[i]);
+    }
+    return new TopDocs(new TotalHits(scores.length, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  /**
+   * restores the window to its first pass scores, normalizers rewrite the scores in place.
+   *
+   * @param topDocs top docs to reset
+   * @param scores first pass scores
+   */
+  public static void reset(TopDocs topDocs, float[] scores) {
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    for (int i = 0; i < scoreDocs.length; i++) {
+      scoreDocs[i].score = scores[i];
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.benchmark;
+
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.helper.WindowExecutor;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.PipelineStage;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.elasticsearch.search.rescore.RescoreContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the full {@link ScoreNormalizerRescorer#rescore} path, with the context built by {@link
+ * NormalizerRescorerBuilder} the same way a shard builds it for a search request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreNormalizerRescorerBenchmark {
+
+  // -p normalizerType=pipeline runs log1p, z_score and sigmoid as one pipeline
+  @Param({"min_max", "z_score", "rrf", "percentile", "robust_z", "sigmoid", "softmax"})
+  private String normalizerType;
+
+  @Param({"10", "100", "1000", "10000"})
+  private int windowSize;
+
+  @Param({"flat", "skewed", "all_equal"})
+  private ScoreDistribution distribution;
+
+  @Param({"sum", "multiply", "increase_by_percent"})
+  private NormalizerFactorMathOp factorMode;
+
+  // sigmoid and softmax only, run with -p fastExp=true -p normalizerType=sigmoid,softmax
+  @Param({"false"})
+  private boolean fastExp;
+
+  // threads of the chunk pool of min_max and z_score, 0 runs every window on the benchmark
+  // thread. Windows are split from 2 chunks on, run with e.g. -p windowSize=50000
+  @Param({"0"})
+  private int parallelism;
+
+  private ExecutorService pool;
+  private IndexSearcher searcher;
+  private RescoreContext context;
+  private float[] scores;
+  private TopDocs topDocs;
+
+  @Setup
+  public void setup() throws IOException {
+    scores = distribution.scores(windowSize);
+    topDocs = ScoreDistribution.topDocs(scores);
+    searcher = new IndexSearcher(new MultiReader());
+    List<PipelineStage> pipeline =
+        "pipeline".equals(normalizerType)
+            ? Arrays.asList(
+                new PipelineStage(PipelineStage.Type.log1p),
+                new PipelineStage(PipelineStage.Type.z_score),
+                new PipelineStage(PipelineStage.Type.sigmoid))
+            : Collections.emptyList();
+    context =
+        new NormalizerRescorerBuilder()
+            .setNormalizerType(normalizerType)
+            .setPipeline(pipeline)
+            .setMinScore(1.0f)
+            .setMaxScore(5.0f)
+            .setFactor(0.5f)
+            .setFactorMode(factorMode)
+            .setOnScoresSame("avg")
+            .setFastExp(fastExp)
+            .windowSize(windowSize)
+            .buildContext(null);
+    if (parallelism > 0) {
+      pool = Executors.newFixedThreadPool(parallelism);
+      WindowExecutor.init(new WindowExecutor(pool, parallelism, 0));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    WindowExecutor.init(null);
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Benchmark
+  public TopDocs rescore() throws IOException {
+    ScoreDistribution.reset(topDocs, scores);
+    return ScoreNormalizerRescorer.INSTANCE.rescore(topDocs, searcher, context);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.benchmark;
+
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.helper.Normalizer;
+import org.bkatwal.elasticsearch.plugin.helper.ZScoreNormalizer;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link ZScoreNormalizer#normalize} for every factor_mode. on_score_same does not apply
+ * to z_score. Each invocation first restores the first pass scores, that reset is a plain linear
+ * copy and is part of every measured number.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZScoreNormalizerBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  private int windowSize;
+
+  @Param({"flat", "skewed", "all_equal"})
+  private ScoreDistribution distribution;
+
+  @Param({"sum", "multiply", "increase_by_percent"})
+  private NormalizerFactorMathOp factorMode;
+
+  private final Normalizer normalizer = new ZScoreNormalizer();
+  private ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context;
+  private float[] scores;
+  private TopDocs topDocs;
+
+  @Setup
+  public void setup() {
+    scores = distribution.scores(windowSize);
+    topDocs = ScoreDistribution.topDocs(scores);
+    context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            windowSize,
+            NormalizerType.z_score,
+            1.0f,
+            5.0f,
+            0.5f,
+            factorMode,
+            MinMaxSameScoreStrategy.avg);
+  }
+
+  @Benchmark
+  public TopDocs normalize() {
+    ScoreDistribution.reset(topDocs, scores);
+    return normalizer.normalize(topDocs, context);
+  }
+}
@@ -0,0 +1,210 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.MergedHitsNormalizer;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerScope;
+import org.bkatwal.elasticsearch.plugin.rescorer.StatsSource;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.CompositeIndicesRequest;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ObjectParser;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * runs several searches, normalizes the hits of each with the `normalizer` and merges them into
+ * one ranking, see {@link TransportFusedSearchAction}.
+ */
+public class FusedSearchRequest extends ActionRequest implements CompositeIndicesRequest {
+
+  private static final ParseField FROM = new ParseField("from");
+  private static final ParseField SIZE = new ParseField("size");
+  private static final ParseField NORMALIZER = new ParseField("normalizer");
+  private static final ParseField SEARCHES = new ParseField("searches");
+  private static final int DEFAULT_SIZE = 10;
+
+  private static final ObjectParser<FusedSearchRequest, Void> PARSER =
+      new ObjectParser<>(FusedSearchAction.REST_NAME, FusedSearchRequest::new);
+
+  static {
+    PARSER.declareInt(FusedSearchRequest::setFrom, FROM);
+    PARSER.declareInt(FusedSearchRequest::setSize, SIZE);
+    PARSER.declareObject(
+        FusedSearchRequest::setNormalizer,
+        (p, c) -> NormalizerRescorerBuilder.fromXContent(p),
+        NORMALIZER);
+    PARSER.declareObjectArray(
+        FusedSearchRequest::setSearches, (p, c) -> WeightedSearch.fromXContent(p), SEARCHES);
+  }
+
+  private List<WeightedSearch> searches = new ArrayList<>();
+  private NormalizerRescorerBuilder normalizer;
+  private int from;
+  private int size = DEFAULT_SIZE;
+
+  public FusedSearchRequest() {}
+
+  public FusedSearchRequest(StreamInput in) throws IOException {
+    super(in);
+    searches = in.readList(WeightedSearch::new);
+    normalizer = in.readOptionalWriteable(NormalizerRescorerBuilder::new);
+    from = in.readVInt();
+    size = in.readVInt();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    super.writeTo(out);
+    out.writeList(searches);
+    out.writeOptionalWriteable(normalizer);
+    out.writeVInt(from);
+    out.writeVInt(size);
+  }
+
+  public static FusedSearchRequest fromXContent(XContentParser parser) throws IOException {
+    return PARSER.parse(parser, null);
+  }
+
+  @Override
+  public ActionRequestValidationException validate() {
+    ActionRequestValidationException e = null;
+    if (searches.isEmpty()) {
+      e = addValidationError("[" + SEARCHES.getPreferredName() + "] must not be empty", e);
+    }
+    if (normalizer == null) {
+      e = addValidationError("[" + NORMALIZER.getPreferredName() + "] is required", e);
+    } else {
+      String option = shardOption(normalizer);
+      if (option != null) {
+        e =
+            addValidationError(
+                "["
+                    + NORMALIZER.getPreferredName()
+                    + "] does not support ["
+                    + option
+                    + "], the hits are normalized on the coordinating node",
+                e);
+      }
+    }
+    if (from < 0) {
+      e = addValidationError("[" + FROM.getPreferredName() + "] must not be negative", e);
+    }
+    if (size < 0) {
+      e = addValidationError("[" + SIZE.getPreferredName() + "] must not be negative", e);
+    }
+    for (int i = 0; i < searches.size(); i++) {
+      WeightedSearch search = searches.get(i);
+      if (!(search.getWeight() > 0) || Float.isInfinite(search.getWeight())) {
+        e = addValidationError("[weight] of search [" + i + "] must be a positive number", e);
+      }
+      SearchSourceBuilder source = search.getRequest().source();
+      if (source == null) {
+        continue;
+      }
+      if (source.from() > 0) {
+        e =
+            addValidationError(
+                "[from] of search [" + i + "] must not be set, page the fused hits instead", e);
+      }
+      if (!MergedHitsNormalizer.sortsByScore(source)) {
+        e = addValidationError("search [" + i + "] must sort by score", e);
+      }
+    }
+    return e;
+  }
+
+  /**
+   * @return name of an option of the normalizer that needs the shard, e.g. its doc values or the
+   *     hits it does not return, null if there is none
+   */
+  private static String shardOption(NormalizerRescorerBuilder normalizer) {
+    if (normalizer.getScope() == NormalizerScope.global) {
+      return "scope";
+    }
+    if (normalizer.isCacheStats()) {
+      return "cache_stats";
+    }
+    if (normalizer.getStaticStats() != null) {
+      return "static_stats";
+    }
+    if (normalizer.getStatsSource() == StatsSource.all_hits) {
+      return "stats_source";
+    }
+    if (!normalizer.getFields().isEmpty()) {
+      return "fields";
+    }
+    return null;
+  }
+
+  public FusedSearchRequest addSearch(WeightedSearch search) {
+    searches.add(search);
+    return this;
+  }
+
+  private void setSearches(List<WeightedSearch> searches) {
+    this.searches = new ArrayList<>(searches);
+  }
+
+  public List<WeightedSearch> getSearches() {
+    return searches;
+  }
+
+  public FusedSearchRequest setNormalizer(NormalizerRescorerBuilder normalizer) {
+    this.normalizer = normalizer;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder getNormalizer() {
+    return normalizer;
+  }
+
+  public FusedSearchRequest setFrom(int from) {
+    this.from = from;
+    return this;
+  }
+
+  public int getFrom() {
+    return from;
+  }
+
+  public FusedSearchRequest setSize(int size) {
+    this.size = size;
+    return this;
+  }
+
+  public int getSize() {
+    return size;
+  }
+}
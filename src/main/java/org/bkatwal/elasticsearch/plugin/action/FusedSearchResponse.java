@@ -0,0 +1,174 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.SearchHits;
+
+import java.io.IOException;
+import java.util.List;
+
+/** fused hits of a `_fused_search` and what each of its searches matched. */
+public class FusedSearchResponse extends ActionResponse implements ToXContentObject {
+
+  private final long tookInMillis;
+  private final List<SearchSummary> searches;
+  private final SearchHits hits;
+
+  public FusedSearchResponse(long tookInMillis, List<SearchSummary> searches, SearchHits hits) {
+    this.tookInMillis = tookInMillis;
+    this.searches = searches;
+    this.hits = hits;
+  }
+
+  public FusedSearchResponse(StreamInput in) throws IOException {
+    super(in);
+    tookInMillis = in.readVLong();
+    searches = in.readList(SearchSummary::new);
+    hits = new SearchHits(in);
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeVLong(tookInMillis);
+    out.writeList(searches);
+    hits.writeTo(out);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject();
+    builder.field("took", tookInMillis);
+    builder.field("timed_out", isTimedOut());
+    builder.startArray("searches");
+    for (SearchSummary search : searches) {
+      search.toXContent(builder, params);
+    }
+    builder.endArray();
+    hits.toXContent(builder, params);
+    builder.endObject();
+    return builder;
+  }
+
+  public long getTookInMillis() {
+    return tookInMillis;
+  }
+
+  public List<SearchSummary> getSearches() {
+    return searches;
+  }
+
+  public SearchHits getHits() {
+    return hits;
+  }
+
+  /** @return whether a search timed out, its hits are then partial */
+  public boolean isTimedOut() {
+    for (SearchSummary search : searches) {
+      if (search.timedOut) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** took, shards and total hits of one of the searches, without its hits. */
+  public static class SearchSummary implements Writeable, ToXContentObject {
+
+    private final long tookInMillis;
+    private final boolean timedOut;
+    private final int totalShards;
+    private final int successfulShards;
+    private final int skippedShards;
+    private final int failedShards;
+    private final TotalHits totalHits;
+
+    public SearchSummary(SearchResponse response) {
+      tookInMillis = response.getTook().millis();
+      timedOut = response.isTimedOut();
+      totalShards = response.getTotalShards();
+      successfulShards = response.getSuccessfulShards();
+      skippedShards = response.getSkippedShards();
+      failedShards = response.getFailedShards();
+      totalHits = response.getHits().getTotalHits();
+    }
+
+    public SearchSummary(StreamInput in) throws IOException {
+      tookInMillis = in.readVLong();
+      timedOut = in.readBoolean();
+      totalShards = in.readVInt();
+      successfulShards = in.readVInt();
+      skippedShards = in.readVInt();
+      failedShards = in.readVInt();
+      totalHits = in.readBoolean() ? Lucene.readTotalHits(in) : null;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+      out.writeVLong(tookInMillis);
+      out.writeBoolean(timedOut);
+      out.writeVInt(totalShards);
+      out.writeVInt(successfulShards);
+      out.writeVInt(skippedShards);
+      out.writeVInt(failedShards);
+      out.writeBoolean(totalHits != null);
+      if (totalHits != null) {
+        Lucene.writeTotalHits(out, totalHits);
+      }
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+      builder.startObject();
+      builder.field("took", tookInMillis);
+      builder.field("timed_out", timedOut);
+      builder.startObject("_shards");
+      builder.field("total", totalShards);
+      builder.field("successful", successfulShards);
+      builder.field("skipped", skippedShards);
+      builder.field("failed", failedShards);
+      builder.endObject();
+      if (totalHits != null) {
+        builder.startObject("total");
+        builder.field("value", totalHits.value);
+        builder.field("relation", totalHits.relation == TotalHits.Relation.EQUAL_TO ? "eq" : "gte");
+        builder.endObject();
+      }
+      builder.endObject();
+      return builder;
+    }
+
+    public TotalHits getTotalHits() {
+      return totalHits;
+    }
+  }
+}
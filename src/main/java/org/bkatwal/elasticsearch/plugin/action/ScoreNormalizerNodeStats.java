@@ -0,0 +1,72 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.bkatwal.elasticsearch.plugin.stats.NormalizerTypeStats;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+/** score_normalizer metrics of one node. */
+public class ScoreNormalizerNodeStats extends BaseNodeResponse implements ToXContentFragment {
+
+  private final List<NormalizerTypeStats> stats;
+
+  public ScoreNormalizerNodeStats(DiscoveryNode node, List<NormalizerTypeStats> stats) {
+    super(node);
+    this.stats = stats;
+  }
+
+  public ScoreNormalizerNodeStats(StreamInput in) throws IOException {
+    super(in);
+    stats = in.readList(NormalizerTypeStats::new);
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    super.writeTo(out);
+    out.writeList(stats);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.field("name", getNode().getName());
+    builder.startObject("score_normalizer");
+    for (NormalizerTypeStats typeStats : stats) {
+      typeStats.toXContent(builder, params);
+    }
+    builder.endObject();
+    return builder;
+  }
+
+  public List<NormalizerTypeStats> getStats() {
+    return stats;
+  }
+}
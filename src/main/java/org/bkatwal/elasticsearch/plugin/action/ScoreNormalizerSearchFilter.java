@@ -0,0 +1,425 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.bkatwal.elasticsearch.plugin.aggregation.InternalScoreStats;
+import org.bkatwal.elasticsearch.plugin.aggregation.ScoreStatsAggregationBuilder;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.bkatwal.elasticsearch.plugin.rescorer.MergedHitsNormalizer;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerScope;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.action.support.ActionFilter;
+import org.elasticsearch.action.support.ActionFilterChain;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.SearchProfileShardResults;
+import org.elasticsearch.search.rescore.RescorerBuilder;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * prepares `score_normalizer` rescorers on the coordinating node, before the search is sent to
+ * the shards.
+ *
+ * <p>For `global` scope it runs the statistics pre-phase, a size 0 search with the same query and
+ * a `score_stats` aggregation over the window every shard hands to the rescorer. The merged
+ * statistics are put on the rescorers, so every shard normalizes against the same bounds.
+ *
+ * <p>For `cache_stats` it puts a key of everything that decides the scores the rescorer sees on
+ * the rescorer, the shards cache the statistics of their window under it.
+ *
+ * <p>For `coordinator` scope it sends the shards a copy of the request without the rescorer and
+ * normalizes the merged hits of the response.
+ */
+public class ScoreNormalizerSearchFilter implements ActionFilter {
+
+  static final String STATS_AGGREGATION = "_score_normalizer_global_stats";
+  private static final int DEFAULT_SIZE = 10;
+  private static final int DEFAULT_WINDOW_SIZE = 10;
+
+  private final Client client;
+  private final ClusterService clusterService;
+
+  public ScoreNormalizerSearchFilter(Client client, ClusterService clusterService) {
+    this.client = client;
+    this.clusterService = clusterService;
+  }
+
+  @Override
+  public int order() {
+    return 0;
+  }
+
+  @Override
+  public <Request extends ActionRequest, Response extends ActionResponse> void apply(
+      Task task,
+      String action,
+      Request request,
+      ActionListener<Response> listener,
+      ActionFilterChain<Request, Response> chain) {
+    if (!SearchAction.NAME.equals(action)) {
+      chain.proceed(task, action, request, listener);
+      return;
+    }
+    SearchRequest searchRequest = (SearchRequest) request;
+    CoordinatorRescorer coordinatorRescorer;
+    List<NormalizerRescorerBuilder> rescorers;
+    try {
+      coordinatorRescorer = coordinatorRescorer(searchRequest);
+      if (coordinatorRescorer != null) {
+        searchRequest = coordinatorRescorer.getShardRequest();
+      }
+      setStatsCacheKeys(searchRequest);
+      rescorers = globalRescorers(searchRequest.source());
+    } catch (IllegalArgumentException | IOException e) {
+      listener.onFailure(e);
+      return;
+    }
+    ActionListener<Response> responseListener =
+        coordinatorRescorer == null ? listener : coordinatorRescorer.normalizing(listener);
+    @SuppressWarnings("unchecked")
+    Request shardRequest = (Request) searchRequest;
+    if (rescorers.isEmpty()) {
+      chain.proceed(task, action, shardRequest, responseListener);
+      return;
+    }
+
+    SearchRequest statsRequest = statsRequest(searchRequest);
+    statsRequest.setParentTask(new TaskId(clusterService.localNode().getId(), task.getId()));
+    client.search(
+        statsRequest,
+        ActionListener.wrap(
+            response -> {
+              ScoreStats stats = globalStats(response);
+              // without statistics the shards fall back to their own windows
+              if (stats != null) {
+                for (NormalizerRescorerBuilder rescorer : rescorers) {
+                  rescorer.setGlobalStats(stats);
+                }
+              }
+              chain.proceed(task, action, shardRequest, responseListener);
+            },
+            responseListener::onFailure));
+  }
+
+  /**
+   * @return merged statistics of the pre-phase, null if it returned none, e.g. when the indices
+   *     matched nothing or every shard was skipped or failed
+   */
+  static ScoreStats globalStats(SearchResponse response) {
+    Aggregations aggregations = response.getAggregations();
+    if (aggregations == null) {
+      return null;
+    }
+    InternalScoreStats stats = aggregations.get(STATS_AGGREGATION);
+    return stats == null ? null : stats.getStats();
+  }
+
+  /**
+   * finds a `score_normalizer` rescorer with `coordinator` scope, the shards skip it and the
+   * coordinating node normalizes the merged hits of the response instead. The shards get a copy
+   * of the request without the rescorer that returns the hits from 0 to from + size, so the page
+   * is normalized as part of the same set as the pages before it. The request itself is left as
+   * it is, a retry or another filter still sees its own page.
+   *
+   * @return the rescorer, the page of the search and the request for the shards, null if there
+   *     is no such rescorer
+   * @throws IllegalArgumentException if the rescorer is not the last one, the search does not
+   *     sort by score or scrolls, as later pages do not pass the coordinating node again
+   */
+  static CoordinatorRescorer coordinatorRescorer(SearchRequest searchRequest) {
+    SearchSourceBuilder source = searchRequest.source();
+    if (source == null || source.rescores() == null) {
+      return null;
+    }
+    List<RescorerBuilder> rescores = source.rescores();
+    for (int i = 0; i < rescores.size(); i++) {
+      RescorerBuilder<?> rescorer = rescores.get(i);
+      if (!(rescorer instanceof NormalizerRescorerBuilder)
+          || ((NormalizerRescorerBuilder) rescorer).getScope() != NormalizerScope.coordinator) {
+        continue;
+      }
+      if (i < rescores.size() - 1) {
+        throw new IllegalArgumentException(
+            "`scope` [coordinator] is only supported on the last rescorer of the request");
+      }
+      if (!MergedHitsNormalizer.sortsByScore(source) || searchRequest.scroll() != null) {
+        throw new IllegalArgumentException(
+            "`scope` [coordinator] requires a search that sorts by score and does not scroll");
+      }
+      int from = Math.max(source.from(), 0);
+      int size = source.size() < 0 ? DEFAULT_SIZE : source.size();
+      SearchSourceBuilder shardSource = source.copyWithNewSlice(source.slice()).clearRescorers();
+      for (int j = 0; j < i; j++) {
+        shardSource.addRescorer(rescores.get(j));
+      }
+      shardSource.from(0).size(from + size);
+      SearchRequest shardRequest = new SearchRequest(searchRequest).source(shardSource);
+      shardRequest.setParentTask(searchRequest.getParentTask());
+      return new CoordinatorRescorer(
+          (NormalizerRescorerBuilder) rescorer, from, size, shardRequest);
+    }
+    return null;
+  }
+
+  /**
+   * `score_normalizer` rescorer with `coordinator` scope, the page of the search and the request
+   * sent to the shards in its place.
+   */
+  static final class CoordinatorRescorer {
+
+    private final NormalizerRescorerBuilder rescorer;
+    private final int from;
+    private final int size;
+    private final SearchRequest shardRequest;
+
+    CoordinatorRescorer(
+        NormalizerRescorerBuilder rescorer, int from, int size, SearchRequest shardRequest) {
+      this.rescorer = rescorer;
+      this.from = from;
+      this.size = size;
+      this.shardRequest = shardRequest;
+    }
+
+    NormalizerRescorerBuilder getRescorer() {
+      return rescorer;
+    }
+
+    /** @return copy of the request without the rescorer, returning the hits up to the page */
+    SearchRequest getShardRequest() {
+      return shardRequest;
+    }
+
+    /** @return listener that normalizes the hits of the search response before passing it on */
+    @SuppressWarnings("unchecked")
+    <Response extends ActionResponse> ActionListener<Response> normalizing(
+        ActionListener<Response> listener) {
+      return ActionListener.map(
+          listener, response -> (Response) normalize((SearchResponse) response));
+    }
+
+    /**
+     * normalizes the hits from 0 to from + size as one set, after the coordinating node merged
+     * the hits of the shards, and cuts the page out of them.
+     *
+     * @return response with the normalized hits of the page, best first
+     */
+    SearchResponse normalize(SearchResponse response) throws IOException {
+      SearchHits hits = response.getHits();
+      if (hits.getHits().length == 0) {
+        return response;
+      }
+      SearchHit[] normalized =
+          MergedHitsNormalizer.normalize(hits.getHits(), rescorer, "the search");
+      SearchHit[] page =
+          Arrays.copyOfRange(
+              normalized,
+              Math.min(from, normalized.length),
+              Math.min(from + size, normalized.length));
+      Map<String, ProfileShardResult> profile = response.getProfileResults();
+      SearchResponseSections sections =
+          new SearchResponseSections(
+              new SearchHits(
+                  page,
+                  hits.getTotalHits(),
+                  normalized[0].getScore(),
+                  hits.getSortFields(),
+                  hits.getCollapseField(),
+                  collapseValues(hits, page)),
+              response.getAggregations(),
+              response.getSuggest(),
+              response.isTimedOut(),
+              response.isTerminatedEarly(),
+              profile == null || profile.isEmpty() ? null : new SearchProfileShardResults(profile),
+              response.getNumReducePhases());
+      return new SearchResponse(
+          sections,
+          response.getScrollId(),
+          response.getTotalShards(),
+          response.getSuccessfulShards(),
+          response.getSkippedShards(),
+          response.getTook().millis(),
+          response.getShardFailures(),
+          response.getClusters());
+    }
+
+    /** @return collapse values of the hits of the page, they follow the hits they belong to */
+    private static Object[] collapseValues(SearchHits hits, SearchHit[] page) {
+      Object[] values = hits.getCollapseValues();
+      if (values == null || values.length != hits.getHits().length) {
+        return values;
+      }
+      Map<SearchHit, Integer> positions = new IdentityHashMap<>(values.length);
+      for (int i = 0; i < values.length; i++) {
+        positions.put(hits.getHits()[i], i);
+      }
+      Object[] pageValues = new Object[page.length];
+      for (int i = 0; i < page.length; i++) {
+        pageValues[i] = values[positions.get(page[i])];
+      }
+      return pageValues;
+    }
+  }
+
+  /**
+   * sets the statistics cache key on every `score_normalizer` rescorer with `cache_stats`. The key
+   * hashes the query, post filter, min score, index boosts, search type, the rescorers before it
+   * and the rescorer itself with its window size and normalizer options, but not from or size, so
+   * every page of a search shares it and searches that normalize differently do not.
+   */
+  static void setStatsCacheKeys(SearchRequest searchRequest) throws IOException {
+    SearchSourceBuilder source = searchRequest.source();
+    if (source == null || source.rescores() == null) {
+      return;
+    }
+    List<RescorerBuilder> rescores = source.rescores();
+    for (int i = 0; i < rescores.size(); i++) {
+      RescorerBuilder<?> rescorer = rescores.get(i);
+      if (!(rescorer instanceof NormalizerRescorerBuilder)
+          || !((NormalizerRescorerBuilder) rescorer).isCacheStats()) {
+        continue;
+      }
+      // a key left by an earlier pass must not end up in its own hash
+      ((NormalizerRescorerBuilder) rescorer).setStatsCacheKey(null);
+      try (BytesStreamOutput out = new BytesStreamOutput()) {
+        out.writeOptionalNamedWriteable(source.query());
+        out.writeOptionalNamedWriteable(source.postFilter());
+        out.writeOptionalFloat(source.minScore());
+        out.writeList(source.indexBoosts());
+        out.writeByte(searchRequest.searchType().id());
+        for (int j = 0; j <= i; j++) {
+          out.writeNamedWriteable(rescores.get(j));
+        }
+        BytesRef bytes = out.bytes().toBytesRef();
+        MurmurHash3.Hash128 hash =
+            MurmurHash3.hash128(
+                bytes.bytes, bytes.offset, bytes.length, 0, new MurmurHash3.Hash128());
+        ((NormalizerRescorerBuilder) rescorer)
+            .setStatsCacheKey(String.format(Locale.ROOT, "%016x%016x", hash.h1, hash.h2));
+      }
+    }
+  }
+
+  /**
+   * @return `score_normalizer` rescorers of the request with `global` scope
+   * @throws IllegalArgumentException if a rescorer with `global` scope is not the first rescorer,
+   *     the pre-phase only sees the scores of the query
+   */
+  static List<NormalizerRescorerBuilder> globalRescorers(SearchSourceBuilder source) {
+    List<NormalizerRescorerBuilder> rescorers = new ArrayList<>();
+    if (source == null || source.rescores() == null) {
+      return rescorers;
+    }
+    List<RescorerBuilder> rescores = source.rescores();
+    for (int i = 0; i < rescores.size(); i++) {
+      RescorerBuilder<?> rescorer = rescores.get(i);
+      if (!(rescorer instanceof NormalizerRescorerBuilder)
+          || ((NormalizerRescorerBuilder) rescorer).getScope() != NormalizerScope.global) {
+        continue;
+      }
+      if (i > 0) {
+        throw new IllegalArgumentException(
+            "`scope` [global] is only supported on the first rescorer of the request");
+      }
+      rescorers.add((NormalizerRescorerBuilder) rescorer);
+    }
+    return rescorers;
+  }
+
+  /**
+   * builds the pre-phase search. It scores the same hits as the search, i.e. the query with the
+   * post filter applied as a non scoring clause, and collects the top window of every shard,
+   * which is the larger of from + size and the rescore window sizes.
+   */
+  static SearchRequest statsRequest(SearchRequest searchRequest) {
+    SearchSourceBuilder source = searchRequest.source();
+    int from = Math.max(source.from(), 0);
+    int size = source.size() < 0 ? DEFAULT_SIZE : source.size();
+    int windowSize = from + size;
+    for (RescorerBuilder<?> rescorer : source.rescores()) {
+      Integer rescoreWindow = rescorer.windowSize();
+      windowSize =
+          Math.max(windowSize, rescoreWindow == null ? DEFAULT_WINDOW_SIZE : rescoreWindow);
+    }
+
+    QueryBuilder query = source.query();
+    if (source.postFilter() != null) {
+      query =
+          QueryBuilders.boolQuery()
+              .must(query == null ? QueryBuilders.matchAllQuery() : query)
+              .filter(source.postFilter());
+    }
+    SearchSourceBuilder statsSource =
+        new SearchSourceBuilder()
+            .query(query)
+            .size(0)
+            .trackTotalHits(false)
+            .timeout(source.timeout())
+            .terminateAfter(source.terminateAfter())
+            .aggregation(
+                new ScoreStatsAggregationBuilder(STATS_AGGREGATION).windowSize(windowSize));
+    if (source.minScore() != null) {
+      statsSource.minScore(source.minScore());
+    }
+    for (SearchSourceBuilder.IndexBoost indexBoost : source.indexBoosts()) {
+      statsSource.indexBoost(indexBoost.getIndex(), indexBoost.getBoost());
+    }
+
+    SearchRequest statsRequest =
+        new SearchRequest(searchRequest.indices(), statsSource)
+            .indicesOptions(searchRequest.indicesOptions())
+            .routing(searchRequest.routing())
+            .preference(searchRequest.preference())
+            .searchType(searchRequest.searchType());
+    if (searchRequest.allowPartialSearchResults() != null) {
+      statsRequest.allowPartialSearchResults(searchRequest.allowPartialSearchResults());
+    }
+    return statsRequest;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+public class ScoreNormalizerStatsResponse extends BaseNodesResponse<ScoreNormalizerNodeStats>
+    implements ToXContentFragment {
+
+  public ScoreNormalizerStatsResponse(StreamInput in) throws IOException {
+    super(in);
+  }
+
+  public ScoreNormalizerStatsResponse(
+      ClusterName clusterName,
+      List<ScoreNormalizerNodeStats> nodes,
+      List<FailedNodeException> failures) {
+    super(clusterName, nodes, failures);
+  }
+
+  @Override
+  protected List<ScoreNormalizerNodeStats> readNodesFrom(StreamInput in) throws IOException {
+    return in.readList(ScoreNormalizerNodeStats::new);
+  }
+
+  @Override
+  protected void writeNodesTo(StreamOutput out, List<ScoreNormalizerNodeStats> nodes)
+      throws IOException {
+    out.writeList(nodes);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject("nodes");
+    for (ScoreNormalizerNodeStats nodeStats : getNodes()) {
+      builder.startObject(nodeStats.getNode().getId());
+      nodeStats.toXContent(builder, params);
+      builder.endObject();
+    }
+    builder.endObject();
+    return builder;
+  }
+}
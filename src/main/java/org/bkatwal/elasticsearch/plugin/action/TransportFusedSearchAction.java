@@ -0,0 +1,226 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.bkatwal.elasticsearch.plugin.action.FusedSearchResponse.SearchSummary;
+import org.bkatwal.elasticsearch.plugin.rescorer.MergedHitsNormalizer;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * runs the searches of a `_fused_search` concurrently on the coordinating node. The hits of every
+ * search are normalized with the `normalizer`, weighted, and merged best first into one ranking.
+ * A doc that more than one search returns is kept once, with its best weighted score.
+ */
+public class TransportFusedSearchAction
+    extends HandledTransportAction<FusedSearchRequest, FusedSearchResponse> {
+
+  private final Client client;
+  private final ClusterService clusterService;
+
+  @Inject
+  public TransportFusedSearchAction(
+      TransportService transportService,
+      ActionFilters actionFilters,
+      Client client,
+      ClusterService clusterService) {
+    super(FusedSearchAction.NAME, transportService, actionFilters, FusedSearchRequest::new);
+    this.client = client;
+    this.clusterService = clusterService;
+  }
+
+  @Override
+  protected void doExecute(
+      Task task, FusedSearchRequest request, ActionListener<FusedSearchResponse> listener) {
+    long start = System.nanoTime();
+    List<WeightedSearch> searches = request.getSearches();
+    AtomicArray<SearchResponse> responses = new AtomicArray<>(searches.size());
+    CountDown countDown = new CountDown(searches.size());
+    TaskId parentTask = new TaskId(clusterService.localNode().getId(), task.getId());
+    for (int i = 0; i < searches.size(); i++) {
+      int search = i;
+      SearchRequest searchRequest =
+          searchRequest(searches.get(i), request.getFrom() + request.getSize());
+      searchRequest.setParentTask(parentTask);
+      client.search(
+          searchRequest,
+          ActionListener.wrap(
+              response -> {
+                responses.set(search, response);
+                if (countDown.countDown()) {
+                  ActionListener.completeWith(
+                      listener,
+                      () ->
+                          fuse(
+                              request,
+                              responses.asList(),
+                              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                }
+              },
+              e -> {
+                // the first failure fails the fused search, the other responses are dropped
+                if (countDown.fastForward()) {
+                  listener.onFailure(e);
+                }
+              }));
+    }
+  }
+
+  /** sets the size of a search without one to the hits the fused page needs. */
+  static SearchRequest searchRequest(WeightedSearch search, int hits) {
+    SearchRequest searchRequest = search.getRequest();
+    if (searchRequest.source() == null) {
+      searchRequest.source(new SearchSourceBuilder());
+    }
+    if (searchRequest.source().size() < 0) {
+      searchRequest.source().size(hits);
+    }
+    return searchRequest;
+  }
+
+  static FusedSearchResponse fuse(
+      FusedSearchRequest request, List<SearchResponse> responses, long tookInMillis)
+      throws IOException {
+    List<WeightedSearch> searches = request.getSearches();
+    List<SearchSummary> summaries = new ArrayList<>(responses.size());
+    SearchHit[][] ranked = new SearchHit[responses.size()][];
+    for (int i = 0; i < ranked.length; i++) {
+      SearchResponse response = responses.get(i);
+      summaries.add(new SearchSummary(response));
+      ranked[i] =
+          normalize(
+              response.getHits().getHits(),
+              request.getNormalizer(),
+              searches.get(i).getWeight(),
+              "search [" + i + "]");
+    }
+    SearchHit[] hits = merge(ranked, request.getFrom(), request.getSize());
+    float maxScore = hits.length == 0 ? Float.NaN : hits[0].getScore();
+    return new FusedSearchResponse(tookInMillis, summaries, new SearchHits(hits, null, maxScore));
+  }
+
+  /**
+   * normalizes the hits of one search and multiplies the normalized scores with the weight of the
+   * search.
+   *
+   * @param search name of the search in the error message
+   * @return hits of the search with their weighted normalized scores, best first
+   * @throws IllegalArgumentException if the hits have no score
+   */
+  static SearchHit[] normalize(
+      SearchHit[] hits, NormalizerRescorerBuilder normalizer, float weight, String search)
+      throws IOException {
+    SearchHit[] ranked = MergedHitsNormalizer.normalize(hits, normalizer, search);
+    for (SearchHit hit : ranked) {
+      hit.score(weight * hit.getScore());
+    }
+    return ranked;
+  }
+
+  /**
+   * k-way merge of the ranked hit lists, a heap holds the next hit of every list. A doc is
+   * identified by `_index` and `_id`, only its first, i.e. best scored, hit is kept.
+   *
+   * @param ranked hits of every search, best first
+   * @return fused hits from `from` on, at most `size`
+   */
+  static SearchHit[] merge(SearchHit[][] ranked, int from, int size) {
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, ranked.length));
+    for (int i = 0; i < ranked.length; i++) {
+      if (ranked[i].length > 0) {
+        heap.add(new Cursor(ranked[i], i));
+      }
+    }
+    Set<Tuple<String, String>> seen = new HashSet<>();
+    List<SearchHit> merged = new ArrayList<>(Math.min(size, 1024));
+    int skipped = 0;
+    while (merged.size() < size && !heap.isEmpty()) {
+      Cursor cursor = heap.poll();
+      SearchHit hit = cursor.hit();
+      if (seen.add(new Tuple<>(hit.getIndex(), hit.getId()))) {
+        if (skipped < from) {
+          skipped++;
+        } else {
+          merged.add(hit);
+        }
+      }
+      if (cursor.advance()) {
+        heap.add(cursor);
+      }
+    }
+    return merged.toArray(new SearchHit[0]);
+  }
+
+  /** position in the ranked hits of one search, ordered by the score of its hit. */
+  private static final class Cursor implements Comparable<Cursor> {
+
+    private final SearchHit[] hits;
+    private final int search;
+    private int position;
+
+    Cursor(SearchHit[] hits, int search) {
+      this.hits = hits;
+      this.search = search;
+    }
+
+    SearchHit hit() {
+      return hits[position];
+    }
+
+    boolean advance() {
+      return ++position < hits.length;
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      int byScore = Float.compare(other.hit().getScore(), hit().getScore());
+      // ties go to the earlier search of the request
+      return byScore != 0 ? byScore : Integer.compare(search, other.search);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerMetrics;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TransportScoreNormalizerStatsAction
+    extends TransportNodesAction<
+        ScoreNormalizerStatsRequest,
+        ScoreNormalizerStatsResponse,
+        TransportScoreNormalizerStatsAction.NodeRequest,
+        ScoreNormalizerNodeStats> {
+
+  @Inject
+  public TransportScoreNormalizerStatsAction(
+      ThreadPool threadPool,
+      ClusterService clusterService,
+      TransportService transportService,
+      ActionFilters actionFilters) {
+    super(
+        ScoreNormalizerStatsAction.NAME,
+        threadPool,
+        clusterService,
+        transportService,
+        actionFilters,
+        ScoreNormalizerStatsRequest::new,
+        NodeRequest::new,
+        ThreadPool.Names.MANAGEMENT,
+        ScoreNormalizerNodeStats.class);
+  }
+
+  @Override
+  protected ScoreNormalizerStatsResponse newResponse(
+      ScoreNormalizerStatsRequest request,
+      List<ScoreNormalizerNodeStats> responses,
+      List<FailedNodeException> failures) {
+    return new ScoreNormalizerStatsResponse(clusterService.getClusterName(), responses, failures);
+  }
+
+  @Override
+  protected NodeRequest newNodeRequest(ScoreNormalizerStatsRequest request) {
+    return new NodeRequest();
+  }
+
+  @Override
+  protected ScoreNormalizerNodeStats newNodeResponse(StreamInput in) throws IOException {
+    return new ScoreNormalizerNodeStats(in);
+  }
+
+  @Override
+  protected ScoreNormalizerNodeStats nodeOperation(NodeRequest request) {
+    return new ScoreNormalizerNodeStats(
+        clusterService.localNode(), ScoreNormalizerMetrics.INSTANCE.stats());
+  }
+
+  public static class NodeRequest extends BaseNodeRequest {
+
+    public NodeRequest() {}
+
+    public NodeRequest(StreamInput in) throws IOException {
+      super(in);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.optionalConstructorArg;
+
+/** search of `_fused_search`, its indices and query, and the weight of its normalized scores. */
+public final class WeightedSearch implements Writeable, ToXContentObject {
+
+  private static final ParseField INDEX = new ParseField("index");
+  private static final ParseField SEARCH = new ParseField("search");
+  private static final ParseField WEIGHT = new ParseField("weight");
+  private static final float DEFAULT_WEIGHT = 1.0f;
+
+  @SuppressWarnings("unchecked")
+  private static final ConstructingObjectParser<WeightedSearch, Void> PARSER =
+      new ConstructingObjectParser<>(
+          "search",
+          args ->
+              new WeightedSearch(
+                  new SearchRequest(indices((List<String>) args[0]), (SearchSourceBuilder) args[1]),
+                  args[2] == null ? DEFAULT_WEIGHT : (float) args[2]));
+
+  static {
+    PARSER.declareStringArray(constructorArg(), INDEX);
+    PARSER.declareObject(constructorArg(), (p, c) -> SearchSourceBuilder.fromXContent(p), SEARCH);
+    PARSER.declareFloat(optionalConstructorArg(), WEIGHT);
+  }
+
+  private final SearchRequest request;
+  private final float weight;
+
+  public WeightedSearch(SearchRequest request, float weight) {
+    this.request = Objects.requireNonNull(request, "`search` must not be null");
+    this.weight = weight;
+  }
+
+  public WeightedSearch(StreamInput in) throws IOException {
+    request = new SearchRequest(in);
+    weight = in.readFloat();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    request.writeTo(out);
+    out.writeFloat(weight);
+  }
+
+  public static WeightedSearch fromXContent(XContentParser parser) throws IOException {
+    return PARSER.parse(parser, null);
+  }
+
+  /** @return indices of the `index` values, which take comma separated lists like the url */
+  private static String[] indices(List<String> values) {
+    List<String> indices = new ArrayList<>(values.size());
+    for (String value : values) {
+      indices.addAll(Arrays.asList(Strings.splitStringByCommaToArray(value)));
+    }
+    return indices.toArray(new String[0]);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject();
+    builder.array(INDEX.getPreferredName(), request.indices());
+    if (request.source() != null) {
+      builder.field(SEARCH.getPreferredName(), request.source());
+    }
+    builder.field(WEIGHT.getPreferredName(), weight);
+    builder.endObject();
+    return builder;
+  }
+
+  public SearchRequest getRequest() {
+    return request;
+  }
+
+  public float getWeight() {
+    return weight;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    WeightedSearch that = (WeightedSearch) o;
+    return Float.compare(that.weight, weight) == 0 && request.equals(that.request);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(request, weight);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.aggregation;
+
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.metrics.InternalNumericMetricsAggregation;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/** shard and reduced result of the `score_stats` aggregation. */
+public class InternalScoreStats extends InternalNumericMetricsAggregation.MultiValue {
+
+  private final ScoreStats stats;
+
+  InternalScoreStats(
+      String name,
+      ScoreStats stats,
+      List<PipelineAggregator> pipelineAggregators,
+      Map<String, Object> metaData) {
+    super(name, pipelineAggregators, metaData);
+    this.stats = stats;
+  }
+
+  public InternalScoreStats(StreamInput in) throws IOException {
+    super(in);
+    stats = new ScoreStats(in);
+  }
+
+  @Override
+  protected void doWriteTo(StreamOutput out) throws IOException {
+    stats.writeTo(out);
+  }
+
+  @Override
+  public String getWriteableName() {
+    return ScoreStatsAggregationBuilder.NAME;
+  }
+
+  public ScoreStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public double value(String name) {
+    switch (name) {
+      case "count":
+        return stats.getCount();
+      case "mean":
+        return stats.getMean();
+      case "variance":
+        return stats.getVariance();
+      case "std_deviation":
+        return stats.getStandardDeviation();
+      case "min":
+        return stats.getMin();
+      case "max":
+        return stats.getMax();
+      case "sum":
+        return stats.getSum();
+      case "sum_of_squares":
+        return stats.getSumOfSquares();
+      default:
+        throw new IllegalArgumentException("Unknown value [" + name + "] in score_stats");
+    }
+  }
+
+  @Override
+  public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext ctx) {
+    ScoreStats merged = ScoreStats.EMPTY;
+    for (InternalAggregation aggregation : aggregations) {
+      merged = merged.merge(((InternalScoreStats) aggregation).stats);
+    }
+    return new InternalScoreStats(name, merged, pipelineAggregators(), getMetaData());
+  }
+
+  @Override
+  public XContentBuilder doXContentBody(XContentBuilder builder, Params params)
+      throws IOException {
+    builder.field("count", stats.getCount());
+    if (stats.getCount() == 0) {
+      builder.nullField("mean");
+      builder.nullField("variance");
+      builder.nullField("std_deviation");
+      builder.nullField("min");
+      builder.nullField("max");
+      return builder;
+    }
+    builder.field("mean", stats.getMean());
+    builder.field("variance", stats.getVariance());
+    builder.field("std_deviation", stats.getStandardDeviation());
+    builder.field("min", stats.getMin());
+    builder.field("max", stats.getMax());
+    return builder;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(super.hashCode(), stats);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!super.equals(obj)) {
+      return false;
+    }
+    InternalScoreStats other = (InternalScoreStats) obj;
+    return Objects.equals(stats, other.stats);
+  }
+}
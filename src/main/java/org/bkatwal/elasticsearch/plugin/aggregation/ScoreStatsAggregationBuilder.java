@@ -0,0 +1,156 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.aggregation;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ObjectParser;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * `score_stats` aggregation, reports count, mean, variance, min and max of the scores of the top
+ * `window_size` hits of every shard, merged across shards. This is the pre-phase of the `global`
+ * scope of the `score_normalizer` rescorer, the shard windows match the windows the rescorer
+ * sees.
+ */
+public class ScoreStatsAggregationBuilder
+    extends AbstractAggregationBuilder<ScoreStatsAggregationBuilder> {
+  public static final String NAME = "score_stats";
+
+  private static final ParseField WINDOW_SIZE = new ParseField("window_size");
+  private static final int DEFAULT_WINDOW_SIZE = 10;
+
+  private static final ObjectParser<ScoreStatsAggregationBuilder, Void> PARSER =
+      new ObjectParser<>(NAME);
+
+  static {
+    PARSER.declareInt(ScoreStatsAggregationBuilder::windowSize, WINDOW_SIZE);
+  }
+
+  private int windowSize = DEFAULT_WINDOW_SIZE;
+
+  public ScoreStatsAggregationBuilder(String name) {
+    super(name);
+  }
+
+  public ScoreStatsAggregationBuilder(StreamInput in) throws IOException {
+    super(in);
+    windowSize = in.readVInt();
+  }
+
+  private ScoreStatsAggregationBuilder(
+      ScoreStatsAggregationBuilder clone,
+      AggregatorFactories.Builder factoriesBuilder,
+      Map<String, Object> metaData) {
+    super(clone, factoriesBuilder, metaData);
+    this.windowSize = clone.windowSize;
+  }
+
+  public static ScoreStatsAggregationBuilder parse(String aggregationName, XContentParser parser)
+      throws IOException {
+    return PARSER.parse(parser, new ScoreStatsAggregationBuilder(aggregationName), null);
+  }
+
+  public ScoreStatsAggregationBuilder windowSize(int windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException(
+          "[" + WINDOW_SIZE.getPreferredName() + "] must be greater than 0 in [" + name + "]");
+    }
+    this.windowSize = windowSize;
+    return this;
+  }
+
+  public int windowSize() {
+    return windowSize;
+  }
+
+  @Override
+  protected void doWriteTo(StreamOutput out) throws IOException {
+    out.writeVInt(windowSize);
+  }
+
+  @Override
+  protected AggregatorFactory doBuild(
+      SearchContext context, AggregatorFactory parent, AggregatorFactories.Builder subFactories)
+      throws IOException {
+    if (parent != null) {
+      throw new IllegalArgumentException(
+          "[" + NAME + "] aggregation [" + name + "] can only be used as a top level aggregation");
+    }
+    if (subFactories.count() > 0) {
+      throw new IllegalArgumentException(
+          "[" + NAME + "] aggregation [" + name + "] does not support sub-aggregations");
+    }
+    return new ScoreStatsAggregatorFactory(
+        name, windowSize, context, parent, subFactories, metaData);
+  }
+
+  @Override
+  protected XContentBuilder internalXContent(XContentBuilder builder, Params params)
+      throws IOException {
+    builder.startObject();
+    builder.field(WINDOW_SIZE.getPreferredName(), windowSize);
+    builder.endObject();
+    return builder;
+  }
+
+  @Override
+  protected AggregationBuilder shallowCopy(
+      AggregatorFactories.Builder factoriesBuilder, Map<String, Object> metaData) {
+    return new ScoreStatsAggregationBuilder(this, factoriesBuilder, metaData);
+  }
+
+  @Override
+  public String getType() {
+    return NAME;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(super.hashCode(), windowSize);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass() || !super.equals(obj)) {
+      return false;
+    }
+    ScoreStatsAggregationBuilder other = (ScoreStatsAggregationBuilder) obj;
+    return windowSize == other.windowSize;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.aggregation;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.MetricsAggregator;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * collects the scores of the top {@code window_size} hits of the shard, i.e. the window a shard
+ * hands to the rescorer, and reports their statistics. Only runs as a top level aggregation.
+ */
+class ScoreStatsAggregator extends MetricsAggregator {
+
+  private final TopScores topScores;
+
+  ScoreStatsAggregator(
+      String name,
+      int windowSize,
+      SearchContext context,
+      Aggregator parent,
+      List<PipelineAggregator> pipelineAggregators,
+      Map<String, Object> metaData)
+      throws IOException {
+    super(name, context, parent, pipelineAggregators, metaData);
+    addRequestCircuitBreakerBytes((long) windowSize * Float.BYTES);
+    this.topScores = new TopScores(windowSize);
+  }
+
+  @Override
+  public ScoreMode scoreMode() {
+    return ScoreMode.COMPLETE;
+  }
+
+  @Override
+  protected LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) {
+    return new LeafBucketCollectorBase(sub, null) {
+      private Scorable scorer;
+
+      @Override
+      public void setScorer(Scorable scorer) throws IOException {
+        this.scorer = scorer;
+      }
+
+      @Override
+      public void collect(int doc, long bucket) throws IOException {
+        assert bucket == 0;
+        topScores.offer(scorer.score());
+      }
+    };
+  }
+
+  @Override
+  public InternalAggregation buildAggregation(long bucket) {
+    return new InternalScoreStats(
+        name,
+        ScoreStats.of(topScores.scores(), topScores.size()),
+        pipelineAggregators(),
+        metaData());
+  }
+
+  @Override
+  public InternalAggregation buildEmptyAggregation() {
+    return new InternalScoreStats(name, ScoreStats.EMPTY, pipelineAggregators(), metaData());
+  }
+}
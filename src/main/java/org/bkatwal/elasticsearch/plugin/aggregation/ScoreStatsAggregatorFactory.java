@@ -0,0 +1,62 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.aggregation;
+
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+class ScoreStatsAggregatorFactory extends AggregatorFactory {
+
+  private final int windowSize;
+
+  ScoreStatsAggregatorFactory(
+      String name,
+      int windowSize,
+      SearchContext context,
+      AggregatorFactory parent,
+      AggregatorFactories.Builder subFactoriesBuilder,
+      Map<String, Object> metaData)
+      throws IOException {
+    super(name, context, parent, subFactoriesBuilder, metaData);
+    this.windowSize = windowSize;
+  }
+
+  @Override
+  protected Aggregator createInternal(
+      Aggregator parent,
+      boolean collectsFromSingleBucket,
+      List<PipelineAggregator> pipelineAggregators,
+      Map<String, Object> metaData)
+      throws IOException {
+    return new ScoreStatsAggregator(
+        name, windowSize, context, parent, pipelineAggregators, metaData);
+  }
+}
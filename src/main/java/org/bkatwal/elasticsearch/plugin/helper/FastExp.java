@@ -0,0 +1,56 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+/**
+ * approximation of {@code e^x} for the sigmoid and softmax normalizers, enabled with `fast_exp`.
+ * {@code e^x} is computed as {@code 2^i * 2^f} with {@code x * log2(e) = i + f}, the integer part
+ * goes straight into the exponent bits and {@code 2^f} on {@code [0, 1)} is a degree 4
+ * polynomial. The relative error is below 1e-5 for x in [-87, 88], measured against Math.exp.
+ * Below that range the result is the smallest normal float, about 1.2e-38, above it the largest
+ * float instead of infinity.
+ */
+final class FastExp {
+
+  private static final float LOG2E = 1.44269504f;
+  // least squares fit of 2^f on [0, 1) with weights 1 / 2^(2f), the polynomial alone is within
+  // 3e-6 of 2^f
+  private static final float C1 = 0.69304401f;
+  private static final float C2 = 0.24128269f;
+  private static final float C3 = 0.05224090f;
+  private static final float C4 = 0.01342655f;
+
+  private FastExp() {}
+
+  static float exp(float x) {
+    // clamping instead of branching keeps the loops of the callers free of branches that depend
+    // on the score
+    float t = Math.min(Math.max(x * LOG2E, -126.0f), 127.99999f);
+    float fi = (float) Math.floor(t);
+    float f = t - fi;
+    float p = 1.0f + f * (C1 + f * (C2 + f * (C3 + f * C4)));
+    // p is in [1, 2), adding the integer part to its exponent multiplies it by 2^fi
+    return Float.intBitsToFloat(Float.floatToRawIntBits(p) + ((int) fi << 23));
+  }
+}
@@ -0,0 +1,271 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.bkatwal.elasticsearch.plugin.rescorer.FieldNormalization;
+import org.bkatwal.elasticsearch.plugin.rescorer.WeightedField;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * adds the weighted values of numeric doc-value fields to the normalized scores of a window, in
+ * the same rescore pass. The window is visited in doc id order, leaf by leaf, so the doc values
+ * of every field only move forward. The values are read into one primitive buffer, scaled with
+ * the statistics of the window and added to the scores in a single pass.
+ *
+ * <p>A doc with several values uses its lowest, like `field_value_factor`. One instance belongs
+ * to the rescore context of one shard request, it keeps the scaling of the last window blended
+ * to explain it.
+ */
+public final class FieldBlender {
+
+  private static final Comparator<ScoreDoc> SCORE_ORDER =
+      (a, b) -> {
+        int cmp = Float.compare(b.score, a.score);
+        return cmp != 0 ? cmp : Integer.compare(a.doc, b.doc);
+      };
+
+  private final String[] names;
+  private final IndexNumericFieldData[] fieldData;
+  private final float[] weights;
+  private final FieldNormalization[] normalizations;
+  private final float[] missing;
+  // value = (value - shift) * scale, per field for the last window blended
+  private final float[] shifts;
+  private final float[] scales;
+
+  /**
+   * @param fields fields to blend
+   * @param fieldData doc values of every field, null entries for fields the shard does not map,
+   *     all of its docs take the missing value then
+   */
+  public FieldBlender(List<WeightedField> fields, IndexNumericFieldData[] fieldData) {
+    int count = fields.size();
+    this.names = new String[count];
+    this.weights = new float[count];
+    this.normalizations = new FieldNormalization[count];
+    this.missing = new float[count];
+    for (int f = 0; f < count; f++) {
+      WeightedField field = fields.get(f);
+      names[f] = field.getField();
+      weights[f] = field.getWeight();
+      normalizations[f] = field.getNormalization();
+      missing[f] = field.getMissing();
+    }
+    this.fieldData = fieldData;
+    this.shifts = new float[count];
+    this.scales = new float[count];
+  }
+
+  /** @return names of the blended fields */
+  public String[] getNames() {
+    return names;
+  }
+
+  /**
+   * adds the weighted field values to the scores of the window and sorts it by the new scores.
+   *
+   * @param scoreDocs normalized window of the shard
+   * @param searcher searcher of the shard, its leaves hold the doc values
+   */
+  public void blend(ScoreDoc[] scoreDocs, IndexSearcher searcher) throws IOException {
+    int n = scoreDocs.length;
+    if (n == 0) {
+      return;
+    }
+    ScoreBuffers buffers = ScoreBuffers.get();
+    // doc id and position are packed into one long, sorted they give the positions in doc id
+    // order
+    long[] order = buffers.ranks(n);
+    for (int i = 0; i < n; i++) {
+      order[i] = ((long) scoreDocs[i].doc << 32) | i;
+    }
+    ScoreSelection.sort(order, 0, n);
+
+    int count = names.length;
+    float[] values = buffers.values(n * count);
+    List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    for (int f = 0; f < count; f++) {
+      read(f, order, n, values, leaves);
+      scale(f, values, f * n, n);
+    }
+    for (int i = 0; i < n; i++) {
+      float score = scoreDocs[i].score;
+      for (int f = 0; f < count; f++) {
+        score += weights[f] * ((values[f * n + i] - shifts[f]) * scales[f]);
+      }
+      scoreDocs[i].score = score;
+    }
+    Arrays.sort(scoreDocs, SCORE_ORDER);
+  }
+
+  /** reads the values of field f to {@code values[f * n, f * n + n)}, in window order. */
+  private void read(int f, long[] order, int n, float[] values, List<LeafReaderContext> leaves)
+      throws IOException {
+    int offset = f * n;
+    float missingValue = transform(f, missing[f]);
+    if (fieldData[f] == null) {
+      Arrays.fill(values, offset, offset + n, missingValue);
+      return;
+    }
+    int leaf = -1;
+    int leafEnd = 0;
+    int docBase = 0;
+    SortedNumericDoubleValues docValues = null;
+    for (int i = 0; i < n; i++) {
+      int doc = (int) (order[i] >>> 32);
+      if (doc >= leafEnd) {
+        do {
+          leaf++;
+          docBase = leaves.get(leaf).docBase;
+          leafEnd = docBase + leaves.get(leaf).reader().maxDoc();
+        } while (doc >= leafEnd);
+        docValues = fieldData[f].load(leaves.get(leaf)).getDoubleValues();
+      }
+      values[offset + (int) order[i]] =
+          docValues.advanceExact(doc - docBase)
+              ? transform(f, docValues.nextValue())
+              : missingValue;
+    }
+  }
+
+  private float transform(int f, double value) {
+    // log1p is undefined below -1, negative values count as 0
+    return normalizations[f] == FieldNormalization.log1p
+        ? (float) Math.log1p(Math.max(0.0, value))
+        : (float) value;
+  }
+
+  /** sets the shift and scale of field f from its values in the window. */
+  private void scale(int f, float[] values, int offset, int n) {
+    shifts[f] = 0.0f;
+    scales[f] = 1.0f;
+    switch (normalizations[f]) {
+      case min_max:
+        float min = values[offset];
+        float max = min;
+        for (int i = offset + 1; i < offset + n; i++) {
+          min = Math.min(min, values[i]);
+          max = Math.max(max, values[i]);
+        }
+        // a field that is the same for the whole window does not change the order, it adds 0
+        shifts[f] = min;
+        scales[f] = max > min ? 1.0f / (max - min) : 0.0f;
+        break;
+      case z_score:
+        double sum = 0;
+        for (int i = offset; i < offset + n; i++) {
+          sum += values[i];
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (int i = offset; i < offset + n; i++) {
+          double deviation = values[i] - mean;
+          squares += deviation * deviation;
+        }
+        double sd = Math.sqrt(squares / n);
+        shifts[f] = (float) mean;
+        scales[f] = sd > 0 ? (float) (1.0 / sd) : 0.0f;
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * explains the blended score of a doc of the last window blended.
+   *
+   * @param doc top level doc id
+   * @param normalized explanation of the normalized score of the doc
+   * @return explanation of the normalized score plus the weighted field values
+   */
+  public Explanation explain(int doc, IndexSearcher searcher, Explanation normalized)
+      throws IOException {
+    List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+    List<Explanation> details = new ArrayList<>(names.length + 1);
+    details.add(normalized);
+    float score = normalized.getValue().floatValue();
+    for (int f = 0; f < names.length; f++) {
+      Explanation value;
+      SortedNumericDoubleValues docValues =
+          fieldData[f] == null ? null : fieldData[f].load(leaf).getDoubleValues();
+      if (docValues != null && docValues.advanceExact(doc - leaf.docBase)) {
+        double raw = docValues.nextValue();
+        value = Explanation.match(transform(f, raw), valueOf(f), Explanation.match(raw, "value"));
+      } else {
+        value = Explanation.match(transform(f, missing[f]), valueOf(f) + ", missing value");
+      }
+      float scaled = (value.getValue().floatValue() - shifts[f]) * scales[f];
+      float weighted = weights[f] * scaled;
+      score += weighted;
+      details.add(
+          Explanation.match(
+              weighted,
+              "weight [" + weights[f] + "] * " + normalizations[f] + " of field [" + names[f] + "]",
+              Explanation.match(scaled, scaling(f), value)));
+    }
+    return Explanation.match(score, "sum of the normalized score and the weighted fields", details);
+  }
+
+  private String valueOf(int f) {
+    return normalizations[f] == FieldNormalization.log1p
+        ? "log1p(value) of field [" + names[f] + "]"
+        : "value of field [" + names[f] + "]";
+  }
+
+  private String scaling(int f) {
+    switch (normalizations[f]) {
+      case min_max:
+        return scales[f] == 0
+            ? "0 as the field has the same value for the whole window"
+            : "(value - min) / (max - min) of the window, min ["
+                + shifts[f]
+                + "], max - min ["
+                + 1.0f / scales[f]
+                + "]";
+      case z_score:
+        return scales[f] == 0
+            ? "0 as the field has the same value for the whole window"
+            : "(value - mean) / standard deviation of the window, mean ["
+                + shifts[f]
+                + "], standard deviation ["
+                + 1.0f / scales[f]
+                + "]";
+      default:
+        return "value";
+    }
+  }
+}
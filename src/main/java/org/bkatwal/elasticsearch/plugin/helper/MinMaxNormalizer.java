@@ -23,94 +23,239 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.helper;
 
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
-import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
 import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
 import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MinMaxNormalizer implements Normalizer {
 
   @Override
   public TopDocs normalize(
       TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
 
-    if (context.getMinScore() >= context.getMaxScore()) {
-      throw new IllegalArgumentException(
-          "max_score can not be lesser than or equal to  " + "min_score");
-    }
     if (topDocs.scoreDocs.length == 0) {
       return topDocs;
     }
-    if (topDocs.scoreDocs.length == 1) {
-      topDocs.scoreDocs[0].score =
-          getFinalScore(context.getFactorMode(), context.getFactor(), context.getMaxScore());
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    ScoreStats fixedStats = context.getFixedStats();
+    if (fixedStats != null) {
+      // every shard, or every page, scales against the same bounds. The top doc boost is left
+      // out as the runner up of one window says nothing about the hits of the other windows.
+      scale(scoreDocs, fixedStats.getMin(), fixedStats.getMax(), context);
+      if (context.isExplain()) {
+        context.setExplainer(explainer(fixedStats.getMin(), fixedStats.getMax(), 0, -1, 0));
+      }
+      return topDocs;
+    }
+    ScoreKernel kernel = context.getKernel();
+    if (scoreDocs.length == 1) {
+      context.startKernel();
+      scoreDocs[0].score = kernel.apply(context.getMaxScore());
+      if (context.isExplain()) {
+        context.setExplainer(ScoreExplainer.singleDoc());
+      }
+      return topDocs;
+    }
+    if (context.getClipQuantile() > 0) {
+      clip(scoreDocs, context.getClipQuantile(), context);
       return topDocs;
     }
 
-    float oldMax = topDocs.scoreDocs[0].score;
-    float oldMin = topDocs.scoreDocs[topDocs.scoreDocs.length - 1].score;
+    WindowExecutor executor = WindowExecutor.getInstance();
+    int chunks = executor == null ? 1 : executor.chunks(scoreDocs.length);
+    Extremes extremes =
+        chunks == 1
+            ? Extremes.scan(scoreDocs, 0, scoreDocs.length)
+            : executor.reduce(
+                scoreDocs.length,
+                chunks,
+                (from, to) -> Extremes.scan(scoreDocs, from, to),
+                Extremes::merge);
+    float oldMin = extremes.min;
+    float oldMax = extremes.max;
+    float runnerUp = extremes.runnerUp;
+    int top = extremes.top;
 
-    if (Float.compare(oldMax, oldMin) == 0) {
-      for (int i = 0; i < topDocs.scoreDocs.length; i++) {
-        if (context.getOnScoresSame().equals(MinMaxSameScoreStrategy.avg.name())) {
-          topDocs.scoreDocs[i].score = (context.getMaxScore() + context.getMinScore()) / 2;
-        } else if (context.getOnScoresSame().equals(MinMaxSameScoreStrategy.min.name())) {
-          topDocs.scoreDocs[i].score = context.getMinScore();
-        } else if (context.getOnScoresSame().equals(MinMaxSameScoreStrategy.max.name())) {
-          topDocs.scoreDocs[i].score = context.getMaxScore();
-        } else {
-          topDocs.scoreDocs[i].score = (context.getMaxScore() + context.getMinScore()) / 2;
-        }
+    if (!scale(scoreDocs, oldMin, oldMax, context) || scoreDocs.length <= 2) {
+      if (context.isExplain()) {
+        context.setExplainer(explainer(oldMin, oldMax, 0, -1, 0));
       }
       return topDocs;
     }
+    // boost the top doc by its lead over the runner up, wherever the two are in the window
+    float newMin = context.getMinScore();
+    float scale = (context.getMaxScore() - newMin) / (oldMax - oldMin);
+    float topScore = scoreDocs[top].score;
+    float runnerUpScore = kernel.apply((runnerUp - oldMin) * scale + newMin);
+    scoreDocs[top].score = topScore + (topScore - runnerUpScore);
+    if (context.isExplain()) {
+      context.setExplainer(explainer(oldMin, oldMax, 0, scoreDocs[top].doc, runnerUpScore));
+    }
+    return topDocs;
+  }
 
-    for (int i = 0; i < topDocs.scoreDocs.length; i++) {
-      float normalizedScore =
-          calculate(
-              topDocs.scoreDocs[i].score,
-              oldMin,
-              oldMax,
-              context.getMaxScore(),
-              context.getMinScore());
-
-      topDocs.scoreDocs[i].score =
-          getFinalScore(context.getFactorMode(), context.getFactor(), normalizedScore);
+  /**
+   * scales against the quantiles of the window instead of its extremes, scores beyond them are
+   * clamped. The quantiles are selected from a copy of the scores in linear time, and there is
+   * no top doc boost as the clamped top docs tie.
+   */
+  private static void clip(
+      ScoreDoc[] scoreDocs,
+      float clipQuantile,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    int n = scoreDocs.length;
+    float[] scores = ScoreBuffers.get().scores(scoreDocs);
+    int upper = (int) Math.ceil((1.0 - clipQuantile) * (n - 1));
+    int lower = (int) Math.floor(clipQuantile * (n - 1));
+    float high = ScoreSelection.select(scores, 0, n, upper);
+    // selecting the upper bound left the smaller scores in front of it
+    float low = ScoreSelection.select(scores, 0, upper + 1, lower);
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      scoreDoc.score = Math.min(Math.max(scoreDoc.score, low), high);
     }
-    if (topDocs.scoreDocs.length > 2) {
-      topDocs.scoreDocs[0].score =
-          topDocs.scoreDocs[0].score + (topDocs.scoreDocs[0].score - topDocs.scoreDocs[1].score);
+    scale(scoreDocs, low, high, context);
+    if (context.isExplain()) {
+      context.setExplainer(explainer(low, high, clipQuantile, -1, 0));
     }
-    return topDocs;
   }
 
-  private static float calculate(float v, float oldMin, float oldMax, float newMax, float newMin) {
-    return ((v - oldMin) / (oldMax - oldMin)) * (newMax - newMin) + newMin;
+  /**
+   * explains min_max from the bounds the window was scaled against.
+   *
+   * @param min lower bound, the lowest score or the lower quantile
+   * @param max upper bound, the highest score or the upper quantile
+   * @param clipQuantile `clip_quantile`, 0 if the bounds are the extremes
+   * @param top doc boosted by its lead over the runner up, -1 if none
+   * @param runnerUpScore final score of the runner up
+   */
+  private static ScoreExplainer explainer(
+      float min, float max, float clipQuantile, int top, float runnerUpScore) {
+    if (Float.compare(max, min) == 0) {
+      return ScoreExplainer.sameScore(max);
+    }
+    return (doc, source, context) -> {
+      String of = ScoreExplainer.statisticsOf(context);
+      float score = source.getValue().floatValue();
+      List<Explanation> details = new ArrayList<>();
+      details.add(source);
+      if (clipQuantile > 0) {
+        score = Math.min(Math.max(score, min), max);
+        details.add(Explanation.match(score, "score clipped to the bounds"));
+        details.add(Explanation.match(min, clipQuantile + " quantile of the " + of));
+        details.add(Explanation.match(max, (1.0f - clipQuantile) + " quantile of the " + of));
+      } else {
+        details.add(Explanation.match(min, "min of the " + of));
+        details.add(Explanation.match(max, "max of the " + of));
+      }
+      float newMin = context.getMinScore();
+      float scale = (context.getMaxScore() - newMin) / (max - min);
+      Explanation result =
+          context.explainFactor(
+              Explanation.match(
+                  (score - min) * scale + newMin,
+                  "min_max, (score - min) * (max_score - min_score) / (max - min) + min_score",
+                  details));
+      if (doc != top) {
+        return result;
+      }
+      float topScore = result.getValue().floatValue();
+      return Explanation.match(
+          topScore + (topScore - runnerUpScore),
+          "top doc, boosted by its lead over the runner up scoring [" + runnerUpScore + "]",
+          result);
+    };
+  }
+
+  /**
+   * maps the scores from {@code [oldMin, oldMax]} onto {@code [min_score, max_score]} and applies
+   * the factor, or gives every doc the `on_score_same` score when the bounds are equal.
+   *
+   * @return false if all docs got the `on_score_same` score
+   */
+  private static boolean scale(
+      ScoreDoc[] scoreDocs,
+      float oldMin,
+      float oldMax,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    context.startKernel();
+    if (Float.compare(oldMax, oldMin) == 0) {
+      context.markAllScoresSame();
+      float sameScore = context.getSameScore();
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        scoreDoc.score = sameScore;
+      }
+      return false;
+    }
+    float newMin = context.getMinScore();
+    float scale = (context.getMaxScore() - newMin) / (oldMax - oldMin);
+    WindowExecutor.apply(context.getKernel(), scoreDocs, oldMin, scale, newMin);
+    return true;
   }
 
-  private static float getFinalScore(String factorMode, float factor, float normalizedValue) {
+  /** min, max, the top doc and the runner up score of a range of the window. */
+  private static final class Extremes {
+    private float min;
+    private float max;
+    private float runnerUp;
+    private int top;
 
-    if (factorMode.equals(NormalizerFactorMathOp.sum.name())) {
-      normalizedValue = normalizedValue + factor;
-    } else if (factorMode.equals(NormalizerFactorMathOp.multiply.name())) {
-      normalizedValue = normalizedValue * factor;
-    } else {
-      if (normalizedValue == 0.0f) {
-        normalizedValue = factor;
-      } else {
-        if (factor < 0 || factor > 1) {
-          throw new IllegalArgumentException(
-              "Invalid `factor` for `factor_mode` "
-                  + "increase_by_percent, "
-                  + "allowed "
-                  + "factor "
-                  + "range "
-                  + "0-1 "
-                  + "including 0 and 1.");
+    /**
+     * single scan, so the window does not have to be sorted by score, e.g. when chained after
+     * another rescorer. New highs and lows are rare in sorted and in shuffled windows alike, so
+     * the branches predict well.
+     */
+    static Extremes scan(ScoreDoc[] scoreDocs, int from, int to) {
+      float max = scoreDocs[from].score;
+      float min = max;
+      float runnerUp = Float.NEGATIVE_INFINITY;
+      int top = from;
+      for (int i = from + 1; i < to; i++) {
+        float score = scoreDocs[i].score;
+        if (score > runnerUp) {
+          if (score > max) {
+            runnerUp = max;
+            max = score;
+            top = i;
+          } else {
+            runnerUp = score;
+          }
         }
-        normalizedValue = normalizedValue + normalizedValue * factor;
+        if (score < min) {
+          min = score;
+        }
+      }
+      Extremes extremes = new Extremes();
+      extremes.min = min;
+      extremes.max = max;
+      extremes.runnerUp = runnerUp;
+      extremes.top = top;
+      return extremes;
+    }
+
+    /**
+     * merges the extremes of the range after this one, the same as scanning both ranges at once.
+     * The first of equal highs stays the top doc.
+     */
+    Extremes merge(Extremes next) {
+      min = Math.min(min, next.min);
+      if (next.max > max) {
+        runnerUp = Math.max(max, next.runnerUp);
+        max = next.max;
+        top = next.top;
+      } else {
+        runnerUp = Math.max(runnerUp, next.max);
       }
+      return this;
     }
-    return normalizedValue;
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.unsigned(factorMode, factor);
   }
 }
@@ -24,10 +24,21 @@ SOFTWARE.
 package org.bkatwal.elasticsearch.plugin.helper;
 
 import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
 import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
 
 public interface Normalizer {
 
   TopDocs normalize(
       TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext rescoreContext);
+
+  /**
+   * compiles `factor` and `factor_mode` into the kernel this normalizer applies per doc, called
+   * once per rescore context.
+   *
+   * @param factorMode how to combine the normalized score and the factor
+   * @param factor factor value
+   * @return compiled kernel
+   */
+  ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor);
 }
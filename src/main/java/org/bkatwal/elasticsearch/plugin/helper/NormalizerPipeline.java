@@ -0,0 +1,293 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.bkatwal.elasticsearch.plugin.rescorer.PipelineStage;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * stages of a `pipeline`, compiled once per rescore context and run as one normalizer.
+ *
+ * <p>Every window binds the stages to a small program of element-wise ops. A stage only needs a
+ * pass over the window when the statistics it scales against are unknown. The statistics of its
+ * input are carried through the stages before it instead: min_max and z_score are linear maps,
+ * so the minimum, maximum, mean and standard deviation of their output follow from those of
+ * their input; log1p and sigmoid are increasing, so the minimum and maximum follow as well.
+ * Consecutive linear maps fold into one op. A window then takes one pass for every stage that
+ * needs statistics after a log1p or sigmoid stage, which is none for log1p, z_score, sigmoid,
+ * plus the pass that writes the scores. A scan keeps its output in a pooled buffer, later passes
+ * continue from there, so every op runs once per doc.
+ *
+ * <p>One instance belongs to the rescore context of one shard request.
+ */
+public final class NormalizerPipeline {
+
+  // ops of the bound program, v is mapped to op(slope * v + intercept)
+  private static final int LOG1P = 0;
+  private static final int LINEAR = 1;
+  private static final int SIGMOID = 2;
+
+  private final PipelineStage[] stages;
+  private final int[] ops;
+  private final float[] slopes;
+  private final float[] intercepts;
+  // first stage of every op, several stages fold into one linear op
+  private final int[] firstStages;
+  private int length;
+  // ops before this one are applied to the values of the buffer already
+  private int evaluated;
+  private int passes;
+
+  // statistics of the output of the program bound so far
+  private boolean range;
+  private boolean moments;
+  private float min;
+  private float max;
+  private double mean;
+  private double sd;
+
+  public NormalizerPipeline(List<PipelineStage> stages) {
+    if (stages.isEmpty()) {
+      throw new IllegalArgumentException("`pipeline` must have at least one stage");
+    }
+    this.stages = stages.toArray(new PipelineStage[0]);
+    this.ops = new int[this.stages.length];
+    this.slopes = new float[this.stages.length];
+    this.intercepts = new float[this.stages.length];
+    this.firstStages = new int[this.stages.length];
+  }
+
+  /** @return stages of the pipeline, in order */
+  public PipelineStage[] getStages() {
+    return stages;
+  }
+
+  /** @return passes over the window the last rescore took, the write pass included */
+  int getPasses() {
+    return passes;
+  }
+
+  /**
+   * runs the stages over the window and applies the factor of the context.
+   *
+   * @param scoreDocs window to normalize in place
+   */
+  public void normalize(
+      ScoreDoc[] scoreDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    int n = scoreDocs.length;
+    if (n == 0) {
+      return;
+    }
+    length = 0;
+    evaluated = 0;
+    passes = 0;
+    float[] values = ScoreBuffers.get().scores(scoreDocs);
+    range = false;
+    moments = false;
+    for (int s = 0; s < stages.length; s++) {
+      PipelineStage stage = stages[s];
+      if (stage.getType() == PipelineStage.Type.log1p) {
+        append(LOG1P, 0.0f, 0.0f, s);
+        min = log1p(min);
+        max = log1p(max);
+        moments = false;
+        continue;
+      }
+      if (stage.getType() == PipelineStage.Type.min_max ? !range : !moments) {
+        scan(values, n);
+      }
+      if (min == max || (stage.getType() != PipelineStage.Type.min_max && sd == 0.0)) {
+        // equal scores stay equal through every stage
+        sameScores(scoreDocs, context);
+        return;
+      }
+      switch (stage.getType()) {
+        case min_max:
+          float lower = stage.getMinScore();
+          float upper = stage.getMaxScore();
+          float slope = (upper - lower) / (max - min);
+          linear(slope, lower - slope * min, s);
+          min = lower;
+          max = upper;
+          break;
+        case z_score:
+          linear((float) (1.0 / sd), (float) (-mean / sd), s);
+          min = (float) ((min - mean) / sd);
+          max = (float) ((max - mean) / sd);
+          mean = 0.0;
+          sd = 1.0;
+          break;
+        default:
+          float scale = (float) (-1.0 / (sd * stage.getTemperature()));
+          append(SIGMOID, scale, (float) (-mean * scale), s);
+          min = sigmoid(scale, (float) (-mean * scale), min);
+          max = sigmoid(scale, (float) (-mean * scale), max);
+          moments = false;
+          break;
+      }
+    }
+
+    context.startKernel();
+    passes++;
+    ScoreKernel kernel = context.getKernel();
+    for (int i = 0; i < n; i++) {
+      scoreDocs[i].score = kernel.apply(eval(values[i]));
+    }
+    if (context.isExplain()) {
+      context.setExplainer(explainer());
+    }
+  }
+
+  private void sameScores(
+      ScoreDoc[] scoreDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    context.markAllScoresSame();
+    context.startKernel();
+    passes++;
+    float sameScore = context.getSameScore();
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      scoreDoc.score = sameScore;
+    }
+    if (context.isExplain()) {
+      context.setExplainer(ScoreExplainer.sameScore(scoreDocs[0].score));
+    }
+  }
+
+  /**
+   * applies the ops bound since the last scan to the buffer and collects the statistics of the
+   * result, in one pass.
+   */
+  private void scan(float[] values, int n) {
+    passes++;
+    float shift = eval(values[0]);
+    float lo = shift;
+    float hi = shift;
+    double sum = 0.0;
+    double sumSq = 0.0;
+    for (int i = 0; i < n; i++) {
+      float value = eval(values[i]);
+      values[i] = value;
+      double delta = (double) value - shift;
+      sum += delta;
+      sumSq += delta * delta;
+      lo = Math.min(lo, value);
+      hi = Math.max(hi, value);
+    }
+    evaluated = length;
+    double meanDelta = sum / n;
+    min = lo;
+    max = hi;
+    mean = shift + meanDelta;
+    sd = Math.sqrt(Math.max(0.0, sumSq - sum * meanDelta) / n);
+    range = true;
+    moments = true;
+  }
+
+  private void linear(float slope, float intercept, int stage) {
+    if (length > evaluated && ops[length - 1] == LINEAR) {
+      // slope2 * (slope1 * v + intercept1) + intercept2
+      intercepts[length - 1] = slope * intercepts[length - 1] + intercept;
+      slopes[length - 1] = slope * slopes[length - 1];
+      return;
+    }
+    append(LINEAR, slope, intercept, stage);
+  }
+
+  private void append(int op, float slope, float intercept, int stage) {
+    ops[length] = op;
+    slopes[length] = slope;
+    intercepts[length] = intercept;
+    firstStages[length] = stage;
+    length++;
+  }
+
+  /** @return value mapped by the ops bound since the last scan */
+  private float eval(float value) {
+    for (int i = evaluated; i < length; i++) {
+      value = apply(ops[i], slopes[i], intercepts[i], value);
+    }
+    return value;
+  }
+
+  private static float apply(int op, float slope, float intercept, float value) {
+    switch (op) {
+      case LOG1P:
+        return log1p(value);
+      case LINEAR:
+        return slope * value + intercept;
+      default:
+        return sigmoid(slope, intercept, value);
+    }
+  }
+
+  private static float log1p(float value) {
+    // log1p is undefined below -1, negative scores count as 0. Math.log is an intrinsic, unlike
+    // Math.log1p, and computed in double it is exact enough for float scores.
+    return (float) Math.log(1.0 + Math.max(0.0f, value));
+  }
+
+  private static float sigmoid(float slope, float intercept, float value) {
+    return 1.0f / (1.0f + (float) Math.exp(slope * value + intercept));
+  }
+
+  /** captures the program bound to the window, explaining a doc replays it op by op. */
+  private ScoreExplainer explainer() {
+    int count = length;
+    int[] boundOps = Arrays.copyOf(ops, count);
+    float[] boundSlopes = Arrays.copyOf(slopes, count);
+    float[] boundIntercepts = Arrays.copyOf(intercepts, count);
+    int[] boundStages = Arrays.copyOf(firstStages, count);
+    return (doc, source, context) -> {
+      Explanation explanation = source;
+      for (int i = 0; i < count; i++) {
+        float value =
+            apply(
+                boundOps[i],
+                boundSlopes[i],
+                boundIntercepts[i],
+                explanation.getValue().floatValue());
+        int to = i + 1 < count ? boundStages[i + 1] : stages.length;
+        String of = "stages " + Arrays.toString(Arrays.copyOfRange(stages, boundStages[i], to));
+        if (boundOps[i] == LOG1P) {
+          explanation = Explanation.match(value, "log1p(max(0, value)), " + of, explanation);
+          continue;
+        }
+        explanation =
+            Explanation.match(
+                value,
+                boundOps[i] == LINEAR
+                    ? "value * slope + intercept, " + of + " against the window"
+                    : "1 / (1 + exp(value * slope + intercept)), " + of + " against the window",
+                explanation,
+                Explanation.match(boundSlopes[i], "slope"),
+                Explanation.match(boundIntercepts[i], "intercept"));
+      }
+      return context.explainFactor(explanation);
+    };
+  }
+}
@@ -31,6 +31,12 @@ public final class NormalizerServiceLocator {
 
   private static final Normalizer minMaxNormalizer = new MinMaxNormalizer();
   private static final Normalizer zScoreNormalizer = new ZScoreNormalizer();
+  private static final Normalizer reciprocalRankNormalizer = new ReciprocalRankNormalizer();
+  private static final Normalizer percentileNormalizer = new PercentileNormalizer();
+  private static final Normalizer robustZScoreNormalizer = new RobustZScoreNormalizer();
+  private static final Normalizer sigmoidNormalizer = new SigmoidNormalizer();
+  private static final Normalizer softmaxNormalizer = new SoftmaxNormalizer();
+  private static final Normalizer pipelineNormalizer = new PipelineNormalizer();
 
   public static Normalizer getInstance(NormalizerType normalizerType) {
     if (normalizerType == NormalizerType.min_max) {
@@ -39,6 +45,24 @@ public final class NormalizerServiceLocator {
     if (normalizerType == NormalizerType.z_score) {
       return zScoreNormalizer;
     }
+    if (normalizerType == NormalizerType.rrf) {
+      return reciprocalRankNormalizer;
+    }
+    if (normalizerType == NormalizerType.percentile) {
+      return percentileNormalizer;
+    }
+    if (normalizerType == NormalizerType.robust_z) {
+      return robustZScoreNormalizer;
+    }
+    if (normalizerType == NormalizerType.sigmoid) {
+      return sigmoidNormalizer;
+    }
+    if (normalizerType == NormalizerType.softmax) {
+      return softmaxNormalizer;
+    }
+    if (normalizerType == NormalizerType.pipeline) {
+      return pipelineNormalizer;
+    }
 
     return zScoreNormalizer;
   }
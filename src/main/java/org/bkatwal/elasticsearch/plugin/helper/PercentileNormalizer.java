@@ -0,0 +1,190 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.elasticsearch.search.aggregations.metrics.TDigestState;
+
+public class PercentileNormalizer implements Normalizer {
+
+  @Override
+  public TopDocs normalize(
+      TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    int n = scoreDocs.length;
+    if (n == 0) {
+      return topDocs;
+    }
+    ScoreKernel kernel = context.getKernel();
+    TDigestState sketch = context.getHitSketch();
+    if (sketch != null) {
+      normalize(scoreDocs, sketch, context);
+      return topDocs;
+    }
+    if (n == 1) {
+      context.startKernel();
+      scoreDocs[0].score = kernel.apply(context.getMaxScore());
+      if (context.isExplain()) {
+        context.setExplainer(ScoreExplainer.singleDoc());
+      }
+      return topDocs;
+    }
+
+    // score and position are packed into one long, so the sort runs on primitives and equal
+    // scores end up next to each other. The window usually comes sorted by score, descending,
+    // filled back to front it is then in order already and the sort is skipped. The order of
+    // tied docs does not matter, they share their rank.
+    long[] ranks = ScoreBuffers.get().ranks(n);
+    boolean sorted = true;
+    int previous = Integer.MAX_VALUE;
+    for (int i = n - 1, position = 0; i >= 0; i--, position++) {
+      int bits = ScoreSelection.sortableBits(scoreDocs[position].score);
+      ranks[i] = ((long) bits << 32) | position;
+      sorted &= bits <= previous;
+      previous = bits;
+    }
+    if (!sorted) {
+      ScoreSelection.sort(ranks, 0, n);
+    }
+    context.startKernel();
+    if ((int) (ranks[0] >>> 32) == (int) (ranks[n - 1] >>> 32)) {
+      context.markAllScoresSame();
+      if (context.isExplain()) {
+        context.setExplainer(ScoreExplainer.sameScore(scoreDocs[0].score));
+      }
+      float sameScore = context.getSameScore();
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        scoreDoc.score = sameScore;
+      }
+      return topDocs;
+    }
+
+    // tied scores share the mid rank of their run, the percentile rank runs from 0 for the
+    // lowest score to 1 for the highest and is mapped onto [min_score, max_score]
+    float newMin = context.getMinScore();
+    float scale = (context.getMaxScore() - newMin) / (2.0f * (n - 1));
+    int start = 0;
+    while (start < n) {
+      int bits = (int) (ranks[start] >>> 32);
+      int end = start + 1;
+      while (end < n && (int) (ranks[end] >>> 32) == bits) {
+        end++;
+      }
+      float score = kernel.apply((start + end - 1) * scale + newMin);
+      for (int i = start; i < end; i++) {
+        scoreDocs[(int) ranks[i]].score = score;
+      }
+      start = end;
+    }
+    if (context.isExplain()) {
+      context.setExplainer(explainer(scoreDocs, ranks, scale));
+    }
+    return topDocs;
+  }
+
+  /**
+   * maps every score to its percentile rank among all hits of the shard, read from the quantile
+   * sketch of `stats_source` [all_hits], onto [min_score, max_score].
+   */
+  private static void normalize(
+      ScoreDoc[] scoreDocs,
+      TDigestState sketch,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    ScoreStats hitStats = context.getHitStats();
+    context.startKernel();
+    if (hitStats.getMin() == hitStats.getMax()) {
+      context.markAllScoresSame();
+      if (context.isExplain()) {
+        context.setExplainer(ScoreExplainer.sameScore(hitStats.getMin()));
+      }
+      float sameScore = context.getSameScore();
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        scoreDoc.score = sameScore;
+      }
+      return;
+    }
+    ScoreKernel kernel = context.getKernel();
+    float newMin = context.getMinScore();
+    float range = context.getMaxScore() - newMin;
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      scoreDoc.score = kernel.apply((float) sketch.cdf(scoreDoc.score) * range + newMin);
+    }
+    if (context.isExplain()) {
+      context.setExplainer(
+          (doc, source, c) -> {
+            float rank = (float) sketch.cdf(source.getValue().floatValue());
+            return c.explainFactor(
+                Explanation.match(
+                    rank * range + c.getMinScore(),
+                    "percentile, rank * (max_score - min_score) + min_score",
+                    source,
+                    Explanation.match(rank, "percentile rank among all hits of the shard"),
+                    Explanation.match(hitStats.getCount(), "n, hits of the shard")));
+          });
+    }
+  }
+
+  /** captures the mid rank of every doc, so explaining a doc is a lookup by its id. */
+  private static ScoreExplainer explainer(ScoreDoc[] scoreDocs, long[] ranks, float scale) {
+    int n = scoreDocs.length;
+    // twice the mid rank, the sum of the first and the last rank of the run of the doc
+    IntIntHashMap rankSums = new IntIntHashMap(n);
+    int start = 0;
+    while (start < n) {
+      int bits = (int) (ranks[start] >>> 32);
+      int end = start + 1;
+      while (end < n && (int) (ranks[end] >>> 32) == bits) {
+        end++;
+      }
+      for (int i = start; i < end; i++) {
+        rankSums.put(scoreDocs[(int) ranks[i]].doc, start + end - 1);
+      }
+      start = end;
+    }
+    return (doc, source, context) -> {
+      int index = rankSums.indexOf(doc);
+      if (!rankSums.indexExists(index)) {
+        return null;
+      }
+      int rankSum = rankSums.indexGet(index);
+      return context.explainFactor(
+          Explanation.match(
+              rankSum * scale + context.getMinScore(),
+              "percentile, mid rank / (n - 1) * (max_score - min_score) + min_score",
+              source,
+              Explanation.match(rankSum * 0.5f, "mid rank of the score, from 0"),
+              Explanation.match(n, "n, docs in the window")));
+    };
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.unsigned(factorMode, factor);
+  }
+}
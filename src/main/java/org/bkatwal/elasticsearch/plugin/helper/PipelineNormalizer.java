@@ -0,0 +1,49 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+/** runs the `pipeline` compiled into the rescore context, see NormalizerPipeline. */
+public class PipelineNormalizer implements Normalizer {
+
+  @Override
+  public TopDocs normalize(
+      TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    NormalizerPipeline pipeline = context.getPipeline();
+    if (pipeline == null) {
+      throw new IllegalStateException("`normalizer_type` [pipeline] requires a `pipeline`");
+    }
+    pipeline.normalize(topDocs.scoreDocs, context);
+    return topDocs;
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    // the last stage decides the sign of the output, z_score can leave it negative
+    return ScoreKernel.signed(factorMode, factor);
+  }
+}
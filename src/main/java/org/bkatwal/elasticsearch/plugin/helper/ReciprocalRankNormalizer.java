@@ -0,0 +1,119 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import com.carrotsearch.hppc.IntFloatHashMap;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+/**
+ * reciprocal rank normalizer, a doc at rank r of the window (starting at 1) scores 1 / (k + r)
+ * where k is `rank_constant`. Only the order of the window matters, so outliers do not move the
+ * other docs. Docs with the same score keep their window order.
+ */
+public class ReciprocalRankNormalizer implements Normalizer {
+
+  @Override
+  public TopDocs normalize(
+      TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    ScoreKernel kernel = context.getKernel();
+    float k = context.getRankConstant();
+
+    // the first pass hands over a window sorted by score, so the rank is the position
+    int sortedUpTo = 1;
+    while (sortedUpTo < scoreDocs.length
+        && scoreDocs[sortedUpTo].score <= scoreDocs[sortedUpTo - 1].score) {
+      sortedUpTo++;
+    }
+    // the denominator is counted up as a float, converting the int rank for every doc costs
+    // more than the division. Ranks stay exact far beyond any rescore window.
+    float denominator = k;
+    if (sortedUpTo >= scoreDocs.length) {
+      context.startKernel();
+      if (context.isExplain()) {
+        context.setExplainer(explainer(scoreDocs, null, k));
+      }
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        denominator += 1.0f;
+        scoreDoc.score = kernel.apply(1.0f / denominator);
+      }
+      return topDocs;
+    }
+
+    // otherwise sort the positions by score, descending, with the position as tie breaker.
+    // Score and position are packed into one long, so the sort runs on primitives.
+    int n = scoreDocs.length;
+    long[] ranks = ScoreBuffers.get().ranks(n);
+    for (int i = 0; i < n; i++) {
+      ranks[i] = ((long) ~ScoreSelection.sortableBits(scoreDocs[i].score) << 32) | i;
+    }
+    ScoreSelection.sort(ranks, 0, n);
+    context.startKernel();
+    if (context.isExplain()) {
+      context.setExplainer(explainer(scoreDocs, ranks, k));
+    }
+    for (int i = 0; i < n; i++) {
+      denominator += 1.0f;
+      scoreDocs[(int) ranks[i]].score = kernel.apply(1.0f / denominator);
+    }
+    return topDocs;
+  }
+
+  /**
+   * captures the denominator of every doc, so explaining a doc is a lookup by its id.
+   *
+   * @param ranks positions of the docs by rank, null if the window is sorted by score
+   */
+  private static ScoreExplainer explainer(ScoreDoc[] scoreDocs, long[] ranks, float k) {
+    IntFloatHashMap denominators = new IntFloatHashMap(scoreDocs.length);
+    float denominator = k;
+    for (int i = 0; i < scoreDocs.length; i++) {
+      denominator += 1.0f;
+      denominators.put(scoreDocs[ranks == null ? i : (int) ranks[i]].doc, denominator);
+    }
+    return (doc, source, context) -> {
+      int index = denominators.indexOf(doc);
+      if (!denominators.indexExists(index)) {
+        return null;
+      }
+      float docDenominator = denominators.indexGet(index);
+      return context.explainFactor(
+          Explanation.match(
+              1.0f / docDenominator,
+              "rrf, 1 / (rank_constant + rank)",
+              source,
+              Explanation.match(k, "rank_constant"),
+              Explanation.match(Math.round(docDenominator - k), "rank of the doc in the window")));
+    };
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.unsigned(factorMode, factor);
+  }
+}
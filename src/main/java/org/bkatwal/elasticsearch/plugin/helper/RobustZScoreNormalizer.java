@@ -0,0 +1,129 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+public class RobustZScoreNormalizer implements Normalizer {
+
+  // makes the median absolute deviation a consistent estimator of the standard deviation of
+  // normally distributed scores
+  static final double MAD_SCALE = 1.4826;
+  // same for the mean absolute deviation, sqrt(pi / 2)
+  private static final double MEAN_AD_SCALE = 1.2533;
+
+  @Override
+  public TopDocs normalize(
+      TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    int n = scoreDocs.length;
+    if (n == 0) {
+      return topDocs;
+    }
+
+    // one buffer holds the scores for the median and then their deviations for the MAD
+    float[] buffer = ScoreBuffers.get().scores(scoreDocs);
+    float median = median(buffer, n);
+    double absDeviationSum = 0;
+    for (int i = 0; i < n; i++) {
+      float deviation = Math.abs(buffer[i] - median);
+      buffer[i] = deviation;
+      absDeviationSum += deviation;
+    }
+    double sd = MAD_SCALE * median(buffer, n);
+    String spread = "median absolute deviation * " + MAD_SCALE;
+    if (sd == 0.0) {
+      // more than half of the window ties on the median
+      sd = MEAN_AD_SCALE * absDeviationSum / n;
+      spread = "mean absolute deviation * " + MEAN_AD_SCALE;
+    }
+    if (sd == 0.0) {
+      context.markAllScoresSame();
+      sd = 1.0;
+      spread = "1 as all scores of the window are equal";
+    }
+
+    context.startKernel();
+    ScoreKernel kernel = context.getKernel();
+    float scale = (float) (1.0 / sd);
+    float limit = context.getWinsorize();
+    if (limit == 0) {
+      kernel.apply(scoreDocs, median, scale, 0.0f);
+    } else {
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        float z = (scoreDoc.score - median) * scale;
+        scoreDoc.score = kernel.apply(Math.max(-limit, Math.min(limit, z)));
+      }
+    }
+    if (context.isExplain()) {
+      context.setExplainer(explainer(median, sd, spread));
+    }
+    return topDocs;
+  }
+
+  private static ScoreExplainer explainer(float median, double sd, String spread) {
+    float scale = (float) (1.0 / sd);
+    return (doc, source, context) -> {
+      float score = source.getValue().floatValue();
+      float limit = context.getWinsorize();
+      Explanation z =
+          Explanation.match(
+              limit == 0
+                  ? (score - median) * scale
+                  : Math.max(-limit, Math.min(limit, (score - median) * scale)),
+              limit == 0
+                  ? "robust_z, (score - median) / scaled MAD"
+                  : "robust_z, (score - median) / scaled MAD, winsorized to [" + limit + "]",
+              source,
+              Explanation.match(median, "median of the window"),
+              Explanation.match(sd, "scaled MAD, " + spread));
+      return context.explainFactor(z);
+    };
+  }
+
+  /** @return median of {@code values[0, n)}, reorders the values */
+  static float median(float[] values, int n) {
+    int half = n >>> 1;
+    float upper = ScoreSelection.select(values, 0, n, half);
+    if ((n & 1) == 1) {
+      return upper;
+    }
+    // selection left the lower half in front of the upper middle, its largest value is the
+    // lower middle
+    float lower = values[0];
+    for (int i = 1; i < half; i++) {
+      lower = Math.max(lower, values[i]);
+    }
+    return (lower + upper) * 0.5f;
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.signed(factorMode, factor);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * primitive scratch arrays of the normalizers, confined to the search thread and reused from
+ * rescore to rescore, so normalizing a window allocates nothing per doc. The arrays grow to the
+ * largest window the thread has seen, up to {@link #MAX_RETAINED} docs. Larger windows get an
+ * array of their own that is left to the garbage collector, so one huge window does not pin
+ * its buffers on every search thread.
+ *
+ * <p>A buffer is only valid until the next call on the same thread, a normalizer must be done
+ * with it before it returns.
+ */
+final class ScoreBuffers {
+
+  static final int MAX_RETAINED = 1 << 16;
+
+  private static final ThreadLocal<ScoreBuffers> BUFFERS =
+      ThreadLocal.withInitial(ScoreBuffers::new);
+
+  private float[] scores = new float[0];
+  private float[] values = new float[0];
+  private long[] ranks = new long[0];
+
+  private ScoreBuffers() {}
+
+  /** @return buffers of the calling thread */
+  static ScoreBuffers get() {
+    return BUFFERS.get();
+  }
+
+  /** @return scores of the docs copied to {@code [0, scoreDocs.length)} of a reused buffer */
+  float[] scores(ScoreDoc[] scoreDocs) {
+    int n = scoreDocs.length;
+    float[] buffer = scores;
+    if (buffer.length < n) {
+      buffer = new float[ArrayUtil.oversize(n, Float.BYTES)];
+      if (n <= MAX_RETAINED) {
+        scores = buffer;
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      buffer[i] = scoreDocs[i].score;
+    }
+    return buffer;
+  }
+
+  /**
+   * @return reused buffer of at least n floats, its content is undefined. Separate from {@link
+   *     #scores}, so both can be used at the same time.
+   */
+  float[] values(int n) {
+    float[] buffer = values;
+    if (buffer.length < n) {
+      buffer = new float[ArrayUtil.oversize(n, Float.BYTES)];
+      if (n <= MAX_RETAINED) {
+        values = buffer;
+      }
+    }
+    return buffer;
+  }
+
+  /** @return reused buffer of at least n longs, its content is undefined */
+  long[] ranks(int n) {
+    long[] buffer = ranks;
+    if (buffer.length < n) {
+      buffer = new long[ArrayUtil.oversize(n, Long.BYTES)];
+      if (n <= MAX_RETAINED) {
+        ranks = buffer;
+      }
+    }
+    return buffer;
+  }
+}
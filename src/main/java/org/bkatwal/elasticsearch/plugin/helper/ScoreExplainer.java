@@ -0,0 +1,88 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.Explanation;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+/**
+ * Rebuilds the normalized score of a doc from the statistics a normalizer captured while it
+ * rescored the window, so explaining a hit costs O(1) instead of another pass over the window.
+ * Normalizers only capture them if the search explains its hits, see {@link
+ * ScoreNormalizerRescorer.ScoreNormalizerRescorerContext#isExplain()}.
+ */
+@FunctionalInterface
+public interface ScoreExplainer {
+
+  /**
+   * @param doc top level id of the doc
+   * @param source explanation of the score of the doc before the rescore
+   * @param context context the window was rescored with
+   * @return explanation of the final score of the doc, null if the doc was not in the window
+   */
+  Explanation explain(
+      int doc,
+      Explanation source,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context);
+
+  /**
+   * explains the windows in which every doc got the `on_score_same` score.
+   *
+   * @param value the single score of the window
+   */
+  static ScoreExplainer sameScore(float value) {
+    return (doc, source, context) ->
+        Explanation.match(
+            context.getSameScore(),
+            "all scores of the "
+                + statisticsOf(context)
+                + " are ["
+                + value
+                + "], on_score_same ["
+                + context.getOnScoresSame()
+                + "]",
+            source);
+  }
+
+  /** explains the windows of a single doc, which gets `max_score` before the factor. */
+  static ScoreExplainer singleDoc() {
+    return (doc, source, context) ->
+        context.explainFactor(
+            Explanation.match(context.getMaxScore(), "only doc of the window, max_score", source));
+  }
+
+  /** @return what the statistics of the rescore were collected over */
+  static String statisticsOf(ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    if (context.getGlobalStats() != null) {
+      return "windows of all shards";
+    }
+    if (context.getStaticStatsName() != null) {
+      return "static_stats [" + context.getStaticStatsName() + "]";
+    }
+    if (context.getHitStats() != null) {
+      return "all hits of the shard";
+    }
+    return context.getFixedStats() != null ? "window of the first page" : "window";
+  }
+}
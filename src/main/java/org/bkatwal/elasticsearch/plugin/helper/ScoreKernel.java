@@ -0,0 +1,209 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+
+/**
+ * Per request scoring kernel, compiled once from `factor` and `factor_mode` when the rescore
+ * context is built. Every `factor_mode` has its own subclass so the per doc loop has no mode
+ * checks left in it and the JIT sees a single implementation at the call site.
+ */
+public abstract class ScoreKernel {
+
+  protected final float factor;
+
+  ScoreKernel(float factor) {
+    this.factor = factor;
+  }
+
+  /**
+   * kernel for normalizers whose output is never negative, e.g. min_max.
+   *
+   * @param factorMode how to combine the normalized score and the factor
+   * @param factor factor value
+   * @return compiled kernel
+   */
+  public static ScoreKernel unsigned(NormalizerFactorMathOp factorMode, float factor) {
+    switch (factorMode) {
+      case sum:
+        return new Sum(factor);
+      case multiply:
+        return new Multiply(factor);
+      default:
+        return new IncreaseByPercent(factor);
+    }
+  }
+
+  /**
+   * kernel for normalizers that produce negative scores, e.g. z_score. Negative scores are moved
+   * towards zero by the factor instead of being flipped or pushed further down.
+   *
+   * @param factorMode how to combine the normalized score and the factor
+   * @param factor factor value
+   * @return compiled kernel
+   */
+  public static ScoreKernel signed(NormalizerFactorMathOp factorMode, float factor) {
+    switch (factorMode) {
+      case sum:
+        return new Sum(factor);
+      case multiply:
+        return new SignedMultiply(factor);
+      default:
+        return new SignedIncreaseByPercent(factor);
+    }
+  }
+
+  /**
+   * applies the factor to an already normalized score.
+   *
+   * @param normalizedScore normalized score
+   * @return final score
+   */
+  public abstract float apply(float normalizedScore);
+
+  /**
+   * rewrites every score in place to {@code apply((score - shift) * scale + offset)}.
+   *
+   * @param scoreDocs docs to rewrite
+   * @param shift value subtracted from the score, e.g. min or mean
+   * @param scale value the shifted score is multiplied by
+   * @param offset value added after scaling
+   */
+  public final void apply(ScoreDoc[] scoreDocs, float shift, float scale, float offset) {
+    apply(scoreDocs, 0, scoreDocs.length, shift, scale, offset);
+  }
+
+  /**
+   * rewrites the scores of {@code scoreDocs[from, to)} in place, see {@link #apply(ScoreDoc[],
+   * float, float, float)}.
+   */
+  public abstract void apply(
+      ScoreDoc[] scoreDocs, int from, int to, float shift, float scale, float offset);
+
+  private static final class Sum extends ScoreKernel {
+    Sum(float factor) {
+      super(factor);
+    }
+
+    @Override
+    public float apply(float normalizedScore) {
+      return normalizedScore + factor;
+    }
+
+    @Override
+    public void apply(
+        ScoreDoc[] scoreDocs, int from, int to, float shift, float scale, float offset) {
+      for (int i = from; i < to; i++) {
+        ScoreDoc scoreDoc = scoreDocs[i];
+        scoreDoc.score = (scoreDoc.score - shift) * scale + offset + factor;
+      }
+    }
+  }
+
+  private static final class Multiply extends ScoreKernel {
+    Multiply(float factor) {
+      super(factor);
+    }
+
+    @Override
+    public float apply(float normalizedScore) {
+      return normalizedScore * factor;
+    }
+
+    @Override
+    public void apply(
+        ScoreDoc[] scoreDocs, int from, int to, float shift, float scale, float offset) {
+      for (int i = from; i < to; i++) {
+        ScoreDoc scoreDoc = scoreDocs[i];
+        scoreDoc.score = ((scoreDoc.score - shift) * scale + offset) * factor;
+      }
+    }
+  }
+
+  private static final class IncreaseByPercent extends ScoreKernel {
+    IncreaseByPercent(float factor) {
+      super(factor);
+    }
+
+    @Override
+    public float apply(float normalizedScore) {
+      return normalizedScore == 0.0f ? factor : normalizedScore + normalizedScore * factor;
+    }
+
+    @Override
+    public void apply(
+        ScoreDoc[] scoreDocs, int from, int to, float shift, float scale, float offset) {
+      for (int i = from; i < to; i++) {
+        ScoreDoc scoreDoc = scoreDocs[i];
+        scoreDoc.score = apply((scoreDoc.score - shift) * scale + offset);
+      }
+    }
+  }
+
+  private static final class SignedMultiply extends ScoreKernel {
+    SignedMultiply(float factor) {
+      super(factor);
+    }
+
+    @Override
+    public float apply(float normalizedScore) {
+      return normalizedScore >= 0
+          ? normalizedScore * factor
+          : normalizedScore + Math.abs(normalizedScore) * factor;
+    }
+
+    @Override
+    public void apply(
+        ScoreDoc[] scoreDocs, int from, int to, float shift, float scale, float offset) {
+      for (int i = from; i < to; i++) {
+        ScoreDoc scoreDoc = scoreDocs[i];
+        scoreDoc.score = apply((scoreDoc.score - shift) * scale + offset);
+      }
+    }
+  }
+
+  private static final class SignedIncreaseByPercent extends ScoreKernel {
+    SignedIncreaseByPercent(float factor) {
+      super(factor);
+    }
+
+    @Override
+    public float apply(float normalizedScore) {
+      return normalizedScore == 0.0f
+          ? factor
+          : normalizedScore + Math.abs(normalizedScore) * factor;
+    }
+
+    @Override
+    public void apply(
+        ScoreDoc[] scoreDocs, int from, int to, float shift, float scale, float offset) {
+      for (int i = from; i < to; i++) {
+        ScoreDoc scoreDoc = scoreDocs[i];
+        scoreDoc.score = apply((scoreDoc.score - shift) * scale + offset);
+      }
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+/** order statistics on primitive score arrays, without boxing or sorting ScoreDoc objects. */
+final class ScoreSelection {
+
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private ScoreSelection() {}
+
+  /** @return bits of the score that order as ints the way the scores order as floats */
+  static int sortableBits(float score) {
+    int bits = Float.floatToIntBits(score);
+    return bits ^ ((bits >> 31) & 0x7fffffff);
+  }
+
+  /**
+   * moves the k-th smallest of {@code scores[from, to)} to index k, smaller scores before it and
+   * larger after it. Quickselect with a median of three pivot, linear on average.
+   *
+   * @return the k-th smallest score
+   */
+  static float select(float[] scores, int from, int to, int k) {
+    int lo = from;
+    int hi = to - 1;
+    while (hi > lo) {
+      // median of three, the window usually comes sorted by score
+      int mid = (lo + hi) >>> 1;
+      if (scores[mid] < scores[lo]) {
+        swap(scores, mid, lo);
+      }
+      if (scores[hi] < scores[lo]) {
+        swap(scores, hi, lo);
+      }
+      if (scores[hi] < scores[mid]) {
+        swap(scores, hi, mid);
+      }
+      float pivot = scores[mid];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (scores[i] < pivot) {
+          i++;
+        }
+        while (scores[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(scores, i++, j--);
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        break;
+      }
+    }
+    return scores[k];
+  }
+
+  /**
+   * sorts {@code values[from, to)} ascending in place. Unlike {@link
+   * java.util.Arrays#sort(long[])}, which merges presorted runs through a temporary array, this
+   * never allocates: quicksort with a median of three pivot, insertion sort for short ranges and
+   * heapsort once the recursion gets too deep.
+   */
+  static void sort(long[] values, int from, int to) {
+    sort(values, from, to - 1, 2 * (32 - Integer.numberOfLeadingZeros(Math.max(1, to - from))));
+  }
+
+  private static void sort(long[] values, int lo, int hi, int depth) {
+    while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+      if (--depth < 0) {
+        heapSort(values, lo, hi + 1);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      if (values[mid] < values[lo]) {
+        swap(values, mid, lo);
+      }
+      if (values[hi] < values[lo]) {
+        swap(values, hi, lo);
+      }
+      if (values[hi] < values[mid]) {
+        swap(values, hi, mid);
+      }
+      long pivot = values[mid];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (values[i] < pivot) {
+          i++;
+        }
+        while (values[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(values, i++, j--);
+        }
+      }
+      // recurse into the smaller side and loop on the larger one, the stack stays logarithmic
+      if (j - lo < hi - i) {
+        sort(values, lo, j, depth);
+        lo = i;
+      } else {
+        sort(values, i, hi, depth);
+        hi = j;
+      }
+    }
+    for (int i = lo + 1; i <= hi; i++) {
+      long value = values[i];
+      int j = i - 1;
+      while (j >= lo && values[j] > value) {
+        values[j + 1] = values[j];
+        j--;
+      }
+      values[j + 1] = value;
+    }
+  }
+
+  private static void heapSort(long[] values, int from, int to) {
+    int n = to - from;
+    for (int i = (n >>> 1) - 1; i >= 0; i--) {
+      siftDown(values, from, i, n);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      swap(values, from, from + end);
+      siftDown(values, from, 0, end);
+    }
+  }
+
+  private static void siftDown(long[] values, int from, int root, int n) {
+    long value = values[from + root];
+    int child;
+    while ((child = 2 * root + 1) < n) {
+      if (child + 1 < n && values[from + child + 1] > values[from + child]) {
+        child++;
+      }
+      if (values[from + child] <= value) {
+        break;
+      }
+      values[from + root] = values[from + child];
+      root = child;
+    }
+    values[from + root] = value;
+  }
+
+  private static void swap(long[] values, int i, int j) {
+    long tmp = values[i];
+    values[i] = values[j];
+    values[j] = tmp;
+  }
+
+  private static void swap(float[] scores, int i, int j) {
+    float tmp = scores[i];
+    scores[i] = scores[j];
+    scores[j] = tmp;
+  }
+}
@@ -0,0 +1,258 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Count, mean, variance, min and max of the scores in a window, collected in one pass.
+ *
+ * <p>Scores are accumulated in double precision around a shift (the first score of the window),
+ * so large BM25 scores do not cancel out when the variance is taken. The shift keeps the sums
+ * small and the double accumulators keep the rounding error far below float precision without a
+ * division per doc, which a textbook Welford update would need.
+ *
+ * <p>Statistics of separate windows, e.g. of every shard, are combined exactly with {@link
+ * #merge(ScoreStats)}.
+ */
+public final class ScoreStats implements Writeable {
+
+  public static final ScoreStats EMPTY =
+      new ScoreStats(0, 0.0, 0.0, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY);
+
+  private final long count;
+  private final double mean;
+  private final double m2;
+  private final float min;
+  private final float max;
+
+  private ScoreStats(long count, double mean, double m2, float min, float max) {
+    this.count = count;
+    this.mean = mean;
+    this.m2 = m2;
+    this.min = min;
+    this.max = max;
+  }
+
+  public ScoreStats(StreamInput in) throws IOException {
+    count = in.readVLong();
+    mean = in.readDouble();
+    m2 = in.readDouble();
+    min = in.readFloat();
+    max = in.readFloat();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeVLong(count);
+    out.writeDouble(mean);
+    out.writeDouble(m2);
+    out.writeFloat(min);
+    out.writeFloat(max);
+  }
+
+  /**
+   * collects the statistics of all scores in one pass.
+   *
+   * @param scoreDocs window to collect, must not be empty
+   * @return statistics of the window
+   */
+  public static ScoreStats of(ScoreDoc[] scoreDocs) {
+    return of(scoreDocs, 0, scoreDocs.length);
+  }
+
+  /**
+   * collects the statistics of the scores of {@code scoreDocs[from, to)} in one pass.
+   *
+   * @param scoreDocs window to collect
+   * @param from first doc to collect
+   * @param to end of the docs to collect, must be greater than from
+   * @return statistics of the docs
+   */
+  public static ScoreStats of(ScoreDoc[] scoreDocs, int from, int to) {
+    int count = to - from;
+    float shift = scoreDocs[from].score;
+    float min = shift;
+    float max = shift;
+    double sum = 0.0;
+    double sumSq = 0.0;
+    for (int i = from; i < to; i++) {
+      float score = scoreDocs[i].score;
+      double delta = (double) score - shift;
+      sum += delta;
+      sumSq += delta * delta;
+      min = Math.min(min, score);
+      max = Math.max(max, score);
+    }
+    double meanDelta = sum / count;
+    // sum of squared deviations from the mean, never negative but rounding can get it below zero
+    double m2 = Math.max(0.0, sumSq - sum * meanDelta);
+    return new ScoreStats(count, shift + meanDelta, m2, min, max);
+  }
+
+  /**
+   * collects the statistics of the first {@code length} scores in one pass.
+   *
+   * @param scores scores to collect
+   * @param length number of scores to collect
+   * @return statistics of the scores
+   */
+  public static ScoreStats of(float[] scores, int length) {
+    if (length == 0) {
+      return EMPTY;
+    }
+    float shift = scores[0];
+    float min = shift;
+    float max = shift;
+    double sum = 0.0;
+    double sumSq = 0.0;
+    for (int i = 0; i < length; i++) {
+      float score = scores[i];
+      double delta = (double) score - shift;
+      sum += delta;
+      sumSq += delta * delta;
+      min = Math.min(min, score);
+      max = Math.max(max, score);
+    }
+    double meanDelta = sum / length;
+    double m2 = Math.max(0.0, sumSq - sum * meanDelta);
+    return new ScoreStats(length, shift + meanDelta, m2, min, max);
+  }
+
+  /**
+   * statistics of sums accumulated around a shift, see {@link ScoreStatsCollector}.
+   *
+   * @param count number of scores
+   * @param shift value subtracted from every score before it was summed
+   * @param sum sum of the shifted scores
+   * @param sumSq sum of the squared shifted scores
+   * @return statistics of the scores, {@link #EMPTY} if there were none
+   */
+  static ScoreStats of(long count, float shift, double sum, double sumSq, float min, float max) {
+    if (count == 0) {
+      return EMPTY;
+    }
+    double meanDelta = sum / count;
+    double m2 = Math.max(0.0, sumSq - sum * meanDelta);
+    return new ScoreStats(count, shift + meanDelta, m2, min, max);
+  }
+
+  /**
+   * statistics registered ahead of the search instead of collected from a window, see {@link
+   * StaticScoreStats}. Values that are not registered are NaN.
+   *
+   * @param mean mean of the scores
+   * @param standardDeviation population standard deviation of the scores
+   * @param min lowest score
+   * @param max highest score
+   * @return statistics standing for a window of one doc with the given moments
+   */
+  public static ScoreStats registered(
+      double mean, double standardDeviation, float min, float max) {
+    return new ScoreStats(1, mean, standardDeviation * standardDeviation, min, max);
+  }
+
+  /**
+   * combines the statistics of two disjoint windows, as if they were collected over both windows
+   * at once (Chan et al. parallel variance).
+   *
+   * @param other statistics of the other window
+   * @return statistics of both windows
+   */
+  public ScoreStats merge(ScoreStats other) {
+    if (other.count == 0) {
+      return this;
+    }
+    if (count == 0) {
+      return other;
+    }
+    long total = count + other.count;
+    double delta = other.mean - mean;
+    double mergedMean = mean + delta * other.count / total;
+    double mergedM2 = m2 + other.m2 + delta * delta * ((double) count * other.count / total);
+    return new ScoreStats(
+        total, mergedMean, mergedM2, Math.min(min, other.min), Math.max(max, other.max));
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  /** @return population variance of the scores */
+  public double getVariance() {
+    return count == 0 ? 0.0 : m2 / count;
+  }
+
+  /** @return population standard deviation of the scores */
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  public double getSum() {
+    return mean * count;
+  }
+
+  public double getSumOfSquares() {
+    return m2 + mean * mean * count;
+  }
+
+  public float getMin() {
+    return min;
+  }
+
+  public float getMax() {
+    return max;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ScoreStats that = (ScoreStats) o;
+    return count == that.count
+        && Double.compare(that.mean, mean) == 0
+        && Double.compare(that.m2, m2) == 0
+        && Float.compare(that.min, min) == 0
+        && Float.compare(that.max, max) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(count, mean, m2, min, max);
+  }
+}
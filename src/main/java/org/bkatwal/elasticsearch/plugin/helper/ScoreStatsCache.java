@@ -0,0 +1,172 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * node wide cache of window statistics, keyed by the shard reader and a key of the query the
+ * coordinating node computed. Later pages of the same search normalize against the statistics of
+ * the first page, so a doc keeps its normalized score from page to page. Entries of a reader are
+ * dropped when the reader is closed, i.e. after a refresh made a new one. The keys are also tracked
+ * per reader, so closing a reader touches its own entries only, not the whole cache.
+ */
+public final class ScoreStatsCache {
+
+  public static final Setting<Integer> CACHE_SIZE =
+      Setting.intSetting("score_normalizer.stats_cache.size", 10000, 0, Setting.Property.NodeScope);
+  public static final Setting<TimeValue> CACHE_EXPIRE =
+      Setting.positiveTimeSetting(
+          "score_normalizer.stats_cache.expire",
+          TimeValue.timeValueMinutes(5),
+          Setting.Property.NodeScope);
+
+  private static volatile ScoreStatsCache instance;
+
+  private final Cache<Key, ScoreStats> cache;
+  private final Map<IndexReader.CacheKey, Set<Key>> readerKeys = new ConcurrentHashMap<>();
+
+  public ScoreStatsCache(Settings settings) {
+    this.cache =
+        CacheBuilder.<Key, ScoreStats>builder()
+            .setMaximumWeight(CACHE_SIZE.get(settings))
+            .setExpireAfterAccess(CACHE_EXPIRE.get(settings))
+            .removalListener(
+                notification -> {
+                  // evicted or expired entries leave the key set of their reader as well
+                  Key key = notification.getKey();
+                  Set<Key> keys = readerKeys.get(key.readerKey);
+                  if (keys != null) {
+                    keys.remove(key);
+                  }
+                })
+            .build();
+  }
+
+  /** sets the cache of this node, called once when the plugin creates its components. */
+  public static void init(ScoreStatsCache cache) {
+    instance = cache;
+  }
+
+  /** @return cache of this node, null if the plugin components are not created, e.g. in tests */
+  public static ScoreStatsCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * returns the cached statistics of the query on the reader, or collects and caches them.
+   *
+   * @param reader top level reader of the shard
+   * @param queryKey key of the query, computed by the coordinating node
+   * @param loader collects the statistics of the window
+   * @return statistics to normalize against
+   */
+  public ScoreStats computeIfAbsent(
+      IndexReader reader, String queryKey, Supplier<ScoreStats> loader) {
+    IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+    if (cacheHelper == null) {
+      return loader.get();
+    }
+    Set<Key> keys = keysOf(cacheHelper);
+    try {
+      return cache.computeIfAbsent(
+          new Key(cacheHelper.getKey(), queryKey),
+          key -> {
+            keys.add(key);
+            return loader.get();
+          });
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("failed to collect score statistics", e.getCause());
+    }
+  }
+
+  /** @return keys cached for the reader, the first call registers the close listener */
+  private Set<Key> keysOf(IndexReader.CacheHelper cacheHelper) {
+    Set<Key> keys = readerKeys.get(cacheHelper.getKey());
+    if (keys != null) {
+      return keys;
+    }
+    Set<Key> added = ConcurrentHashMap.newKeySet();
+    keys = readerKeys.putIfAbsent(cacheHelper.getKey(), added);
+    if (keys != null) {
+      return keys;
+    }
+    cacheHelper.addClosedListener(this::invalidate);
+    return added;
+  }
+
+  private void invalidate(IndexReader.CacheKey readerKey) {
+    Set<Key> keys = readerKeys.remove(readerKey);
+    if (keys == null) {
+      return;
+    }
+    for (Key key : keys) {
+      cache.invalidate(key);
+    }
+  }
+
+  /** @return number of cached entries */
+  public int count() {
+    return cache.count();
+  }
+
+  private static final class Key {
+    private final IndexReader.CacheKey readerKey;
+    private final String queryKey;
+
+    Key(IndexReader.CacheKey readerKey, String queryKey) {
+      this.readerKey = readerKey;
+      this.queryKey = queryKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return readerKey == key.readerKey && queryKey.equals(key.queryKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(readerKey, queryKey);
+    }
+  }
+}
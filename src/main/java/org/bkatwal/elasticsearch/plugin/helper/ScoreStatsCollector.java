@@ -0,0 +1,114 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.elasticsearch.search.aggregations.metrics.TDigestState;
+
+import java.io.IOException;
+
+/**
+ * collects the statistics of the scores of all hits of a shard, next to the top docs collector of
+ * the query phase. Rescores with `stats_source` [all_hits] normalize their window against them, so
+ * the statistics are not biased towards the top hits and the window can stay small.
+ *
+ * <p>Scores are accumulated around the first score like {@link ScoreStats} does, a hit
+ * costs a few additions. The quantile sketch is only kept for the percentile normalizer.
+ */
+public final class ScoreStatsCollector implements Collector {
+
+  // compression of the sketch, the default of the percentiles aggregation
+  static final double SKETCH_COMPRESSION = 100.0;
+
+  private long count;
+  private float shift;
+  private double sum;
+  private double sumSq;
+  private float min = Float.POSITIVE_INFINITY;
+  private float max = Float.NEGATIVE_INFINITY;
+  private TDigestState sketch;
+
+  /** keeps a quantile sketch of the scores as well, must be called before the collection. */
+  public void enableSketch() {
+    if (sketch == null) {
+      sketch = new TDigestState(SKETCH_COMPRESSION);
+    }
+  }
+
+  @Override
+  public ScoreMode scoreMode() {
+    // every hit has to be scored, which rules out skipping non-competitive blocks
+    return ScoreMode.COMPLETE;
+  }
+
+  @Override
+  public LeafCollector getLeafCollector(LeafReaderContext context) {
+    return new LeafCollector() {
+      private Scorable scorer;
+
+      @Override
+      public void setScorer(Scorable scorer) {
+        this.scorer = scorer;
+      }
+
+      @Override
+      public void collect(int doc) throws IOException {
+        add(scorer.score());
+      }
+    };
+  }
+
+  void add(float score) {
+    if (count++ == 0) {
+      shift = score;
+    }
+    double delta = (double) score - shift;
+    sum += delta;
+    sumSq += delta * delta;
+    min = Math.min(min, score);
+    max = Math.max(max, score);
+    if (sketch != null) {
+      sketch.add(score);
+    }
+  }
+
+  /** @return number of hits collected */
+  public long getCount() {
+    return count;
+  }
+
+  /** @return statistics of the scores of all hits, {@link ScoreStats#EMPTY} if there were none */
+  public ScoreStats getStats() {
+    return ScoreStats.of(count, shift, sum, sumSq, min, max);
+  }
+
+  /** @return quantile sketch of the scores of all hits, null if it is not enabled */
+  public TDigestState getSketch() {
+    return sketch;
+  }
+}
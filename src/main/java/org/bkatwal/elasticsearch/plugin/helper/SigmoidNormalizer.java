@@ -0,0 +1,93 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+public class SigmoidNormalizer implements Normalizer {
+
+  @Override
+  public TopDocs normalize(
+      TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    if (scoreDocs.length == 0) {
+      return topDocs;
+    }
+
+    // squashes the z score of every doc into (0, 1), the temperature flattens or sharpens the
+    // curve around the mean
+    ScoreStats stats = context.getFixedStats();
+    if (stats == null) {
+      stats = ScoreStats.of(scoreDocs);
+    }
+    double sd = stats.getStandardDeviation();
+    if (sd == 0.0) {
+      context.markAllScoresSame();
+      sd = 1.0;
+    }
+    context.startKernel();
+    float mean = (float) stats.getMean();
+    float scale = (float) (-1.0 / (sd * context.getTemperature()));
+    ScoreKernel kernel = context.getKernel();
+    if (context.isFastExp()) {
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        scoreDoc.score = kernel.apply(1.0f / (1.0f + FastExp.exp((scoreDoc.score - mean) * scale)));
+      }
+    } else {
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        scoreDoc.score =
+            kernel.apply(1.0f / (1.0f + (float) Math.exp((scoreDoc.score - mean) * scale)));
+      }
+    }
+    if (context.isExplain()) {
+      context.setExplainer(explainer(mean, sd, scale));
+    }
+    return topDocs;
+  }
+
+  private static ScoreExplainer explainer(float mean, double sd, float scale) {
+    return (doc, source, context) -> {
+      float exponent = (source.getValue().floatValue() - mean) * scale;
+      float exp = context.isFastExp() ? FastExp.exp(exponent) : (float) Math.exp(exponent);
+      String of = ScoreExplainer.statisticsOf(context);
+      return context.explainFactor(
+          Explanation.match(
+              1.0f / (1.0f + exp),
+              "sigmoid, 1 / (1 + exp(-(score - mean) / (standard deviation * temperature)))",
+              source,
+              Explanation.match(mean, "mean of the " + of),
+              Explanation.match(sd, "standard deviation of the " + of),
+              Explanation.match(context.getTemperature(), "temperature")));
+    };
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.unsigned(factorMode, factor);
+  }
+}
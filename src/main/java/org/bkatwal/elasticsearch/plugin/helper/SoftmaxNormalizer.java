@@ -0,0 +1,91 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+public class SoftmaxNormalizer implements Normalizer {
+
+  @Override
+  public TopDocs normalize(
+      TopDocs topDocs, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context) {
+    ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+    if (scoreDocs.length == 0) {
+      return topDocs;
+    }
+
+    // the max is subtracted before exp, so the largest term is 1 and nothing overflows
+    float max = scoreDocs[0].score;
+    for (int i = 1; i < scoreDocs.length; i++) {
+      max = Math.max(max, scoreDocs[i].score);
+    }
+    context.startKernel();
+    float scale = 1.0f / context.getTemperature();
+    double sum = 0;
+    if (context.isFastExp()) {
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        float e = FastExp.exp((scoreDoc.score - max) * scale);
+        scoreDoc.score = e;
+        sum += e;
+      }
+    } else {
+      for (ScoreDoc scoreDoc : scoreDocs) {
+        float e = (float) Math.exp((scoreDoc.score - max) * scale);
+        scoreDoc.score = e;
+        sum += e;
+      }
+    }
+    // sum is at least 1, the top doc contributed e^0
+    context.getKernel().apply(scoreDocs, 0.0f, (float) (1.0 / sum), 0.0f);
+    if (context.isExplain()) {
+      context.setExplainer(explainer(max, sum));
+    }
+    return topDocs;
+  }
+
+  private static ScoreExplainer explainer(float max, double sum) {
+    float inverseSum = (float) (1.0 / sum);
+    return (doc, source, context) -> {
+      float exponent = (source.getValue().floatValue() - max) * (1.0f / context.getTemperature());
+      float exp = context.isFastExp() ? FastExp.exp(exponent) : (float) Math.exp(exponent);
+      return context.explainFactor(
+          Explanation.match(
+              exp * inverseSum,
+              "softmax, exp((score - max) / temperature) / sum",
+              source,
+              Explanation.match(max, "max of the window"),
+              Explanation.match(sum, "sum of exp((score - max) / temperature) over the window"),
+              Explanation.match(context.getTemperature(), "temperature")));
+    };
+  }
+
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.unsigned(factorMode, factor);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * score statistics registered in the settings of an index, e.g. collected offline with the
+ * score_stats aggregation, under `index.score_normalizer.static_stats.<name>.*`:
+ *
+ * <pre>
+ * index.score_normalizer.static_stats.autocomplete.mean: 7.5
+ * index.score_normalizer.static_stats.autocomplete.standard_deviation: 2.25
+ * index.score_normalizer.static_stats.autocomplete.min: 0.5
+ * index.score_normalizer.static_stats.autocomplete.max: 21
+ * </pre>
+ *
+ * <p>A rescore with `static_stats` normalizes against them instead of its window, so it skips the
+ * statistics pass and all shards and pages map a score the same way. The settings are dynamic,
+ * they live in the index metadata of the cluster state and every node holds the parsed sets of
+ * the indices it has shards of.
+ */
+public final class StaticScoreStats {
+
+  public static final String MEAN = "mean";
+  public static final String STANDARD_DEVIATION = "standard_deviation";
+  public static final String MIN = "min";
+  public static final String MAX = "max";
+
+  public static final Setting<Settings> STATIC_STATS =
+      Setting.groupSetting(
+          "index.score_normalizer.static_stats.",
+          StaticScoreStats::parse,
+          Setting.Property.Dynamic,
+          Setting.Property.IndexScope);
+
+  // statistics of the indices with a shard on this node
+  private static final Map<Index, StaticScoreStats> INDICES = new ConcurrentHashMap<>();
+
+  private final Index index;
+  private volatile Map<String, ScoreStats> stats;
+
+  StaticScoreStats(Index index, Settings settings) {
+    this.index = index;
+    this.stats = parse(STATIC_STATS.get(settings));
+  }
+
+  /**
+   * parses the statistics of the index and keeps them until the index is removed from the node.
+   *
+   * @param indexModule module of the index being created
+   */
+  public static void register(IndexModule indexModule) {
+    StaticScoreStats staticStats =
+        new StaticScoreStats(indexModule.getIndex(), indexModule.getSettings());
+    indexModule.addSettingsUpdateConsumer(STATIC_STATS, staticStats::setStats);
+    indexModule.addIndexEventListener(
+        new IndexEventListener() {
+          @Override
+          public void afterIndexRemoved(
+              Index index,
+              IndexSettings indexSettings,
+              IndicesClusterStateService.AllocatedIndices.IndexRemovalReason reason) {
+            // only if no newer index service of the same index registered in between
+            INDICES.remove(index, staticStats);
+          }
+        });
+    INDICES.put(indexModule.getIndex(), staticStats);
+  }
+
+  /** @return statistics of the index, null if the index has no shard on this node */
+  public static StaticScoreStats forIndex(Index index) {
+    return INDICES.get(index);
+  }
+
+  /**
+   * resolves the statistics a normalizer needs on a shard of the index, see {@link #get(String,
+   * NormalizerType)}.
+   *
+   * @throws IllegalArgumentException if the index has no statistics registered under the name
+   */
+  public static ScoreStats resolve(Index index, String name, NormalizerType normalizerType) {
+    StaticScoreStats staticStats = INDICES.get(index);
+    if (staticStats == null) {
+      throw unknown(index, name);
+    }
+    return staticStats.get(name, normalizerType);
+  }
+
+  /**
+   * resolves the statistics a normalizer needs, min_max scales between min and max, z_score and
+   * sigmoid center on the mean and scale by the standard deviation.
+   *
+   * @param name name the statistics are registered under
+   * @param normalizerType normalizer that uses them
+   * @return registered statistics
+   * @throws IllegalArgumentException if no statistics are registered under the name or they lack
+   *     what the normalizer needs
+   */
+  public ScoreStats get(String name, NormalizerType normalizerType) {
+    ScoreStats registered = stats.get(name);
+    if (registered == null) {
+      throw unknown(index, name);
+    }
+    boolean minMax = normalizerType == NormalizerType.min_max;
+    if (minMax ? Float.isNaN(registered.getMin()) : Double.isNaN(registered.getMean())) {
+      throw new IllegalArgumentException(
+          "`static_stats` ["
+              + name
+              + "] of index ["
+              + index.getName()
+              + "] has no ["
+              + (minMax ? MIN + "] and [" + MAX : MEAN + "] and [" + STANDARD_DEVIATION)
+              + "], required by `normalizer_type` ["
+              + normalizerType
+              + "]");
+    }
+    return registered;
+  }
+
+  private static IllegalArgumentException unknown(Index index, String name) {
+    return new IllegalArgumentException(
+        "no `static_stats` [" + name + "] registered for index [" + index.getName() + "]");
+  }
+
+  void setStats(Settings group) {
+    this.stats = parse(group);
+  }
+
+  /**
+   * parses and validates the sets of the group setting, used as its validator as well.
+   *
+   * @param group settings below `index.score_normalizer.static_stats.`
+   * @return statistics by name, values that are not set are NaN
+   * @throws IllegalArgumentException if a set is incomplete or its values are out of range
+   */
+  static Map<String, ScoreStats> parse(Settings group) {
+    if (group.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Settings> sets;
+    try {
+      sets = group.getAsGroups();
+    } catch (SettingsException e) {
+      throw new IllegalArgumentException(
+          "`static_stats` must be set as [" + STATIC_STATS.getKey() + "<name>.<statistic>]", e);
+    }
+    Map<String, ScoreStats> stats = new HashMap<>();
+    for (Map.Entry<String, Settings> set : sets.entrySet()) {
+      stats.put(set.getKey(), parseSet(set.getKey(), set.getValue()));
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+  private static ScoreStats parseSet(String name, Settings set) {
+    for (String key : set.keySet()) {
+      if (!key.equals(MEAN)
+          && !key.equals(STANDARD_DEVIATION)
+          && !key.equals(MIN)
+          && !key.equals(MAX)) {
+        throw new IllegalArgumentException(
+            "unknown statistic [" + key + "] of `static_stats` [" + name + "]");
+      }
+    }
+    double mean = value(name, set, MEAN);
+    double sd = value(name, set, STANDARD_DEVIATION);
+    double min = value(name, set, MIN);
+    double max = value(name, set, MAX);
+    if (Double.isNaN(mean) != Double.isNaN(sd) || Double.isNaN(min) != Double.isNaN(max)) {
+      throw new IllegalArgumentException(
+          "`static_stats` ["
+              + name
+              + "] must set [mean] together with [standard_deviation] and [min] together with "
+              + "[max]");
+    }
+    if (!Double.isNaN(sd) && !(sd > 0)) {
+      throw new IllegalArgumentException(
+          "[standard_deviation] of `static_stats` [" + name + "] must be greater than 0");
+    }
+    if (!Double.isNaN(min) && !(min < max)) {
+      throw new IllegalArgumentException(
+          "[min] of `static_stats` [" + name + "] must be lesser than [max]");
+    }
+    return ScoreStats.registered(mean, sd, (float) min, (float) max);
+  }
+
+  private static double value(String name, Settings set, String key) {
+    String value = set.get(key);
+    if (value == null) {
+      return Double.NaN;
+    }
+    double parsed;
+    try {
+      parsed = Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "[" + key + "] of `static_stats` [" + name + "] must be a number, got [" + value + "]",
+          e);
+    }
+    if (Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+      throw new IllegalArgumentException(
+          "[" + key + "] of `static_stats` [" + name + "] must be finite, got [" + value + "]");
+    }
+    return parsed;
+  }
+}
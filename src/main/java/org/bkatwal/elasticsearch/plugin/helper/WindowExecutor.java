@@ -0,0 +1,199 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.FutureUtils;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BinaryOperator;
+
+/**
+ * node wide executor that splits very large windows into chunks, so the statistics of a window
+ * are collected and its scores rewritten on more than one thread. Windows below
+ * `score_normalizer.parallel.min_window` stay on the search thread. The pool is bounded by
+ * `thread_pool.score_normalizer.size`, chunks it rejects run on the search thread, so a busy
+ * pool slows the large windows down but never holds up the searches.
+ */
+public final class WindowExecutor {
+
+  public static final String THREAD_POOL_NAME = "score_normalizer";
+  // a chunk has to be this large to pay for handing it to another thread
+  static final int MIN_CHUNK = 8192;
+  public static final Setting<Integer> MIN_WINDOW =
+      Setting.intSetting(
+          "score_normalizer.parallel.min_window",
+          32768,
+          2 * MIN_CHUNK,
+          Setting.Property.NodeScope);
+  private static final int QUEUE_SIZE = 64;
+
+  private static volatile WindowExecutor instance;
+
+  private final Executor executor;
+  private final int parallelism;
+  private final int minWindow;
+
+  /**
+   * @param executor executor of the chunks
+   * @param parallelism threads of the executor, the search thread runs one more chunk
+   * @param minWindow smallest window split into chunks
+   */
+  public WindowExecutor(Executor executor, int parallelism, int minWindow) {
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.minWindow = minWindow;
+  }
+
+  /** @return builder of the bounded pool of the chunks, half the processors and at most 4 */
+  public static FixedExecutorBuilder executorBuilder(Settings settings) {
+    int size = Math.max(1, Math.min(4, EsExecutors.numberOfProcessors(settings) / 2));
+    return new FixedExecutorBuilder(
+        settings, THREAD_POOL_NAME, size, QUEUE_SIZE, "thread_pool." + THREAD_POOL_NAME);
+  }
+
+  /** sets the executor of this node, called once when the plugin creates its components. */
+  public static void init(WindowExecutor windowExecutor) {
+    instance = windowExecutor;
+  }
+
+  /** @return executor of this node, null if the plugin components are not created, e.g. in tests */
+  public static WindowExecutor getInstance() {
+    return instance;
+  }
+
+  /**
+   * collects the statistics of a window, chunk by chunk if the window is large enough. The
+   * statistics of the chunks are merged in window order.
+   *
+   * @param scoreDocs window to collect, must not be empty
+   * @return statistics of the window
+   */
+  public static ScoreStats stats(ScoreDoc[] scoreDocs) {
+    WindowExecutor executor = instance;
+    int chunks = executor == null ? 1 : executor.chunks(scoreDocs.length);
+    if (chunks == 1) {
+      return ScoreStats.of(scoreDocs);
+    }
+    return executor.reduce(
+        scoreDocs.length,
+        chunks,
+        (from, to) -> ScoreStats.of(scoreDocs, from, to),
+        ScoreStats::merge);
+  }
+
+  /**
+   * rewrites the scores of a window, chunk by chunk if the window is large enough, see {@link
+   * ScoreKernel#apply(ScoreDoc[], float, float, float)}.
+   */
+  public static void apply(
+      ScoreKernel kernel, ScoreDoc[] scoreDocs, float shift, float scale, float offset) {
+    WindowExecutor executor = instance;
+    int chunks = executor == null ? 1 : executor.chunks(scoreDocs.length);
+    if (chunks == 1) {
+      kernel.apply(scoreDocs, shift, scale, offset);
+      return;
+    }
+    executor.map(
+        scoreDocs.length,
+        chunks,
+        (from, to) -> {
+          kernel.apply(scoreDocs, from, to, shift, scale, offset);
+          return null;
+        });
+  }
+
+  /**
+   * @param size docs in the window
+   * @return chunks to split the window into, 1 if it is normalized on the calling thread
+   */
+  public int chunks(int size) {
+    if (size < minWindow) {
+      return 1;
+    }
+    return Math.max(1, Math.min(parallelism + 1, size / MIN_CHUNK));
+  }
+
+  /**
+   * runs the task over every chunk of a window, the calling thread takes the first chunk and
+   * any chunk the pool rejects.
+   *
+   * @param size docs in the window
+   * @param chunks chunks to split the window into, see {@link #chunks(int)}
+   * @param task task run over each chunk
+   * @return results of the chunks, in the order of the chunks in the window
+   */
+  public <T> List<T> map(int size, int chunks, ChunkTask<T> task) {
+    List<FutureTask<T>> forked = new ArrayList<>(chunks - 1);
+    for (int chunk = 1; chunk < chunks; chunk++) {
+      int from = bound(size, chunks, chunk);
+      int to = bound(size, chunks, chunk + 1);
+      FutureTask<T> future = new FutureTask<>(() -> task.apply(from, to));
+      forked.add(future);
+      try {
+        executor.execute(future);
+      } catch (RejectedExecutionException e) {
+        future.run();
+      }
+    }
+    List<T> results = new ArrayList<>(chunks);
+    results.add(task.apply(0, bound(size, chunks, 1)));
+    for (FutureTask<T> future : forked) {
+      results.add(FutureUtils.get(future));
+    }
+    return results;
+  }
+
+  /**
+   * runs the task over every chunk of a window and merges the results in window order.
+   *
+   * @param merge merges the result of the chunks before a chunk with the result of the chunk
+   */
+  public <T> T reduce(int size, int chunks, ChunkTask<T> task, BinaryOperator<T> merge) {
+    List<T> results = map(size, chunks, task);
+    T result = results.get(0);
+    for (int i = 1; i < results.size(); i++) {
+      result = merge.apply(result, results.get(i));
+    }
+    return result;
+  }
+
+  private static int bound(int size, int chunks, int chunk) {
+    return (int) ((long) size * chunk / chunks);
+  }
+
+  /** task over the docs {@code [from, to)} of a window. */
+  @FunctionalInterface
+  public interface ChunkTask<T> {
+    T apply(int from, int to);
+  }
+}
@@ -23,6 +23,7 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.helper;
 
+import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
@@ -38,75 +39,46 @@ public class ZScoreNormalizer implements Normalizer {
     }
 
     ScoreDoc[] scoreDocs = topDocs.scoreDocs;
-    float mean = meanScore(scoreDocs);
-    float sd = standardDeviation(scoreDocs, mean);
-
-    if (sd == 0.0f) {
-      sd = 1.0f;
-    }
-    for (ScoreDoc scoreDoc : scoreDocs) {
-      float normalizedScore = zScore(scoreDoc.score, mean, sd);
-
-      scoreDoc.score =
-          getFinalScore(
-              rescoreContext.getFactorMode(), rescoreContext.getFactor(), normalizedScore);
+    ScoreStats stats = rescoreContext.getFixedStats();
+    if (stats == null) {
+      stats = WindowExecutor.stats(scoreDocs);
     }
-    return topDocs;
-  }
-
-  private float meanScore(ScoreDoc[] scoreDocs) {
+    double sd = stats.getStandardDeviation();
 
-    float total = 0.0f;
-
-    for (ScoreDoc scoreDoc : scoreDocs) {
-      total = total + scoreDoc.score;
+    if (sd == 0.0) {
+      rescoreContext.markAllScoresSame();
+      sd = 1.0;
     }
-
-    return total / scoreDocs.length;
-  }
-
-  private float standardDeviation(ScoreDoc[] scoreDocs, float mean) {
-
-    float totalVariance = 0.0f;
-    for (ScoreDoc scoreDoc : scoreDocs) {
-      float delta = scoreDoc.score - mean;
-      float deltaSq = delta * delta;
-      totalVariance = totalVariance + deltaSq;
+    rescoreContext.startKernel();
+    WindowExecutor.apply(
+        rescoreContext.getKernel(), scoreDocs, (float) stats.getMean(), (float) (1.0 / sd), 0.0f);
+    if (rescoreContext.isExplain()) {
+      rescoreContext.setExplainer(explainer(stats, sd));
     }
-    return (float) Math.sqrt(totalVariance / scoreDocs.length);
+    return topDocs;
   }
 
-  private float zScore(float val, float mean, float sd) {
-
-    return (val - mean) / sd;
+  private static ScoreExplainer explainer(ScoreStats stats, double sd) {
+    float mean = (float) stats.getMean();
+    float scale = (float) (1.0 / sd);
+    return (doc, source, context) -> {
+      String of = ScoreExplainer.statisticsOf(context);
+      return context.explainFactor(
+          Explanation.match(
+              (source.getValue().floatValue() - mean) * scale,
+              "z_score, (score - mean) / standard deviation",
+              source,
+              Explanation.match(mean, "mean of the " + of),
+              Explanation.match(
+                  sd,
+                  stats.getStandardDeviation() == 0.0
+                      ? "standard deviation, 1 as all scores of the " + of + " are equal"
+                      : "standard deviation of the " + of)));
+    };
   }
 
-  private static float getFinalScore(String factorMode, float factor, float normalizedValue) {
-
-    if (factorMode.equals(NormalizerFactorMathOp.sum.name())) {
-      normalizedValue = normalizedValue + factor;
-    } else {
-      float v = normalizedValue + Math.abs(normalizedValue) * factor;
-      if (factorMode.equals(NormalizerFactorMathOp.multiply.name())) {
-        normalizedValue = normalizedValue >= 0 ? normalizedValue * factor : v;
-      } else {
-        if (normalizedValue == 0.0f) {
-          normalizedValue = factor;
-        } else {
-          if (factor < 0 || factor > 1) {
-            throw new IllegalArgumentException(
-                "Invalid `factor` for `factor_mode` "
-                    + "increase_by_percent, "
-                    + "allowed "
-                    + "factor "
-                    + "range "
-                    + "0-1 "
-                    + "including 0 and 1.");
-          }
-          normalizedValue = v;
-        }
-      }
-    }
-    return normalizedValue;
+  @Override
+  public ScoreKernel compile(NormalizerFactorMathOp factorMode, float factor) {
+    return ScoreKernel.signed(factorMode, factor);
   }
 }
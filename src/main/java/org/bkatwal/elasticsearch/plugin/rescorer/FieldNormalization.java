@@ -0,0 +1,59 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import java.util.Arrays;
+
+/**
+ * how the values of a field blended into the normalized score are scaled before they are
+ * weighted. {@code none} takes the value as is, {@code log1p} dampens large values, {@code
+ * min_max} and {@code z_score} scale the values against the docs of the window, like the
+ * normalizers of the same name do with the scores.
+ */
+public enum FieldNormalization {
+  none,
+  log1p,
+  min_max,
+  z_score;
+
+  /**
+   * resolves the request value of `normalization`.
+   *
+   * @param value value passed in the request
+   * @return matching FieldNormalization
+   * @throws IllegalArgumentException if the value is not one of the allowed values
+   */
+  public static FieldNormalization fromString(String value) {
+    for (FieldNormalization v : values()) {
+      if (v.name().equals(value)) {
+        return v;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Invalid `normalization` ["
+            + value
+            + "], allowed values are "
+            + Arrays.toString(values()));
+  }
+}
@@ -0,0 +1,354 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.search.rescore.RescoreContext;
+import org.elasticsearch.search.rescore.Rescorer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+public class FusionRescorer implements Rescorer {
+
+  public static final Rescorer INSTANCE = new FusionRescorer();
+
+  private static final int MAX_RETAINED = 1 << 16;
+
+  private static final ThreadLocal<ScoreDoc[]> MATCHED =
+      ThreadLocal.withInitial(() -> new ScoreDoc[0]);
+
+  private static final Comparator<ScoreDoc> DOC_ORDER = Comparator.comparingInt(d -> d.doc);
+  private static final Comparator<ScoreDoc> SCORE_ORDER =
+      (a, b) -> {
+        int cmp = Float.compare(b.score, a.score);
+        return cmp != 0 ? cmp : Integer.compare(a.doc, b.doc);
+      };
+
+  /**
+   * replaces the score of every doc in the window with the weighted sum of its normalized first
+   * pass score and normalized sub-query scores. Scores of a sub-query are normalized over the
+   * docs of the window it matches, docs it does not match get nothing from it.
+   *
+   * @param topDocs top docs matched for given query
+   * @param searcher Index Searcher
+   * @param rescoreContext Context/params needed for rescore function.
+   * @return fused docs of the shard, sorted by the fused score
+   */
+  @Override
+  public TopDocs rescore(TopDocs topDocs, IndexSearcher searcher, RescoreContext rescoreContext)
+      throws IOException {
+    assert rescoreContext != null;
+    if (topDocs == null || topDocs.scoreDocs.length == 0) {
+      return topDocs;
+    }
+    FusionRescoreContext context = (FusionRescoreContext) rescoreContext;
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization =
+        context.getNormalization();
+    ScoreDoc[] window = topDocs.scoreDocs;
+    Query[] queries = context.getSubQueries();
+    float queryWeight = context.getQueryWeight();
+
+    // the normalizers rewrite scores in place without moving docs, so the first pass is
+    // normalized in score order and the window then holds the fused score of every doc
+    boolean firstPass = queryWeight != 0.0f;
+    if (firstPass) {
+      normalize(topDocs.totalHits, window, normalization);
+    }
+    Arrays.sort(window, DOC_ORDER);
+    float[][] normalized = null;
+    if (context.isExplain()) {
+      normalized = context.capture(window, firstPass);
+    }
+    for (ScoreDoc scoreDoc : window) {
+      scoreDoc.score = firstPass ? queryWeight * scoreDoc.score : 0.0f;
+    }
+
+    float[] weights = context.getWeights();
+    ScoreDoc[] matched = matched(window.length);
+    for (int q = 0; q < queries.length; q++) {
+      int count = score(searcher, queries[q], window, matched);
+      if (count == 0) {
+        continue;
+      }
+      ScoreDoc[] subScores = count == matched.length ? matched : Arrays.copyOf(matched, count);
+      normalize(topDocs.totalHits, subScores, normalization);
+      for (int i = 0; i < count; i++) {
+        window[subScores[i].shardIndex].score += weights[q] * subScores[i].score;
+        if (normalized != null) {
+          normalized[q + 1][subScores[i].shardIndex] = subScores[i].score;
+        }
+      }
+    }
+
+    Arrays.sort(window, SCORE_ORDER);
+    return topDocs;
+  }
+
+  /**
+   * @return scratch docs of the calling thread, at least n of them. The docs are reused from
+   *     rescore to rescore like the buffers of the normalizers, up to {@link #MAX_RETAINED}.
+   */
+  private static ScoreDoc[] matched(int n) {
+    ScoreDoc[] buffer = MATCHED.get();
+    if (buffer.length >= n) {
+      return buffer;
+    }
+    ScoreDoc[] grown = Arrays.copyOf(buffer, n <= MAX_RETAINED ? ArrayUtil.oversize(n, 8) : n);
+    for (int i = buffer.length; i < grown.length; i++) {
+      grown[i] = new ScoreDoc(-1, 0.0f);
+    }
+    if (n <= MAX_RETAINED) {
+      MATCHED.set(grown);
+    }
+    return grown;
+  }
+
+  /**
+   * scores the window with the query, visiting the docs in doc id order leaf by leaf, so every
+   * scorer only moves forward.
+   *
+   * @param window docs of the window sorted by doc id
+   * @param matched receives every matched doc with its score of the query, its shardIndex is
+   *     the slot of the doc in the window
+   * @return number of matched docs
+   */
+  private static int score(
+      IndexSearcher searcher, Query query, ScoreDoc[] window, ScoreDoc[] matched)
+      throws IOException {
+    Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE, 1.0f);
+    List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+    int count = 0;
+    int leaf = -1;
+    int leafEnd = 0;
+    int docBase = 0;
+    Scorer scorer = null;
+    DocIdSetIterator iterator = null;
+    for (int slot = 0; slot < window.length; slot++) {
+      int doc = window[slot].doc;
+      if (doc >= leafEnd) {
+        do {
+          leaf++;
+          docBase = leaves.get(leaf).docBase;
+          leafEnd = docBase + leaves.get(leaf).reader().maxDoc();
+        } while (doc >= leafEnd);
+        scorer = weight.scorer(leaves.get(leaf));
+        iterator = scorer == null ? null : scorer.iterator();
+      }
+      if (iterator == null) {
+        continue;
+      }
+      int target = doc - docBase;
+      int current = iterator.docID();
+      if (current < target) {
+        current = iterator.advance(target);
+      }
+      if (current == target) {
+        ScoreDoc scoreDoc = matched[count++];
+        scoreDoc.doc = doc;
+        scoreDoc.score = scorer.score();
+        scoreDoc.shardIndex = slot;
+      }
+    }
+    return count;
+  }
+
+  private static void normalize(
+      TotalHits totalHits,
+      ScoreDoc[] scoreDocs,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization) {
+    normalization.getNormalizer().normalize(new TopDocs(totalHits, scoreDocs), normalization);
+  }
+
+  @Override
+  public Explanation explain(
+      int topLevelDocId,
+      IndexSearcher searcher,
+      RescoreContext rescoreContext,
+      Explanation sourceExplanation)
+      throws IOException {
+    FusionRescoreContext context = (FusionRescoreContext) rescoreContext;
+    String description =
+        FusionRescorerBuilder.NAME + " [" + context.getNormalization().getNormalizerType() + "]";
+    float[][] normalized = context.getNormalized();
+    if (normalized == null) {
+      // e.g. the explain API, which explains the rescorers without running them
+      return Explanation.match(
+          sourceExplanation.getValue(),
+          description + ", the hits were not fused by this request",
+          singletonList(sourceExplanation));
+    }
+    int slot = Arrays.binarySearch(context.getDocs(), topLevelDocId);
+    if (slot < 0) {
+      return Explanation.match(
+          sourceExplanation.getValue(),
+          description + ", the doc was not in the window",
+          singletonList(sourceExplanation));
+    }
+
+    // summed in the order of rescore, so the value is the fused score of the doc
+    float score = 0.0f;
+    List<Explanation> details = new ArrayList<>();
+    if (!Float.isNaN(normalized[0][slot])) {
+      score = context.getQueryWeight() * normalized[0][slot];
+      details.add(
+          term(context.getQueryWeight(), normalized[0][slot], "the first pass", sourceExplanation));
+    }
+    for (int q = 0; q < context.getSubQueries().length; q++) {
+      Explanation subExplanation = searcher.explain(context.getSubQueries()[q], topLevelDocId);
+      String name = "[" + context.getNames()[q] + "]";
+      if (Float.isNaN(normalized[q + 1][slot])) {
+        details.add(Explanation.noMatch(name + " does not match the doc", subExplanation));
+        continue;
+      }
+      score += context.getWeights()[q] * normalized[q + 1][slot];
+      details.add(term(context.getWeights()[q], normalized[q + 1][slot], name, subExplanation));
+    }
+    return Explanation.match(
+        score, description + ", weighted sum of normalized query scores, of:", details);
+  }
+
+  private static Explanation term(
+      float weight, float normalized, String query, Explanation explanation) {
+    return Explanation.match(
+        weight * normalized,
+        "weight * normalized score of " + query + ", of:",
+        Explanation.match(weight, "weight"),
+        Explanation.match(normalized, "normalized score of:", explanation));
+  }
+
+  public static class FusionRescoreContext extends RescoreContext {
+    private final String[] names;
+    private final Query[] queries;
+    private final float[] weights;
+    private final float queryWeight;
+    private final ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization;
+    private boolean explain;
+    private int[] docs;
+    private float[][] normalized;
+
+    public FusionRescoreContext(
+        int windowSize,
+        List<WeightedQuery> weightedQueries,
+        Query[] queries,
+        float queryWeight,
+        ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization) {
+      super(windowSize, INSTANCE);
+      this.names = new String[queries.length];
+      this.weights = new float[queries.length];
+      for (int i = 0; i < queries.length; i++) {
+        names[i] = weightedQueries.get(i).getName();
+        weights[i] = weightedQueries.get(i).getWeight();
+      }
+      this.queries = queries;
+      this.queryWeight = queryWeight;
+      this.normalization = normalization;
+    }
+
+    public String[] getNames() {
+      return names;
+    }
+
+    public Query[] getSubQueries() {
+      return queries;
+    }
+
+    @Override
+    public List<Query> getQueries() {
+      return Arrays.asList(queries);
+    }
+
+    public float[] getWeights() {
+      return weights;
+    }
+
+    public float getQueryWeight() {
+      return queryWeight;
+    }
+
+    /** @return context of the normalizer applied to the scores of every query */
+    public ScoreNormalizerRescorer.ScoreNormalizerRescorerContext getNormalization() {
+      return normalization;
+    }
+
+    public boolean isExplain() {
+      return explain;
+    }
+
+    /** @param explain whether rescore keeps the normalized scores of every doc for explain */
+    public void setExplain(boolean explain) {
+      this.explain = explain;
+    }
+
+    /**
+     * keeps the docs of the window and their normalized first pass scores for explain.
+     *
+     * @param window docs of the window sorted by doc id, with the normalized first pass scores
+     * @param firstPass whether the first pass scores were normalized, they are not when its
+     *     weight is 0
+     * @return normalized scores per slot of the window, first pass first and then every
+     *     sub-query, NaN where a query gives the doc nothing
+     */
+    float[][] capture(ScoreDoc[] window, boolean firstPass) {
+      docs = new int[window.length];
+      normalized = new float[queries.length + 1][window.length];
+      for (float[] scores : normalized) {
+        Arrays.fill(scores, Float.NaN);
+      }
+      for (int i = 0; i < window.length; i++) {
+        docs[i] = window[i].doc;
+        if (firstPass) {
+          normalized[0][i] = window[i].score;
+        }
+      }
+      return normalized;
+    }
+
+    /** @return docs of the last rescored window in doc id order, null if none was captured */
+    public int[] getDocs() {
+      return docs;
+    }
+
+    /** @return normalized scores captured by the last rescore, see {@link #capture} */
+    public float[][] getNormalized() {
+      return normalized;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ObjectParser;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryRewriteContext;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.search.rescore.RescoreContext;
+import org.elasticsearch.search.rescore.RescorerBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * `score_fusion` rescorer, scores several named sub-queries over the rescore window, normalizes
+ * the scores of every sub-query with the `min_max` or `z_score` normalizer and replaces the score
+ * of each doc with the weighted sum of its normalized scores. The first pass score takes part
+ * with `query_weight`, like any other sub-query.
+ */
+public class FusionRescorerBuilder extends RescorerBuilder<FusionRescorerBuilder> {
+  public static final String NAME = "score_fusion";
+
+  private static final ParseField QUERIES = new ParseField("queries");
+  private static final ParseField QUERY_WEIGHT = new ParseField("query_weight");
+  private static final ParseField NORMALIZER_TYPE = new ParseField("normalizer_type");
+  private static final ParseField MIN_SCORE = new ParseField("min_score");
+  private static final ParseField MAX_SCORE = new ParseField("max_score");
+  private static final ParseField FACTOR = new ParseField("factor");
+  private static final ParseField FACTOR_MODE = new ParseField("factor_mode");
+  private static final ParseField ON_SCORES_SAME = new ParseField("on_score_same");
+  private static final ParseField RANK_CONSTANT = new ParseField("rank_constant");
+  private static final float DEFAULT_QUERY_WEIGHT = 1.0f;
+
+  private static final ObjectParser<FusionRescorerBuilder, Void> FUSION_RESCORER_PARSER =
+      new ObjectParser<>(NAME, null);
+
+  static {
+    FUSION_RESCORER_PARSER.declareObjectArray(
+        FusionRescorerBuilder::setQueries, (p, c) -> WeightedQuery.fromXContent(p), QUERIES);
+    FUSION_RESCORER_PARSER.declareFloat(FusionRescorerBuilder::setQueryWeight, QUERY_WEIGHT);
+    FUSION_RESCORER_PARSER.declareString(
+        FusionRescorerBuilder::setNormalizerType, NORMALIZER_TYPE);
+    FUSION_RESCORER_PARSER.declareFloat(FusionRescorerBuilder::setMinScore, MIN_SCORE);
+    FUSION_RESCORER_PARSER.declareFloat(FusionRescorerBuilder::setMaxScore, MAX_SCORE);
+    FUSION_RESCORER_PARSER.declareFloat(FusionRescorerBuilder::setFactor, FACTOR);
+    FUSION_RESCORER_PARSER.declareString(FusionRescorerBuilder::setFactorMode, FACTOR_MODE);
+    FUSION_RESCORER_PARSER.declareString(
+        FusionRescorerBuilder::setOnScoresSame, ON_SCORES_SAME);
+    FUSION_RESCORER_PARSER.declareFloat(FusionRescorerBuilder::setRankConstant, RANK_CONSTANT);
+  }
+
+  private List<WeightedQuery> queries = new ArrayList<>();
+  private float queryWeight = DEFAULT_QUERY_WEIGHT;
+  private NormalizerType normalizerType = NormalizerType.min_max;
+  private float minScore = 1.0f;
+  private float maxScore = 5.0f;
+  private float factor = 0.0f;
+  private NormalizerFactorMathOp factorMode = NormalizerFactorMathOp.increase_by_percent;
+  private MinMaxSameScoreStrategy onScoresSame = MinMaxSameScoreStrategy.avg;
+  private float rankConstant = NormalizerRescorerBuilder.DEFAULT_RANK_CONSTANT;
+
+  public FusionRescorerBuilder() {}
+
+  public FusionRescorerBuilder(StreamInput in) throws IOException {
+    super(in);
+    queries = in.readList(WeightedQuery::new);
+    queryWeight = in.readFloat();
+    normalizerType = NormalizerType.fromString(in.readString());
+    minScore = in.readFloat();
+    maxScore = in.readFloat();
+    factor = in.readFloat();
+    factorMode = NormalizerFactorMathOp.fromString(in.readString());
+    onScoresSame = MinMaxSameScoreStrategy.fromString(in.readString());
+    rankConstant = in.readFloat();
+  }
+
+  @Override
+  protected void doWriteTo(StreamOutput out) throws IOException {
+    out.writeList(queries);
+    out.writeFloat(queryWeight);
+    out.writeString(normalizerType.name());
+    out.writeFloat(minScore);
+    out.writeFloat(maxScore);
+    out.writeFloat(factor);
+    out.writeString(factorMode.name());
+    out.writeString(onScoresSame.name());
+    out.writeFloat(rankConstant);
+  }
+
+  @Override
+  protected void doXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject(NAME);
+    builder.field(QUERIES.getPreferredName(), queries);
+    builder.field(QUERY_WEIGHT.getPreferredName(), queryWeight);
+    builder.field(NORMALIZER_TYPE.getPreferredName(), normalizerType.name());
+    builder.field(MIN_SCORE.getPreferredName(), minScore);
+    builder.field(MAX_SCORE.getPreferredName(), maxScore);
+    builder.field(FACTOR.getPreferredName(), factor);
+    builder.field(FACTOR_MODE.getPreferredName(), factorMode.name());
+    builder.field(ON_SCORES_SAME.getPreferredName(), onScoresSame.name());
+    builder.field(RANK_CONSTANT.getPreferredName(), rankConstant);
+    builder.endObject();
+  }
+
+  public static FusionRescorerBuilder fromXContent(XContentParser parser) throws IOException {
+    FusionRescorerBuilder builder =
+        FUSION_RESCORER_PARSER.parse(parser, new FusionRescorerBuilder(), null);
+    builder.validate();
+    return builder;
+  }
+
+  /**
+   * @throws IllegalArgumentException if no sub-query is given, names repeat or the normalizer
+   *     parameters can not be combined
+   */
+  void validate() {
+    if (queries.isEmpty()) {
+      throw new IllegalArgumentException("[" + NAME + "] requires at least one query");
+    }
+    for (int i = 0; i < queries.size(); i++) {
+      for (int j = i + 1; j < queries.size(); j++) {
+        if (queries.get(i).getName().equals(queries.get(j).getName())) {
+          throw new IllegalArgumentException(
+              "["
+                  + NAME
+                  + "] query name ["
+                  + queries.get(i).getName()
+                  + "] is used more than once");
+        }
+      }
+    }
+    NormalizerRescorerBuilder.validate(
+        normalizerType, minScore, maxScore, factor, factorMode, rankConstant);
+  }
+
+  @Override
+  protected RescoreContext innerBuildContext(int windowSize, QueryShardContext context)
+      throws IOException {
+    Query[] subQueries = new Query[queries.size()];
+    for (int i = 0; i < subQueries.length; i++) {
+      subQueries[i] = queries.get(i).getQuery().toQuery(context);
+    }
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            windowSize,
+            normalizerType,
+            minScore,
+            maxScore,
+            factor,
+            factorMode,
+            onScoresSame,
+            NormalizerScope.shard,
+            null,
+            rankConstant);
+    return new FusionRescorer.FusionRescoreContext(
+        windowSize, queries, subQueries, queryWeight, normalization);
+  }
+
+  @Override
+  public String getWriteableName() {
+    return NAME;
+  }
+
+  @Override
+  public FusionRescorerBuilder rewrite(QueryRewriteContext ctx) throws IOException {
+    List<WeightedQuery> rewritten = new ArrayList<>(queries.size());
+    boolean changed = false;
+    for (WeightedQuery query : queries) {
+      QueryBuilder rewrite = query.getQuery().rewrite(ctx);
+      changed |= rewrite != query.getQuery();
+      rewritten.add(rewrite == query.getQuery() ? query : query.withQuery(rewrite));
+    }
+    if (!changed) {
+      return this;
+    }
+    FusionRescorerBuilder builder =
+        new FusionRescorerBuilder()
+            .setQueries(rewritten)
+            .setQueryWeight(queryWeight)
+            .setNormalizerType(normalizerType)
+            .setMinScore(minScore)
+            .setMaxScore(maxScore)
+            .setFactor(factor)
+            .setFactorMode(factorMode)
+            .setOnScoresSame(onScoresSame)
+            .setRankConstant(rankConstant);
+    if (windowSize() != null) {
+      builder.windowSize(windowSize());
+    }
+    return builder;
+  }
+
+  public FusionRescorerBuilder addQuery(String name, QueryBuilder query, float weight) {
+    queries.add(new WeightedQuery(name, query, weight));
+    return this;
+  }
+
+  public FusionRescorerBuilder setQueries(List<WeightedQuery> queries) {
+    this.queries = new ArrayList<>(queries);
+    return this;
+  }
+
+  public List<WeightedQuery> getQueries() {
+    return queries;
+  }
+
+  public FusionRescorerBuilder setQueryWeight(float queryWeight) {
+    this.queryWeight = queryWeight;
+    return this;
+  }
+
+  public FusionRescorerBuilder setNormalizerType(String normalizerType) {
+    return setNormalizerType(NormalizerType.fromString(normalizerType));
+  }
+
+  public FusionRescorerBuilder setNormalizerType(NormalizerType normalizerType) {
+    this.normalizerType = normalizerType;
+    return this;
+  }
+
+  public FusionRescorerBuilder setMinScore(float minScore) {
+    this.minScore = minScore;
+    return this;
+  }
+
+  public FusionRescorerBuilder setMaxScore(float maxScore) {
+    this.maxScore = maxScore;
+    return this;
+  }
+
+  public FusionRescorerBuilder setFactor(float factor) {
+    this.factor = factor;
+    return this;
+  }
+
+  public FusionRescorerBuilder setFactorMode(String factorMode) {
+    return setFactorMode(NormalizerFactorMathOp.fromString(factorMode));
+  }
+
+  public FusionRescorerBuilder setFactorMode(NormalizerFactorMathOp factorMode) {
+    this.factorMode = factorMode;
+    return this;
+  }
+
+  public FusionRescorerBuilder setOnScoresSame(String onScoresSame) {
+    return setOnScoresSame(MinMaxSameScoreStrategy.fromString(onScoresSame));
+  }
+
+  public FusionRescorerBuilder setOnScoresSame(MinMaxSameScoreStrategy onScoresSame) {
+    this.onScoresSame = onScoresSame;
+    return this;
+  }
+
+  public FusionRescorerBuilder setRankConstant(float rankConstant) {
+    this.rankConstant = rankConstant;
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    FusionRescorerBuilder that = (FusionRescorerBuilder) o;
+    return Float.compare(that.queryWeight, queryWeight) == 0
+        && Float.compare(that.minScore, minScore) == 0
+        && Float.compare(that.maxScore, maxScore) == 0
+        && Float.compare(that.factor, factor) == 0
+        && Float.compare(that.rankConstant, rankConstant) == 0
+        && queries.equals(that.queries)
+        && normalizerType == that.normalizerType
+        && factorMode == that.factorMode
+        && onScoresSame == that.onScoresSame;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        super.hashCode(),
+        queries,
+        queryWeight,
+        normalizerType,
+        minScore,
+        maxScore,
+        factor,
+        factorMode,
+        onScoresSame,
+        rankConstant);
+  }
+}
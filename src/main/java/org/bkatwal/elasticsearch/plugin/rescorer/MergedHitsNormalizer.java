@@ -0,0 +1,96 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.ScoreSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * normalizes hits the coordinating node merged from the shards, like the rescorer normalizes the
+ * window of a shard. Used by the `coordinator` scope of `score_normalizer` and by `_fused_search`.
+ */
+public final class MergedHitsNormalizer {
+
+  private MergedHitsNormalizer() {}
+
+  /** @return true if the search sorts by score only, so its hits carry the scores to normalize */
+  public static boolean sortsByScore(SearchSourceBuilder source) {
+    if (source.sorts() == null) {
+      return true;
+    }
+    for (SortBuilder<?> sort : source.sorts()) {
+      if (!(sort instanceof ScoreSortBuilder)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * normalizes the scores of the hits as one set and ranks the hits by their normalized score.
+   *
+   * @param normalizer options of the normalization, built without a shard
+   * @param search name of the search in the error message
+   * @return hits with their normalized scores, best first
+   * @throws IllegalArgumentException if the hits have no score
+   */
+  public static SearchHit[] normalize(
+      SearchHit[] hits, NormalizerRescorerBuilder normalizer, String search) throws IOException {
+    if (hits.length == 0) {
+      return hits;
+    }
+    ScoreDoc[] scoreDocs = new ScoreDoc[hits.length];
+    for (int i = 0; i < hits.length; i++) {
+      float score = hits[i].getScore();
+      if (Float.isNaN(score)) {
+        throw new IllegalArgumentException(
+            "hits of " + search + " have no score, it must sort by score");
+      }
+      scoreDocs[i] = new ScoreDoc(i, score);
+    }
+    TopDocs normalized =
+        ScoreNormalizerRescorer.normalizeMerged(
+            new TopDocs(new TotalHits(hits.length, TotalHits.Relation.EQUAL_TO), scoreDocs),
+            (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) normalizer.buildContext(null));
+    ScoreDoc[] byScore = normalized.scoreDocs.clone();
+    // a negative factor reverses the order, callers take the hits best first
+    Arrays.sort(
+        byScore,
+        (a, b) -> a.score != b.score ? Float.compare(b.score, a.score) : a.doc - b.doc);
+    SearchHit[] ranked = new SearchHit[byScore.length];
+    for (int i = 0; i < byScore.length; i++) {
+      ranked[i] = hits[byScore[i].doc];
+      ranked[i].score(byScore[i].score);
+    }
+    return ranked;
+  }
+}
@@ -23,8 +23,54 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.rescorer;
 
+import java.util.Arrays;
+
 public enum MinMaxSameScoreStrategy {
-  avg,
-  max,
-  min
+  avg {
+    @Override
+    public float score(float minScore, float maxScore) {
+      return (maxScore + minScore) / 2;
+    }
+  },
+  max {
+    @Override
+    public float score(float minScore, float maxScore) {
+      return maxScore;
+    }
+  },
+  min {
+    @Override
+    public float score(float minScore, float maxScore) {
+      return minScore;
+    }
+  };
+
+  /**
+   * score given to every doc when all docs in the window have the same score.
+   *
+   * @param minScore `min_score` of the request
+   * @param maxScore `max_score` of the request
+   * @return score for every doc
+   */
+  public abstract float score(float minScore, float maxScore);
+
+  /**
+   * resolves the request value of `on_score_same`.
+   *
+   * @param value value passed in the request
+   * @return matching MinMaxSameScoreStrategy
+   * @throws IllegalArgumentException if the value is not one of the allowed values
+   */
+  public static MinMaxSameScoreStrategy fromString(String value) {
+    for (MinMaxSameScoreStrategy v : values()) {
+      if (v.name().equals(value)) {
+        return v;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Invalid `on_score_same` ["
+            + value
+            + "], allowed values are "
+            + Arrays.toString(values()));
+  }
 }
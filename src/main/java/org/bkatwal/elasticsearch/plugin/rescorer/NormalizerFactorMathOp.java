@@ -23,8 +23,30 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.rescorer;
 
+import java.util.Arrays;
+
 public enum NormalizerFactorMathOp {
   sum,
   multiply,
-  increase_by_percent
+  increase_by_percent;
+
+  /**
+   * resolves the request value of `factor_mode`.
+   *
+   * @param value value passed in the request
+   * @return matching NormalizerFactorMathOp
+   * @throws IllegalArgumentException if the value is not one of the allowed values
+   */
+  public static NormalizerFactorMathOp fromString(String value) {
+    for (NormalizerFactorMathOp v : values()) {
+      if (v.name().equals(value)) {
+        return v;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Invalid `factor_mode` ["
+            + value
+            + "], allowed values are "
+            + Arrays.toString(values()));
+  }
 }
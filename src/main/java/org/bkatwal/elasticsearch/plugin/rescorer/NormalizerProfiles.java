@@ -0,0 +1,164 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * named score_normalizer bodies stored as persistent cluster settings under
+ * `score_normalizer.profiles.<id>`, so requests send `"profile_id": "<id>"` instead of the whole
+ * body. Every node keeps the profiles parsed and validated, a request copies the cached builder
+ * instead of parsing and validating the body again. A profile is parsed again only when its
+ * setting changes.
+ */
+public final class NormalizerProfiles {
+
+  public static final String PREFIX = "score_normalizer.profiles.";
+
+  public static final Setting.AffixSetting<String> PROFILES =
+      Setting.prefixKeySetting(
+          PREFIX,
+          key ->
+              Setting.simpleString(
+                  key,
+                  NormalizerProfiles::validate,
+                  Setting.Property.Dynamic,
+                  Setting.Property.NodeScope));
+
+  private static volatile NormalizerProfiles instance;
+
+  // replaced as a whole on every change, readers never lock
+  private volatile Map<String, Profile> profiles;
+
+  public NormalizerProfiles(Settings settings, ClusterSettings clusterSettings) {
+    this.profiles = Collections.emptyMap();
+    update(PROFILES.getAsMap(settings));
+    clusterSettings.addAffixMapUpdateConsumer(PROFILES, this::update, (id, body) -> {});
+  }
+
+  /** sets the profiles of this node, called once when the plugin creates its components. */
+  public static void init(NormalizerProfiles profiles) {
+    instance = profiles;
+  }
+
+  /** @return profiles of this node, null if the plugin components are not created, e.g. in tests */
+  public static NormalizerProfiles getInstance() {
+    return instance;
+  }
+
+  /**
+   * resolves a profile on this node.
+   *
+   * @param id id the profile is stored under
+   * @return parsed and validated builder of the profile, shared, callers copy it
+   * @throws IllegalArgumentException if no profile is stored under the id
+   */
+  static NormalizerRescorerBuilder resolve(String id) {
+    NormalizerProfiles nodeProfiles = instance;
+    Profile profile = nodeProfiles == null ? null : nodeProfiles.profiles.get(id);
+    if (profile == null) {
+      throw new IllegalArgumentException("no score_normalizer profile [" + id + "] is stored");
+    }
+    return profile.builder;
+  }
+
+  /** @return stored bodies of the profiles by id */
+  public Map<String, String> getBodies() {
+    Map<String, String> bodies = new HashMap<>();
+    for (Map.Entry<String, Profile> profile : profiles.entrySet()) {
+      bodies.put(profile.getKey(), profile.getValue().body);
+    }
+    return bodies;
+  }
+
+  /**
+   * applies changed profiles, the others keep their parsed builder.
+   *
+   * @param changed bodies of the profiles that changed by id, empty for removed profiles
+   */
+  void update(Map<String, String> changed) {
+    if (changed.isEmpty()) {
+      return;
+    }
+    Map<String, Profile> updated = new HashMap<>(profiles);
+    for (Map.Entry<String, String> profile : changed.entrySet()) {
+      String body = profile.getValue();
+      if (body.isEmpty()) {
+        updated.remove(profile.getKey());
+      } else {
+        updated.put(profile.getKey(), new Profile(body, parse(body)));
+      }
+    }
+    this.profiles = Collections.unmodifiableMap(updated);
+  }
+
+  private static void validate(String body) {
+    if (!body.isEmpty()) {
+      parse(body);
+    }
+  }
+
+  /**
+   * parses and validates the body of a profile.
+   *
+   * @param body score_normalizer body as JSON, without `window_size`
+   * @return builder of the body
+   * @throws IllegalArgumentException if the body is invalid or refers to a profile itself
+   */
+  public static NormalizerRescorerBuilder parse(String body) {
+    NormalizerRescorerBuilder builder;
+    try (XContentParser parser =
+        JsonXContent.jsonXContent.createParser(
+            NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, body)) {
+      builder = NormalizerRescorerBuilder.fromProfileXContent(parser);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("invalid score_normalizer profile [" + body + "]", e);
+    }
+    if (builder.getProfileId() != null) {
+      throw new IllegalArgumentException("a score_normalizer profile can not refer to a profile");
+    }
+    return builder;
+  }
+
+  private static final class Profile {
+    private final String body;
+    private final NormalizerRescorerBuilder builder;
+
+    private Profile(String body, NormalizerRescorerBuilder builder) {
+      this.body = body;
+      this.builder = builder;
+    }
+  }
+}
@@ -23,20 +23,30 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.rescorer;
 
+import org.bkatwal.elasticsearch.plugin.helper.FieldBlender;
+import org.bkatwal.elasticsearch.plugin.helper.NormalizerPipeline;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.bkatwal.elasticsearch.plugin.helper.StaticScoreStats;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerMetrics;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerSlowLog;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.xcontent.ObjectParser;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.rescore.RescorerBuilder;
 
 import java.io.IOException;
-
-import static org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType.isValid;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 
 public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescorerBuilder> {
   public static final String NAME = "score_normalizer";
@@ -47,21 +57,91 @@ public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescore
   private static final ParseField FACTOR = new ParseField("factor");
   private static final ParseField FACTOR_MODE = new ParseField("factor_mode");
   private static final ParseField ON_SCORES_SAME = new ParseField("on_score_same");
+  private static final ParseField SCOPE = new ParseField("scope");
+  private static final ParseField RANK_CONSTANT = new ParseField("rank_constant");
+  private static final ParseField CACHE_STATS = new ParseField("cache_stats");
+  private static final ParseField CLIP_QUANTILE = new ParseField("clip_quantile");
+  private static final ParseField WINSORIZE = new ParseField("winsorize");
+  private static final ParseField TEMPERATURE = new ParseField("temperature");
+  private static final ParseField FAST_EXP = new ParseField("fast_exp");
+  private static final ParseField FIELDS = new ParseField("fields");
+  private static final ParseField PIPELINE = new ParseField("pipeline");
+  private static final ParseField STATIC_STATS = new ParseField("static_stats");
+  private static final ParseField PROFILE_ID = new ParseField("profile_id");
+  private static final ParseField STATS_SOURCE = new ParseField("stats_source");
   private static final float DEFAULT_MIN_SCORE_V = 1.0f;
   private static final float DEFAULT_MAX_SCORE_V = 5.0f;
   private static final float DEFAULT_FACTOR = 0.0f;
-  private static final String DEFAULT_ON_SCORES_SAME = MinMaxSameScoreStrategy.avg.name();
+  static final float DEFAULT_RANK_CONSTANT = 60.0f;
+  static final float DEFAULT_TEMPERATURE = 1.0f;
+  private static final MinMaxSameScoreStrategy DEFAULT_ON_SCORES_SAME =
+      MinMaxSameScoreStrategy.avg;
 
   private static final NormalizerType DEFAULT_NORMALIZER_TYPE = NormalizerType.z_score;
-  private static final String DEFAULT_FACTOR_MODE =
-      NormalizerFactorMathOp.increase_by_percent.name();
+  private static final NormalizerFactorMathOp DEFAULT_FACTOR_MODE =
+      NormalizerFactorMathOp.increase_by_percent;
+  private static final NormalizerScope DEFAULT_SCOPE = NormalizerScope.shard;
+  private static final StatsSource DEFAULT_STATS_SOURCE = StatsSource.window;
+
+  // version of the wire format, written ahead of the fields. Bump it on any change of the format
+  // and keep reading the older versions, nodes of a cluster may run different builds. Version 2
+  // added `fields`, requests without them are still written as version 1, so nodes on an older
+  // build keep reading them. Version 3 added `pipeline` and version 4 `static_stats` the same
+  // way. Version 5 was never released. Version 6 added `stats_source` like `pipeline`. Version 7
+  // writes requests on a stored profile with the options the coordinating node resolved and the
+  // id only as a label, so every shard applies the profile as the coordinating node saw it.
+  private static final int WIRE_VERSION = 7;
+  private static final int WIRE_VERSION_FIELDS = 2;
+  private static final int WIRE_VERSION_PIPELINE = 3;
+  private static final int WIRE_VERSION_STATIC_STATS = 4;
+  private static final int WIRE_VERSION_STATS_SOURCE = 6;
+  private static final int WIRE_VERSION_RESOLVED_PROFILE = 7;
+  // bits of the field mask, only fields that differ from their default are written, in the order
+  // of their bits. Enums are written as ordinals, so new constants go at the end.
+  private static final int HAS_MIN_SCORE = 1;
+  private static final int HAS_MAX_SCORE = 1 << 1;
+  private static final int HAS_FACTOR = 1 << 2;
+  private static final int HAS_FACTOR_MODE = 1 << 3;
+  private static final int HAS_ON_SCORES_SAME = 1 << 4;
+  private static final int HAS_SCOPE = 1 << 5;
+  private static final int HAS_RANK_CONSTANT = 1 << 6;
+  private static final int HAS_CLIP_QUANTILE = 1 << 7;
+  private static final int HAS_WINSORIZE = 1 << 8;
+  private static final int HAS_TEMPERATURE = 1 << 9;
+  private static final int HAS_GLOBAL_STATS = 1 << 10;
+  private static final int HAS_STATS_CACHE_KEY = 1 << 11;
+  // flags without a value
+  private static final int CACHE_STATS_ON = 1 << 12;
+  private static final int FAST_EXP_ON = 1 << 13;
+  private static final int HAS_FIELDS = 1 << 14;
+  private static final int HAS_PIPELINE = 1 << 15;
+  private static final int HAS_STATIC_STATS = 1 << 16;
+  private static final int HAS_PROFILE_ID = 1 << 17;
+  private static final int HAS_STATS_SOURCE = 1 << 18;
 
-  private float minScore;
-  private float maxScore;
-  private String normalizerType;
-  private float factor;
-  private String factorMode;
-  private String onScoresSame;
+  private float minScore = DEFAULT_MIN_SCORE_V;
+  private float maxScore = DEFAULT_MAX_SCORE_V;
+  private NormalizerType normalizerType = DEFAULT_NORMALIZER_TYPE;
+  private float factor = DEFAULT_FACTOR;
+  private NormalizerFactorMathOp factorMode = DEFAULT_FACTOR_MODE;
+  private MinMaxSameScoreStrategy onScoresSame = DEFAULT_ON_SCORES_SAME;
+  private NormalizerScope scope = DEFAULT_SCOPE;
+  private float rankConstant = DEFAULT_RANK_CONSTANT;
+  private boolean cacheStats;
+  private float clipQuantile;
+  private float winsorize;
+  private float temperature = DEFAULT_TEMPERATURE;
+  private boolean fastExp;
+  // filled in by the coordinating node for `global` scope, never parsed from the request
+  private ScoreStats globalStats;
+  // filled in by the coordinating node for `cache_stats`, never parsed from the request
+  private String statsCacheKey;
+  private List<WeightedField> weightedFields = Collections.emptyList();
+  private List<PipelineStage> pipeline = Collections.emptyList();
+  private String staticStats;
+  private StatsSource statsSource = DEFAULT_STATS_SOURCE;
+  // id of the stored profile the options were copied from, null if the request carries them
+  private String profileId;
 
   private static final ObjectParser<NRCoreBuilder, Void> NORMALIZER_RESCORER_PARSER =
       new ObjectParser<>(NAME, null);
@@ -79,65 +159,493 @@ public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescore
         NormalizerRescorerBuilder.NRCoreBuilder::setFactorMode, FACTOR_MODE);
     NORMALIZER_RESCORER_PARSER.declareString(
         NormalizerRescorerBuilder.NRCoreBuilder::setOnScoresSame, ON_SCORES_SAME);
+    NORMALIZER_RESCORER_PARSER.declareString(
+        NormalizerRescorerBuilder.NRCoreBuilder::setScope, SCOPE);
+    NORMALIZER_RESCORER_PARSER.declareFloat(
+        NormalizerRescorerBuilder.NRCoreBuilder::setRankConstant, RANK_CONSTANT);
+    NORMALIZER_RESCORER_PARSER.declareBoolean(
+        NormalizerRescorerBuilder.NRCoreBuilder::setCacheStats, CACHE_STATS);
+    NORMALIZER_RESCORER_PARSER.declareFloat(
+        NormalizerRescorerBuilder.NRCoreBuilder::setClipQuantile, CLIP_QUANTILE);
+    NORMALIZER_RESCORER_PARSER.declareFloat(
+        NormalizerRescorerBuilder.NRCoreBuilder::setWinsorize, WINSORIZE);
+    NORMALIZER_RESCORER_PARSER.declareFloat(
+        NormalizerRescorerBuilder.NRCoreBuilder::setTemperature, TEMPERATURE);
+    NORMALIZER_RESCORER_PARSER.declareBoolean(
+        NormalizerRescorerBuilder.NRCoreBuilder::setFastExp, FAST_EXP);
+    NORMALIZER_RESCORER_PARSER.declareObjectArray(
+        NormalizerRescorerBuilder.NRCoreBuilder::setFields,
+        (p, c) -> WeightedField.fromXContent(p),
+        FIELDS);
+    NORMALIZER_RESCORER_PARSER.declareObjectArray(
+        NormalizerRescorerBuilder.NRCoreBuilder::setPipeline,
+        (p, c) -> PipelineStage.fromXContent(p),
+        PIPELINE);
+    NORMALIZER_RESCORER_PARSER.declareString(
+        NormalizerRescorerBuilder.NRCoreBuilder::setStaticStats, STATIC_STATS);
+    NORMALIZER_RESCORER_PARSER.declareString(
+        NormalizerRescorerBuilder.NRCoreBuilder::setProfileId, PROFILE_ID);
+    NORMALIZER_RESCORER_PARSER.declareString(
+        NormalizerRescorerBuilder.NRCoreBuilder::setStatsSource, STATS_SOURCE);
   }
 
   public NormalizerRescorerBuilder() {}
 
   public NormalizerRescorerBuilder(StreamInput in) throws IOException {
     super(in);
-    normalizerType = in.readOptionalString();
-    minScore = in.readOptionalFloat();
-    maxScore = in.readOptionalFloat();
-    factor = in.readOptionalFloat();
-    factorMode = in.readOptionalString();
-    onScoresSame = in.readOptionalString();
+    int wireVersion = in.readVInt();
+    if (wireVersion < 1 || wireVersion > WIRE_VERSION) {
+      throw new IllegalStateException(
+          "unknown wire format version ["
+              + wireVersion
+              + "] of ["
+              + NAME
+              + "], this node reads ["
+              + WIRE_VERSION
+              + "]");
+    }
+    normalizerType = in.readEnum(NormalizerType.class);
+    int fields = in.readVInt();
+    if ((fields & HAS_MIN_SCORE) != 0) {
+      minScore = in.readFloat();
+    }
+    if ((fields & HAS_MAX_SCORE) != 0) {
+      maxScore = in.readFloat();
+    }
+    if ((fields & HAS_FACTOR) != 0) {
+      factor = in.readFloat();
+    }
+    if ((fields & HAS_FACTOR_MODE) != 0) {
+      factorMode = in.readEnum(NormalizerFactorMathOp.class);
+    }
+    if ((fields & HAS_ON_SCORES_SAME) != 0) {
+      onScoresSame = in.readEnum(MinMaxSameScoreStrategy.class);
+    }
+    if ((fields & HAS_SCOPE) != 0) {
+      scope = in.readEnum(NormalizerScope.class);
+    }
+    if ((fields & HAS_RANK_CONSTANT) != 0) {
+      rankConstant = in.readFloat();
+    }
+    if ((fields & HAS_CLIP_QUANTILE) != 0) {
+      clipQuantile = in.readFloat();
+    }
+    if ((fields & HAS_WINSORIZE) != 0) {
+      winsorize = in.readFloat();
+    }
+    if ((fields & HAS_TEMPERATURE) != 0) {
+      temperature = in.readFloat();
+    }
+    if ((fields & HAS_GLOBAL_STATS) != 0) {
+      globalStats = new ScoreStats(in);
+    }
+    if ((fields & HAS_STATS_CACHE_KEY) != 0) {
+      statsCacheKey = in.readString();
+    }
+    cacheStats = (fields & CACHE_STATS_ON) != 0;
+    fastExp = (fields & FAST_EXP_ON) != 0;
+    if ((fields & HAS_FIELDS) != 0) {
+      weightedFields = in.readList(WeightedField::new);
+    }
+    if ((fields & HAS_PIPELINE) != 0) {
+      pipeline = in.readList(PipelineStage::new);
+    }
+    if ((fields & HAS_STATIC_STATS) != 0) {
+      staticStats = in.readString();
+    }
+    if ((fields & HAS_STATS_SOURCE) != 0) {
+      statsSource = in.readEnum(StatsSource.class);
+    }
+    if ((fields & HAS_PROFILE_ID) != 0) {
+      profileId = in.readString();
+    }
   }
 
   @Override
   protected void doWriteTo(StreamOutput out) throws IOException {
-    out.writeString(normalizerType);
-    out.writeFloat(minScore);
-    out.writeFloat(maxScore);
-    out.writeFloat(factor);
-    out.writeString(factorMode);
-    out.writeString(onScoresSame);
+    int fields = 0;
+    fields |= Float.compare(minScore, DEFAULT_MIN_SCORE_V) != 0 ? HAS_MIN_SCORE : 0;
+    fields |= Float.compare(maxScore, DEFAULT_MAX_SCORE_V) != 0 ? HAS_MAX_SCORE : 0;
+    fields |= Float.compare(factor, DEFAULT_FACTOR) != 0 ? HAS_FACTOR : 0;
+    fields |= factorMode != DEFAULT_FACTOR_MODE ? HAS_FACTOR_MODE : 0;
+    fields |= onScoresSame != DEFAULT_ON_SCORES_SAME ? HAS_ON_SCORES_SAME : 0;
+    fields |= scope != DEFAULT_SCOPE ? HAS_SCOPE : 0;
+    fields |= Float.compare(rankConstant, DEFAULT_RANK_CONSTANT) != 0 ? HAS_RANK_CONSTANT : 0;
+    fields |= Float.compare(clipQuantile, 0) != 0 ? HAS_CLIP_QUANTILE : 0;
+    fields |= Float.compare(winsorize, 0) != 0 ? HAS_WINSORIZE : 0;
+    fields |= Float.compare(temperature, DEFAULT_TEMPERATURE) != 0 ? HAS_TEMPERATURE : 0;
+    fields |= globalStats != null ? HAS_GLOBAL_STATS : 0;
+    fields |= statsCacheKey != null ? HAS_STATS_CACHE_KEY : 0;
+    fields |= cacheStats ? CACHE_STATS_ON : 0;
+    fields |= fastExp ? FAST_EXP_ON : 0;
+    fields |= weightedFields.isEmpty() ? 0 : HAS_FIELDS;
+    fields |= pipeline.isEmpty() ? 0 : HAS_PIPELINE;
+    fields |= staticStats != null ? HAS_STATIC_STATS : 0;
+    fields |= statsSource != DEFAULT_STATS_SOURCE ? HAS_STATS_SOURCE : 0;
+    fields |= profileId != null ? HAS_PROFILE_ID : 0;
+
+    if (profileId != null) {
+      out.writeVInt(WIRE_VERSION_RESOLVED_PROFILE);
+    } else if (statsSource != DEFAULT_STATS_SOURCE) {
+      out.writeVInt(WIRE_VERSION_STATS_SOURCE);
+    } else if (staticStats != null) {
+      out.writeVInt(WIRE_VERSION_STATIC_STATS);
+    } else if (!pipeline.isEmpty()) {
+      out.writeVInt(WIRE_VERSION_PIPELINE);
+    } else {
+      out.writeVInt(weightedFields.isEmpty() ? 1 : WIRE_VERSION_FIELDS);
+    }
+    out.writeEnum(normalizerType);
+    out.writeVInt(fields);
+    if ((fields & HAS_MIN_SCORE) != 0) {
+      out.writeFloat(minScore);
+    }
+    if ((fields & HAS_MAX_SCORE) != 0) {
+      out.writeFloat(maxScore);
+    }
+    if ((fields & HAS_FACTOR) != 0) {
+      out.writeFloat(factor);
+    }
+    if ((fields & HAS_FACTOR_MODE) != 0) {
+      out.writeEnum(factorMode);
+    }
+    if ((fields & HAS_ON_SCORES_SAME) != 0) {
+      out.writeEnum(onScoresSame);
+    }
+    if ((fields & HAS_SCOPE) != 0) {
+      out.writeEnum(scope);
+    }
+    if ((fields & HAS_RANK_CONSTANT) != 0) {
+      out.writeFloat(rankConstant);
+    }
+    if ((fields & HAS_CLIP_QUANTILE) != 0) {
+      out.writeFloat(clipQuantile);
+    }
+    if ((fields & HAS_WINSORIZE) != 0) {
+      out.writeFloat(winsorize);
+    }
+    if ((fields & HAS_TEMPERATURE) != 0) {
+      out.writeFloat(temperature);
+    }
+    if ((fields & HAS_GLOBAL_STATS) != 0) {
+      globalStats.writeTo(out);
+    }
+    if ((fields & HAS_STATS_CACHE_KEY) != 0) {
+      out.writeString(statsCacheKey);
+    }
+    if ((fields & HAS_FIELDS) != 0) {
+      out.writeList(weightedFields);
+    }
+    if ((fields & HAS_PIPELINE) != 0) {
+      out.writeList(pipeline);
+    }
+    if ((fields & HAS_STATIC_STATS) != 0) {
+      out.writeString(staticStats);
+    }
+    if ((fields & HAS_STATS_SOURCE) != 0) {
+      out.writeEnum(statsSource);
+    }
+    if ((fields & HAS_PROFILE_ID) != 0) {
+      out.writeString(profileId);
+    }
   }
 
   @Override
   protected void doXContent(XContentBuilder builder, Params params) throws IOException {
     builder.startObject(NAME);
-    builder.field(NORMALIZER_TYPE.getPreferredName(), normalizerType);
+    if (profileId != null) {
+      builder.field(PROFILE_ID.getPreferredName(), profileId);
+      builder.endObject();
+      return;
+    }
+    builder.field(NORMALIZER_TYPE.getPreferredName(), normalizerType.name());
     builder.field(MIN_SCORE.getPreferredName(), minScore);
     builder.field(MAX_SCORE.getPreferredName(), maxScore);
     builder.field(FACTOR.getPreferredName(), factor);
-    builder.field(FACTOR_MODE.getPreferredName(), factorMode);
-    builder.field(ON_SCORES_SAME.getPreferredName(), onScoresSame);
+    builder.field(FACTOR_MODE.getPreferredName(), factorMode.name());
+    builder.field(ON_SCORES_SAME.getPreferredName(), onScoresSame.name());
+    builder.field(SCOPE.getPreferredName(), scope.name());
+    builder.field(RANK_CONSTANT.getPreferredName(), rankConstant);
+    builder.field(CACHE_STATS.getPreferredName(), cacheStats);
+    builder.field(CLIP_QUANTILE.getPreferredName(), clipQuantile);
+    builder.field(WINSORIZE.getPreferredName(), winsorize);
+    builder.field(TEMPERATURE.getPreferredName(), temperature);
+    builder.field(FAST_EXP.getPreferredName(), fastExp);
+    builder.field(FIELDS.getPreferredName(), weightedFields);
+    builder.field(PIPELINE.getPreferredName(), pipeline);
+    if (staticStats != null) {
+      builder.field(STATIC_STATS.getPreferredName(), staticStats);
+    }
+    builder.field(STATS_SOURCE.getPreferredName(), statsSource.name());
     builder.endObject();
   }
 
   @Override
   protected RescoreContext innerBuildContext(int windowSize, QueryShardContext context)
       throws IOException {
-    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext scoreNormalizerRescorerContext =
+    // query is rewritten at this point already, the context compiles the scoring kernel once
+    // for the whole window
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext rescoreContext =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            windowSize, normalizerType, minScore, maxScore, factor, factorMode, onScoresSame);
-    // query is rewritten at this point already
-    scoreNormalizerRescorerContext.setNormalizerType(normalizerType);
-    scoreNormalizerRescorerContext.setMinScore(minScore);
-    scoreNormalizerRescorerContext.setMaxScore(maxScore);
-    scoreNormalizerRescorerContext.setFactor(factor);
-    scoreNormalizerRescorerContext.setFactorMode(factorMode);
-    scoreNormalizerRescorerContext.setOnScoresSame(onScoresSame);
-    return scoreNormalizerRescorerContext;
+            windowSize,
+            normalizerType,
+            minScore,
+            maxScore,
+            factor,
+            factorMode,
+            onScoresSame,
+            scope,
+            globalStats,
+            rankConstant);
+    rescoreContext.setStatsCacheKey(statsCacheKey);
+    rescoreContext.setClipQuantile(clipQuantile);
+    rescoreContext.setWinsorize(winsorize);
+    rescoreContext.setTemperature(temperature);
+    rescoreContext.setFastExp(fastExp);
+    rescoreContext.setStatsSource(statsSource);
+    if (!pipeline.isEmpty()) {
+      // compiled once per shard request, the windows only bind it to their statistics
+      rescoreContext.setPipeline(new NormalizerPipeline(pipeline));
+    }
+    if (!weightedFields.isEmpty()) {
+      rescoreContext.setFieldBlender(
+          new FieldBlender(weightedFields, fieldData(weightedFields, context)));
+    }
+    if (staticStats != null && context != null) {
+      rescoreContext.setStaticStats(
+          staticStats,
+          StaticScoreStats.resolve(
+              context.getIndexSettings().getIndex(), staticStats, normalizerType));
+    }
+    if (context != null) {
+      rescoreContext.setSlowLog(
+          ScoreNormalizerSlowLog.forIndex(context.getIndexSettings().getIndex()),
+          context.getShardId());
+    }
+    return rescoreContext;
+  }
+
+  /**
+   * resolves the doc values of the blended fields on the shard.
+   *
+   * @return doc values of every field, null for fields the shard does not map
+   * @throws IllegalArgumentException if a field is not numeric
+   */
+  private static IndexNumericFieldData[] fieldData(
+      List<WeightedField> fields, QueryShardContext context) {
+    IndexNumericFieldData[] fieldData = new IndexNumericFieldData[fields.size()];
+    if (context == null) {
+      return fieldData;
+    }
+    for (int f = 0; f < fieldData.length; f++) {
+      String name = fields.get(f).getField();
+      // e.g. a field of only some of the indices searched, the docs of the others take the
+      // missing value
+      MappedFieldType fieldType = context.fieldMapper(name);
+      if (fieldType == null) {
+        continue;
+      }
+      IndexFieldData<?> data = context.getForField(fieldType);
+      if (!(data instanceof IndexNumericFieldData)) {
+        throw new IllegalArgumentException(
+            "field ["
+                + name
+                + "] of `fields` must be numeric, got ["
+                + fieldType.typeName()
+                + "]");
+      }
+      fieldData[f] = (IndexNumericFieldData) data;
+    }
+    return fieldData;
+  }
+
+  /**
+   * validates the rescore parameters, called while parsing the request and again when a shard
+   * compiles them into a rescore context.
+   *
+   * @throws IllegalArgumentException if the parameters can not be combined
+   */
+  static void validate(
+      NormalizerType normalizerType,
+      float minScore,
+      float maxScore,
+      float factor,
+      NormalizerFactorMathOp factorMode,
+      float rankConstant) {
+    if (normalizerType == NormalizerType.rrf && !(rankConstant >= 1)) {
+      throw new IllegalArgumentException("`rank_constant` must be greater than or equal to 1");
+    }
+    if ((normalizerType == NormalizerType.min_max || normalizerType == NormalizerType.percentile)
+        && minScore >= maxScore) {
+      throw new IllegalArgumentException(
+          "max_score can not be lesser than or equal to  " + "min_score");
+    }
+    if (factorMode == NormalizerFactorMathOp.increase_by_percent && (factor < 0 || factor > 1)) {
+      throw new IllegalArgumentException(
+          "Invalid `factor` for `factor_mode` "
+              + "increase_by_percent, "
+              + "allowed "
+              + "factor "
+              + "range "
+              + "0-1 "
+              + "including 0 and 1.");
+    }
+  }
+
+  /**
+   * validates `clip_quantile`, 0 turns clipping off.
+   *
+   * @throws IllegalArgumentException if the quantile is out of range or the normalizer does not
+   *     clip
+   */
+  static void validateClipQuantile(NormalizerType normalizerType, float clipQuantile) {
+    if (clipQuantile == 0) {
+      return;
+    }
+    if (!(clipQuantile > 0 && clipQuantile < 0.5f)) {
+      throw new IllegalArgumentException(
+          "`clip_quantile` must be greater than or equal to 0 and lesser than 0.5");
+    }
+    if (normalizerType != NormalizerType.min_max) {
+      throw new IllegalArgumentException(
+          "`clip_quantile` is only supported for `normalizer_type` [min_max]");
+    }
+  }
+
+  /**
+   * validates `winsorize`, 0 turns winsorization off.
+   *
+   * @throws IllegalArgumentException if the bound is negative or the normalizer does not clamp
+   */
+  static void validateWinsorize(NormalizerType normalizerType, float winsorize) {
+    if (winsorize == 0) {
+      return;
+    }
+    if (!(winsorize > 0)) {
+      throw new IllegalArgumentException("`winsorize` must be greater than or equal to 0");
+    }
+    if (normalizerType != NormalizerType.robust_z) {
+      throw new IllegalArgumentException(
+          "`winsorize` is only supported for `normalizer_type` [robust_z]");
+    }
+  }
+
+  /**
+   * validates `temperature` and `fast_exp`, which only the exp based normalizers use.
+   *
+   * @throws IllegalArgumentException if the temperature is not positive or either is set for
+   *     another normalizer
+   */
+  static void validateExp(NormalizerType normalizerType, float temperature, boolean fastExp) {
+    if (!(temperature > 0)) {
+      throw new IllegalArgumentException("`temperature` must be greater than 0");
+    }
+    if ((temperature != DEFAULT_TEMPERATURE || fastExp) && !normalizerType.usesExp()) {
+      throw new IllegalArgumentException(
+          "`temperature` and `fast_exp` are only supported for `normalizer_type` [sigmoid] and "
+              + "[softmax]");
+    }
+  }
+
+  /**
+   * validates `static_stats`, the registered statistics replace those of the window and the other
+   * sources of statistics.
+   *
+   * @throws IllegalArgumentException if the normalizer does not use statistics or another source
+   *     of them is set
+   */
+  static void validateStaticStats(
+      NormalizerType normalizerType,
+      NormalizerScope scope,
+      boolean cacheStats,
+      float clipQuantile) {
+    if (!normalizerType.usesStats()) {
+      throw new IllegalArgumentException(
+          "`static_stats` is not supported for `normalizer_type` [" + normalizerType + "]");
+    }
+    if (scope == NormalizerScope.global || cacheStats || clipQuantile != 0) {
+      throw new IllegalArgumentException(
+          "`static_stats` can not be combined with `scope` [global], `cache_stats` or "
+              + "`clip_quantile`");
+    }
+  }
+
+  /**
+   * validates `stats_source` [all_hits], the statistics of all hits replace those of the window
+   * and the other sources of statistics.
+   *
+   * @throws IllegalArgumentException if the normalizer does not use statistics or quantiles, or
+   *     another source of statistics is set
+   */
+  static void validateAllHits(
+      NormalizerType normalizerType,
+      NormalizerScope scope,
+      boolean cacheStats,
+      float clipQuantile,
+      String staticStats) {
+    if (!normalizerType.usesStats() && normalizerType != NormalizerType.percentile) {
+      throw new IllegalArgumentException(
+          "`stats_source` [all_hits] is not supported for `normalizer_type` ["
+              + normalizerType
+              + "]");
+    }
+    if (scope == NormalizerScope.global
+        || cacheStats
+        || clipQuantile != 0
+        || staticStats != null) {
+      throw new IllegalArgumentException(
+          "`stats_source` [all_hits] can not be combined with `scope` [global], `cache_stats`, "
+              + "`clip_quantile` or `static_stats`");
+    }
   }
 
   public static NormalizerRescorerBuilder fromXContent(XContentParser parser) throws IOException {
     NormalizerRescorerBuilder.NRCoreBuilder nrCoreBuilder =
-        NORMALIZER_RESCORER_PARSER.parse(
-            parser, new NormalizerRescorerBuilder.NRCoreBuilder(), null);
+        new NormalizerRescorerBuilder.NRCoreBuilder();
+    try {
+      return parse(parser, nrCoreBuilder);
+    } catch (IllegalArgumentException e) {
+      // parse errors of the fields are wrapped in XContentParseException, an unknown
+      // `normalizer_type` leaves the default type in place, which was not requested
+      if (!nrCoreBuilder.unknownNormalizerType) {
+        ScoreNormalizerMetrics.INSTANCE.onValidationFailure(nrCoreBuilder.normalizerType);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * parses the body of a profile. A rejected profile is a settings update, not a search, so it
+   * does not count as a validation failure in the node stats.
+   */
+  static NormalizerRescorerBuilder fromProfileXContent(XContentParser parser) throws IOException {
+    return parse(parser, new NormalizerRescorerBuilder.NRCoreBuilder());
+  }
+
+  private static NormalizerRescorerBuilder parse(XContentParser parser, NRCoreBuilder nrCoreBuilder)
+      throws IOException {
+    NORMALIZER_RESCORER_PARSER.parse(parser, nrCoreBuilder, null);
+    if (nrCoreBuilder.profileId != null) {
+      return fromProfile(nrCoreBuilder);
+    }
     return nrCoreBuilder.build();
   }
 
+  /**
+   * copies the cached builder of a stored profile instead of validating the options again.
+   *
+   * @throws IllegalArgumentException if the request sets options next to the profile or no
+   *     profile is stored under the id
+   */
+  private static NormalizerRescorerBuilder fromProfile(NRCoreBuilder nrCoreBuilder) {
+    if (nrCoreBuilder.hasOptions()) {
+      throw new IllegalArgumentException(
+          "`profile_id` can not be combined with other attributes of [" + NAME + "]");
+    }
+    return new NormalizerRescorerBuilder()
+        .setProfile(nrCoreBuilder.profileId, NormalizerProfiles.resolve(nrCoreBuilder.profileId));
+  }
+
   @Override
   public String getWriteableName() {
     return NAME;
@@ -160,6 +668,10 @@ public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescore
   }
 
   public NormalizerRescorerBuilder setFactorMode(String factorMode) {
+    return setFactorMode(NormalizerFactorMathOp.fromString(factorMode));
+  }
+
+  public NormalizerRescorerBuilder setFactorMode(NormalizerFactorMathOp factorMode) {
     this.factorMode = factorMode;
     return this;
   }
@@ -170,25 +682,326 @@ public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescore
   }
 
   public NormalizerRescorerBuilder setNormalizerType(String normalizerType) {
+    return setNormalizerType(NormalizerType.fromString(normalizerType));
+  }
+
+  public NormalizerRescorerBuilder setNormalizerType(NormalizerType normalizerType) {
     this.normalizerType = normalizerType;
     return this;
   }
 
   public NormalizerRescorerBuilder setOnScoresSame(String onScoresSame) {
+    return setOnScoresSame(MinMaxSameScoreStrategy.fromString(onScoresSame));
+  }
+
+  public NormalizerRescorerBuilder setOnScoresSame(MinMaxSameScoreStrategy onScoresSame) {
     this.onScoresSame = onScoresSame;
     return this;
   }
 
+  public NormalizerRescorerBuilder setScope(String scope) {
+    return setScope(NormalizerScope.fromString(scope));
+  }
+
+  public NormalizerRescorerBuilder setScope(NormalizerScope scope) {
+    this.scope = scope;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder setRankConstant(float rankConstant) {
+    this.rankConstant = rankConstant;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder setCacheStats(boolean cacheStats) {
+    this.cacheStats = cacheStats;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder setClipQuantile(float clipQuantile) {
+    this.clipQuantile = clipQuantile;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder setWinsorize(float winsorize) {
+    this.winsorize = winsorize;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder setTemperature(float temperature) {
+    this.temperature = temperature;
+    return this;
+  }
+
+  public NormalizerRescorerBuilder setFastExp(boolean fastExp) {
+    this.fastExp = fastExp;
+    return this;
+  }
+
+  /**
+   * sets the numeric fields whose weighted values are added to the normalized scores.
+   *
+   * @param fields fields to blend, empty to rescore with the normalized score only
+   * @return this builder
+   */
+  public NormalizerRescorerBuilder setFields(List<WeightedField> fields) {
+    this.weightedFields = Objects.requireNonNull(fields, "`fields` must not be null");
+    return this;
+  }
+
+  public List<WeightedField> getFields() {
+    return weightedFields;
+  }
+
+  /**
+   * sets the stages of `normalizer_type` [pipeline].
+   *
+   * @param pipeline stages in the order they map the scores
+   * @return this builder
+   */
+  public NormalizerRescorerBuilder setPipeline(List<PipelineStage> pipeline) {
+    this.pipeline = Objects.requireNonNull(pipeline, "`pipeline` must not be null");
+    return this;
+  }
+
+  public List<PipelineStage> getPipeline() {
+    return pipeline;
+  }
+
+  /**
+   * sets the name of the statistics registered in the index settings to normalize against, see
+   * {@link StaticScoreStats}.
+   *
+   * @param staticStats name the statistics are registered under, null to use the window
+   * @return this builder
+   */
+  public NormalizerRescorerBuilder setStaticStats(String staticStats) {
+    this.staticStats = staticStats;
+    return this;
+  }
+
+  public String getStaticStats() {
+    return staticStats;
+  }
+
+  /**
+   * copies the options of a stored profile, the fields filled in by the coordinating node and the
+   * window size stay as they are.
+   *
+   * @param profileId id the profile is stored under
+   * @param profile parsed and validated builder of the profile
+   * @return this builder
+   */
+  NormalizerRescorerBuilder setProfile(String profileId, NormalizerRescorerBuilder profile) {
+    this.profileId = profileId;
+    copyOptions(profile);
+    return this;
+  }
+
+  private void copyOptions(NormalizerRescorerBuilder profile) {
+    this.normalizerType = profile.normalizerType;
+    this.minScore = profile.minScore;
+    this.maxScore = profile.maxScore;
+    this.factor = profile.factor;
+    this.factorMode = profile.factorMode;
+    this.onScoresSame = profile.onScoresSame;
+    this.scope = profile.scope;
+    this.rankConstant = profile.rankConstant;
+    this.cacheStats = profile.cacheStats;
+    this.clipQuantile = profile.clipQuantile;
+    this.winsorize = profile.winsorize;
+    this.temperature = profile.temperature;
+    this.fastExp = profile.fastExp;
+    this.weightedFields = profile.weightedFields;
+    this.pipeline = profile.pipeline;
+    this.staticStats = profile.staticStats;
+    this.statsSource = profile.statsSource;
+  }
+
+  public NormalizerRescorerBuilder setStatsSource(String statsSource) {
+    return setStatsSource(StatsSource.fromString(statsSource));
+  }
+
+  /**
+   * sets which hits of a shard the statistics are collected over.
+   *
+   * @param statsSource `window` for the rescore window, `all_hits` for all hits of the query
+   * @return this builder
+   */
+  public NormalizerRescorerBuilder setStatsSource(StatsSource statsSource) {
+    this.statsSource = statsSource;
+    return this;
+  }
+
+  public StatsSource getStatsSource() {
+    return statsSource;
+  }
+
+  /** @return id of the stored profile the options come from, null if the request set them */
+  public String getProfileId() {
+    return profileId;
+  }
+
+  public boolean isCacheStats() {
+    return cacheStats;
+  }
+
+  /**
+   * sets the key of the query in the statistics cache of the shards, computed by the coordinating
+   * node when `cache_stats` is on.
+   *
+   * @param statsCacheKey key of the query
+   * @return this builder
+   */
+  public NormalizerRescorerBuilder setStatsCacheKey(String statsCacheKey) {
+    this.statsCacheKey = statsCacheKey;
+    return this;
+  }
+
+  public String getStatsCacheKey() {
+    return statsCacheKey;
+  }
+
+  public NormalizerScope getScope() {
+    return scope;
+  }
+
+  public NormalizerType getNormalizerType() {
+    return normalizerType;
+  }
+
+  /**
+   * sets the statistics of the windows of all shards, used by the shards instead of their own
+   * window when the scope is `global`.
+   *
+   * @param globalStats merged statistics of all shards
+   * @return this builder
+   */
+  public NormalizerRescorerBuilder setGlobalStats(ScoreStats globalStats) {
+    this.globalStats = globalStats;
+    return this;
+  }
+
+  public ScoreStats getGlobalStats() {
+    return globalStats;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!super.equals(o)) {
+      return false;
+    }
+    NormalizerRescorerBuilder that = (NormalizerRescorerBuilder) o;
+    return Float.compare(that.minScore, minScore) == 0
+        && Float.compare(that.maxScore, maxScore) == 0
+        && Float.compare(that.factor, factor) == 0
+        && Float.compare(that.rankConstant, rankConstant) == 0
+        && Float.compare(that.clipQuantile, clipQuantile) == 0
+        && Float.compare(that.winsorize, winsorize) == 0
+        && Float.compare(that.temperature, temperature) == 0
+        && cacheStats == that.cacheStats
+        && fastExp == that.fastExp
+        && normalizerType == that.normalizerType
+        && factorMode == that.factorMode
+        && onScoresSame == that.onScoresSame
+        && scope == that.scope
+        && Objects.equals(globalStats, that.globalStats)
+        && Objects.equals(statsCacheKey, that.statsCacheKey)
+        && weightedFields.equals(that.weightedFields)
+        && pipeline.equals(that.pipeline)
+        && Objects.equals(staticStats, that.staticStats)
+        && statsSource == that.statsSource
+        && Objects.equals(profileId, that.profileId);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        super.hashCode(),
+        normalizerType,
+        minScore,
+        maxScore,
+        factor,
+        factorMode,
+        onScoresSame,
+        scope,
+        rankConstant,
+        cacheStats,
+        clipQuantile,
+        winsorize,
+        temperature,
+        fastExp,
+        globalStats,
+        statsCacheKey,
+        weightedFields,
+        pipeline,
+        staticStats,
+        statsSource,
+        profileId);
+  }
+
   private static class NRCoreBuilder {
 
     private float minScore = DEFAULT_MIN_SCORE_V;
     private float maxScore = DEFAULT_MAX_SCORE_V;
-    private String normalizerType = DEFAULT_NORMALIZER_TYPE.name();
+    private NormalizerType normalizerType = DEFAULT_NORMALIZER_TYPE;
+    private boolean unknownNormalizerType;
     private float factor = DEFAULT_FACTOR;
-    private String factorMode = DEFAULT_FACTOR_MODE;
-    private String onScoresSame = DEFAULT_ON_SCORES_SAME;
+    private NormalizerFactorMathOp factorMode = DEFAULT_FACTOR_MODE;
+    private MinMaxSameScoreStrategy onScoresSame = DEFAULT_ON_SCORES_SAME;
+    private NormalizerScope scope = DEFAULT_SCOPE;
+    private float rankConstant = DEFAULT_RANK_CONSTANT;
+    private boolean cacheStats;
+    private float clipQuantile;
+    private float winsorize;
+    private float temperature = DEFAULT_TEMPERATURE;
+    private boolean fastExp;
+    private List<WeightedField> fields = Collections.emptyList();
+    private List<PipelineStage> pipeline = Collections.emptyList();
+    private String staticStats;
+    private StatsSource statsSource = DEFAULT_STATS_SOURCE;
+    private String profileId;
 
     NormalizerRescorerBuilder build() {
+      validate(normalizerType, minScore, maxScore, factor, factorMode, rankConstant);
+      validateClipQuantile(normalizerType, clipQuantile);
+      validateWinsorize(normalizerType, winsorize);
+      validateExp(normalizerType, temperature, fastExp);
+      if (scope == NormalizerScope.global && !normalizerType.usesStats()) {
+        // ranks of a shard say nothing about the other shards, there is no statistic to share
+        throw new IllegalArgumentException(
+            "`scope` [global] is not supported for `normalizer_type` [" + normalizerType + "]");
+      }
+      if ((normalizerType == NormalizerType.pipeline) == pipeline.isEmpty()) {
+        throw new IllegalArgumentException(
+            "`pipeline` requires `normalizer_type` [pipeline] and the other way around");
+      }
+      if (cacheStats && !normalizerType.usesStats()) {
+        throw new IllegalArgumentException(
+            "`cache_stats` is not supported for `normalizer_type` [" + normalizerType + "]");
+      }
+      if (staticStats != null) {
+        validateStaticStats(normalizerType, scope, cacheStats, clipQuantile);
+      }
+      if (statsSource == StatsSource.all_hits) {
+        validateAllHits(normalizerType, scope, cacheStats, clipQuantile, staticStats);
+      }
+      if (scope == NormalizerScope.coordinator
+          && (cacheStats
+              || staticStats != null
+              || statsSource == StatsSource.all_hits
+              || !fields.isEmpty())) {
+        // the coordinating node only has the scores of the hits, not the shard they come from
+        throw new IllegalArgumentException(
+            "`scope` [coordinator] can not be combined with `cache_stats`, `static_stats`, "
+                + "`stats_source` [all_hits] or `fields`");
+      }
+      if (clipQuantile != 0 && (scope == NormalizerScope.global || cacheStats)) {
+        // quantiles are taken from the window of the shard, shared statistics only carry the
+        // extremes
+        throw new IllegalArgumentException(
+            "`clip_quantile` is not supported with `scope` [global] or `cache_stats`");
+      }
       NormalizerRescorerBuilder normalizerRescorerBuilder = new NormalizerRescorerBuilder();
       normalizerRescorerBuilder.setNormalizerType(normalizerType);
       normalizerRescorerBuilder.setMinScore(minScore);
@@ -196,6 +1009,17 @@ public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescore
       normalizerRescorerBuilder.setFactor(factor);
       normalizerRescorerBuilder.setFactorMode(factorMode);
       normalizerRescorerBuilder.setOnScoresSame(onScoresSame);
+      normalizerRescorerBuilder.setScope(scope);
+      normalizerRescorerBuilder.setRankConstant(rankConstant);
+      normalizerRescorerBuilder.setCacheStats(cacheStats);
+      normalizerRescorerBuilder.setClipQuantile(clipQuantile);
+      normalizerRescorerBuilder.setWinsorize(winsorize);
+      normalizerRescorerBuilder.setTemperature(temperature);
+      normalizerRescorerBuilder.setFastExp(fastExp);
+      normalizerRescorerBuilder.setFields(fields);
+      normalizerRescorerBuilder.setPipeline(pipeline);
+      normalizerRescorerBuilder.setStaticStats(staticStats);
+      normalizerRescorerBuilder.setStatsSource(statsSource);
       return normalizerRescorerBuilder;
     }
 
@@ -212,19 +1036,91 @@ public class NormalizerRescorerBuilder extends RescorerBuilder<NormalizerRescore
     }
 
     public void setFactorMode(String factorMode) {
-      this.factorMode = factorMode;
+      this.factorMode = NormalizerFactorMathOp.fromString(factorMode);
     }
 
     public void setOnScoresSame(String onScoresSame) {
-      this.onScoresSame = onScoresSame;
+      this.onScoresSame = MinMaxSameScoreStrategy.fromString(onScoresSame);
+    }
+
+    public void setScope(String scope) {
+      this.scope = NormalizerScope.fromString(scope);
+    }
+
+    public void setRankConstant(float rankConstant) {
+      this.rankConstant = rankConstant;
+    }
+
+    public void setCacheStats(boolean cacheStats) {
+      this.cacheStats = cacheStats;
+    }
+
+    public void setClipQuantile(float clipQuantile) {
+      this.clipQuantile = clipQuantile;
+    }
+
+    public void setWinsorize(float winsorize) {
+      this.winsorize = winsorize;
+    }
+
+    public void setTemperature(float temperature) {
+      this.temperature = temperature;
+    }
+
+    public void setFastExp(boolean fastExp) {
+      this.fastExp = fastExp;
+    }
+
+    public void setFields(List<WeightedField> fields) {
+      this.fields = fields;
+    }
+
+    public void setPipeline(List<PipelineStage> pipeline) {
+      this.pipeline = pipeline;
+    }
+
+    public void setStaticStats(String staticStats) {
+      this.staticStats = staticStats;
+    }
+
+    public void setProfileId(String profileId) {
+      this.profileId = profileId;
+    }
+
+    public void setStatsSource(String statsSource) {
+      this.statsSource = StatsSource.fromString(statsSource);
+    }
+
+    /** @return true if any option differs from its default, options set to it are not told */
+    boolean hasOptions() {
+      return Float.compare(minScore, DEFAULT_MIN_SCORE_V) != 0
+          || Float.compare(maxScore, DEFAULT_MAX_SCORE_V) != 0
+          || normalizerType != DEFAULT_NORMALIZER_TYPE
+          || Float.compare(factor, DEFAULT_FACTOR) != 0
+          || factorMode != DEFAULT_FACTOR_MODE
+          || onScoresSame != DEFAULT_ON_SCORES_SAME
+          || scope != DEFAULT_SCOPE
+          || Float.compare(rankConstant, DEFAULT_RANK_CONSTANT) != 0
+          || cacheStats
+          || clipQuantile != 0
+          || winsorize != 0
+          || Float.compare(temperature, DEFAULT_TEMPERATURE) != 0
+          || fastExp
+          || !fields.isEmpty()
+          || !pipeline.isEmpty()
+          || staticStats != null
+          || statsSource != DEFAULT_STATS_SOURCE;
     }
 
     public void setNormalizerType(String normalizerType) {
       if (normalizerType == null) {
         return;
       }
-      if (isValid(normalizerType)) {
-        this.normalizerType = normalizerType;
+      try {
+        this.normalizerType = NormalizerType.fromString(normalizerType);
+      } catch (IllegalArgumentException e) {
+        unknownNormalizerType = true;
+        throw e;
       }
     }
   }
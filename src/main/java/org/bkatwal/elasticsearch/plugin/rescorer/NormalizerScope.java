@@ -0,0 +1,55 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import java.util.Arrays;
+
+/**
+ * where the statistics a window is normalized against come from. {@code shard} uses the window of
+ * each shard on its own, {@code global} uses the merged windows of all shards, gathered by the
+ * coordinating node before the search. {@code coordinator} skips the shards and normalizes the
+ * merged hits of the response on the coordinating node.
+ */
+public enum NormalizerScope {
+  shard,
+  global,
+  coordinator;
+
+  /**
+   * resolves the request value of `scope`.
+   *
+   * @param value value passed in the request
+   * @return matching NormalizerScope
+   * @throws IllegalArgumentException if the value is not one of the allowed values
+   */
+  public static NormalizerScope fromString(String value) {
+    for (NormalizerScope v : values()) {
+      if (v.name().equals(value)) {
+        return v;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Invalid `scope` [" + value + "], allowed values are " + Arrays.toString(values()));
+  }
+}
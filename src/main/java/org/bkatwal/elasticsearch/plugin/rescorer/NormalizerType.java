@@ -23,9 +23,53 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.rescorer;
 
+import java.util.Arrays;
+
 public enum NormalizerType {
   min_max,
-  z_score;
+  z_score,
+  rrf,
+  percentile,
+  robust_z,
+  sigmoid,
+  softmax,
+  // stages of `pipeline` run as one normalizer, see NormalizerPipeline
+  pipeline;
+
+  /**
+   * resolves the request value of `normalizer_type`.
+   *
+   * @param value value passed in the request
+   * @return matching NormalizerType
+   * @throws IllegalArgumentException if the value is not one of the allowed values
+   */
+  public static NormalizerType fromString(String value) {
+    for (NormalizerType v : values()) {
+      if (v.name().equals(value)) {
+        return v;
+      }
+    }
+    throw new IllegalArgumentException(
+        "Invalid `normalizer_type` ["
+            + value
+            + "], allowed values are "
+            + Arrays.toString(values()));
+  }
+
+  /**
+   * @return true if the normalizer works on statistics of the window, which can be shared by
+   *     shards with `global` scope and by pages with `cache_stats`. Rank based normalizers only
+   *     look at the order of the window, robust_z needs the median and the MAD and softmax the
+   *     sum over the window.
+   */
+  public boolean usesStats() {
+    return this == min_max || this == z_score || this == sigmoid;
+  }
+
+  /** @return true if the normalizer maps scores through exp, see `temperature` and `fast_exp` */
+  public boolean usesExp() {
+    return this == sigmoid || this == softmax;
+  }
 
   public static boolean isValid(String normalizerType) {
     try {
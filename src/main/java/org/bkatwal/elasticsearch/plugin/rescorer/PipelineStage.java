@@ -0,0 +1,218 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.optionalConstructorArg;
+
+/**
+ * stage of the `pipeline` of the `score_normalizer` rescorer. Every stage maps the output of the
+ * stage before it, the first stage maps the scores of the window.
+ */
+public final class PipelineStage implements Writeable, ToXContentObject {
+
+  /** transform of a stage, min_max, z_score and sigmoid as the normalizers of the same name. */
+  public enum Type {
+    log1p,
+    min_max,
+    z_score,
+    sigmoid;
+
+    /**
+     * resolves the request value of `type`.
+     *
+     * @param value value passed in the request
+     * @return matching Type
+     * @throws IllegalArgumentException if the value is not one of the allowed values
+     */
+    public static Type fromString(String value) {
+      for (Type v : values()) {
+        if (v.name().equals(value)) {
+          return v;
+        }
+      }
+      throw new IllegalArgumentException(
+          "Invalid pipeline stage `type` ["
+              + value
+              + "], allowed values are "
+              + Arrays.toString(values()));
+    }
+  }
+
+  private static final ParseField TYPE = new ParseField("type");
+  private static final ParseField MIN_SCORE = new ParseField("min_score");
+  private static final ParseField MAX_SCORE = new ParseField("max_score");
+  private static final ParseField TEMPERATURE = new ParseField("temperature");
+  private static final float DEFAULT_MIN_SCORE = 0.0f;
+  private static final float DEFAULT_MAX_SCORE = 1.0f;
+
+  private static final ConstructingObjectParser<PipelineStage, Void> PARSER =
+      new ConstructingObjectParser<>(
+          "stage",
+          args ->
+              new PipelineStage(
+                  Type.fromString((String) args[0]),
+                  args[1] == null ? DEFAULT_MIN_SCORE : (float) args[1],
+                  args[2] == null ? DEFAULT_MAX_SCORE : (float) args[2],
+                  args[3] == null
+                      ? NormalizerRescorerBuilder.DEFAULT_TEMPERATURE
+                      : (float) args[3]));
+
+  static {
+    PARSER.declareString(constructorArg(), TYPE);
+    PARSER.declareFloat(optionalConstructorArg(), MIN_SCORE);
+    PARSER.declareFloat(optionalConstructorArg(), MAX_SCORE);
+    PARSER.declareFloat(optionalConstructorArg(), TEMPERATURE);
+  }
+
+  private final Type type;
+  private final float minScore;
+  private final float maxScore;
+  private final float temperature;
+
+  public PipelineStage(Type type) {
+    this(type, DEFAULT_MIN_SCORE, DEFAULT_MAX_SCORE, NormalizerRescorerBuilder.DEFAULT_TEMPERATURE);
+  }
+
+  /**
+   * @param type transform of the stage
+   * @param minScore lower bound of min_max
+   * @param maxScore upper bound of min_max
+   * @param temperature temperature of sigmoid
+   * @throws IllegalArgumentException if the bounds or the temperature are invalid or set for a
+   *     stage that does not use them
+   */
+  public PipelineStage(Type type, float minScore, float maxScore, float temperature) {
+    this.type = Objects.requireNonNull(type, "`type` must not be null");
+    if (type == Type.min_max && !(minScore < maxScore)) {
+      throw new IllegalArgumentException(
+          "`max_score` of pipeline stage [min_max] must be greater than `min_score`");
+    }
+    if (type != Type.min_max
+        && (Float.compare(minScore, DEFAULT_MIN_SCORE) != 0
+            || Float.compare(maxScore, DEFAULT_MAX_SCORE) != 0)) {
+      throw new IllegalArgumentException(
+          "`min_score` and `max_score` are only supported for pipeline stage [min_max]");
+    }
+    if (!(temperature > 0)) {
+      throw new IllegalArgumentException("`temperature` must be greater than 0");
+    }
+    if (type != Type.sigmoid
+        && Float.compare(temperature, NormalizerRescorerBuilder.DEFAULT_TEMPERATURE) != 0) {
+      throw new IllegalArgumentException(
+          "`temperature` is only supported for pipeline stage [sigmoid]");
+    }
+    this.minScore = minScore;
+    this.maxScore = maxScore;
+    this.temperature = temperature;
+  }
+
+  public PipelineStage(StreamInput in) throws IOException {
+    type = in.readEnum(Type.class);
+    minScore = in.readFloat();
+    maxScore = in.readFloat();
+    temperature = in.readFloat();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeEnum(type);
+    out.writeFloat(minScore);
+    out.writeFloat(maxScore);
+    out.writeFloat(temperature);
+  }
+
+  public static PipelineStage fromXContent(XContentParser parser) throws IOException {
+    return PARSER.parse(parser, null);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject();
+    builder.field(TYPE.getPreferredName(), type.name());
+    if (type == Type.min_max) {
+      builder.field(MIN_SCORE.getPreferredName(), minScore);
+      builder.field(MAX_SCORE.getPreferredName(), maxScore);
+    }
+    if (type == Type.sigmoid) {
+      builder.field(TEMPERATURE.getPreferredName(), temperature);
+    }
+    builder.endObject();
+    return builder;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public float getMinScore() {
+    return minScore;
+  }
+
+  public float getMaxScore() {
+    return maxScore;
+  }
+
+  public float getTemperature() {
+    return temperature;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PipelineStage that = (PipelineStage) o;
+    return type == that.type
+        && Float.compare(that.minScore, minScore) == 0
+        && Float.compare(that.maxScore, maxScore) == 0
+        && Float.compare(that.temperature, temperature) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, minScore, maxScore, temperature);
+  }
+
+  @Override
+  public String toString() {
+    return type.name();
+  }
+}
@@ -26,11 +26,25 @@ package org.bkatwal.elasticsearch.plugin.rescorer;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.helper.FieldBlender;
+import org.bkatwal.elasticsearch.plugin.helper.Normalizer;
+import org.bkatwal.elasticsearch.plugin.helper.NormalizerPipeline;
 import org.bkatwal.elasticsearch.plugin.helper.NormalizerServiceLocator;
-import org.elasticsearch.common.Nullable;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreExplainer;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreKernel;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStatsCache;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStatsCollector;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerMetrics;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerProfiler;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerSlowLog;
+import org.elasticsearch.search.aggregations.metrics.TDigestState;
 import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.rescore.Rescorer;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import static java.util.Collections.singletonList;
 
 public class ScoreNormalizerRescorer implements Rescorer {
@@ -46,20 +60,135 @@ public class ScoreNormalizerRescorer implements Rescorer {
    * @return return top k normalized docs from each shard
    */
   @Override
-  public TopDocs rescore(TopDocs topDocs, IndexSearcher searcher, RescoreContext rescoreContext) {
+  public TopDocs rescore(TopDocs topDocs, IndexSearcher searcher, RescoreContext rescoreContext)
+      throws IOException {
 
     assert rescoreContext != null;
     if (topDocs == null || topDocs.scoreDocs.length == 0) {
       return topDocs;
     }
 
+    long start = System.nanoTime();
     ScoreNormalizerRescorerContext context = (ScoreNormalizerRescorerContext) rescoreContext;
-    String normalizerType = context.normalizerType;
+    TopDocs window = context.page(topDocs);
+    int windowSize = window.scoreDocs.length;
+    TopDocs normalized = normalize(window, searcher, context);
+    long took = System.nanoTime() - start;
+    ScoreNormalizerMetrics.INSTANCE.onRescore(
+        context.getNormalizerType(), windowSize, took, context.isAllScoresSame());
+    ScoreNormalizerSlowLog slowLog = context.getSlowLog();
+    if (slowLog != null && took >= slowLog.getMinThreshold()) {
+      slowLog.log(context.getShardId(), context.getNormalizerType(), windowSize, took);
+    }
+    return normalized;
+  }
 
-    topDocs =
-        NormalizerServiceLocator.getInstance(NormalizerType.valueOf(normalizerType))
-            .normalize(topDocs, context);
-    return topDocs;
+  /**
+   * normalizes hits merged on the coordinating node, i.e. of the `coordinator` scope or of a fused
+   * search. The node stats and the slow log only count shard windows, so neither records it.
+   *
+   * @param topDocs merged hits, a doc is the position of its hit
+   * @param context context built without a shard
+   * @return normalized hits
+   */
+  public static TopDocs normalizeMerged(TopDocs topDocs, ScoreNormalizerRescorerContext context)
+      throws IOException {
+    if (topDocs.scoreDocs.length == 0) {
+      return topDocs;
+    }
+    return normalize(context.page(topDocs), null, context);
+  }
+
+  private static TopDocs normalize(
+      TopDocs window, IndexSearcher searcher, ScoreNormalizerRescorerContext context)
+      throws IOException {
+    int windowSize = window.scoreDocs.length;
+    ScoreNormalizerProfiler profiler = context.getProfiler();
+    if (profiler != null) {
+      profiler.start(profileDescription(context, windowSize));
+    }
+    TopDocs normalized;
+    try {
+      context.collectHitStats();
+      ScoreStatsCache cache = ScoreStatsCache.getInstance();
+      if (cache != null && context.getStatsCacheKey() != null && context.getFixedStats() == null) {
+        if (profiler != null) {
+          profiler.startCacheLookup();
+        }
+        // the first page of the search collects the statistics of its window, later pages reuse
+        // them until the reader changes
+        context.setCachedStats(
+            cache.computeIfAbsent(
+                searcher.getIndexReader(),
+                context.getStatsCacheKey(),
+                () -> ScoreStats.of(window.scoreDocs)));
+      }
+      if (profiler != null) {
+        profiler.startStatistics();
+      }
+      normalized = context.getNormalizer().normalize(window, context);
+      FieldBlender fieldBlender = context.getFieldBlender();
+      if (fieldBlender != null) {
+        fieldBlender.blend(normalized.scoreDocs, searcher);
+      }
+    } finally {
+      if (profiler != null) {
+        profiler.stop();
+      }
+    }
+    return normalized;
+  }
+
+  /** @return window size and parameters of the rescore as listed by the profile API */
+  static String profileDescription(ScoreNormalizerRescorerContext context, int windowSize) {
+    StringBuilder description =
+        new StringBuilder(NormalizerRescorerBuilder.NAME)
+            .append("(normalizer_type=")
+            .append(context.getNormalizerType())
+            .append(", window_size=")
+            .append(windowSize)
+            .append(", scope=")
+            .append(context.getScope())
+            .append(", min_score=")
+            .append(context.getMinScore())
+            .append(", max_score=")
+            .append(context.getMaxScore())
+            .append(", factor=")
+            .append(context.getFactor())
+            .append(", factor_mode=")
+            .append(context.getFactorMode());
+    if (context.getNormalizerType() == NormalizerType.rrf) {
+      description.append(", rank_constant=").append(context.getRankConstant());
+    }
+    if (context.getClipQuantile() > 0) {
+      description.append(", clip_quantile=").append(context.getClipQuantile());
+    }
+    if (context.getWinsorize() > 0) {
+      description.append(", winsorize=").append(context.getWinsorize());
+    }
+    if (context.getNormalizerType().usesExp()) {
+      description
+          .append(", temperature=")
+          .append(context.getTemperature())
+          .append(", fast_exp=")
+          .append(context.isFastExp());
+    }
+    if (context.getStatsCacheKey() != null) {
+      description.append(", cache_stats=true");
+    }
+    if (context.getStaticStatsName() != null) {
+      description.append(", static_stats=").append(context.getStaticStatsName());
+    }
+    if (context.getStatsSource() != StatsSource.window) {
+      description.append(", stats_source=").append(context.getStatsSource());
+    }
+    if (context.getPipeline() != null) {
+      description.append(", pipeline=").append(Arrays.toString(context.getPipeline().getStages()));
+    }
+    if (context.getFieldBlender() != null) {
+      description.append(", fields=").append(Arrays.toString(context.getFieldBlender().getNames()));
+    }
+    return description.append(')').toString();
   }
 
   @Override
@@ -67,60 +196,125 @@ public class ScoreNormalizerRescorer implements Rescorer {
       int topLevelDocId,
       IndexSearcher searcher,
       RescoreContext rescoreContext,
-      Explanation sourceExplanation) {
+      Explanation sourceExplanation)
+      throws IOException {
 
     ScoreNormalizerRescorerContext context = (ScoreNormalizerRescorerContext) rescoreContext;
-    String factorMode = context.getFactorMode();
-    float factor = context.factor;
-    String operation = factorMode + " using " + factor + " on:";
-
-    return Explanation.match(
-        0.0f,
-        "Final score -> normalize using, " + context.getNormalizerType() + " and then " + operation,
-        singletonList(sourceExplanation));
+    String description = NormalizerRescorerBuilder.NAME + " [" + context.getNormalizerType() + "]";
+    ScoreExplainer explainer = context.getExplainer();
+    if (explainer == null) {
+      // e.g. the explain API, which explains the rescorers without running them
+      return Explanation.match(
+          sourceExplanation.getValue(),
+          description + ", the hits were not normalized by this request",
+          singletonList(sourceExplanation));
+    }
+    Explanation explanation = explainer.explain(topLevelDocId, sourceExplanation, context);
+    if (explanation == null) {
+      return Explanation.match(
+          sourceExplanation.getValue(),
+          description + ", the doc was not in the window",
+          singletonList(sourceExplanation));
+    }
+    FieldBlender fieldBlender = context.getFieldBlender();
+    if (fieldBlender != null) {
+      explanation = fieldBlender.explain(topLevelDocId, searcher, explanation);
+    }
+    return Explanation.match(explanation.getValue(), description, singletonList(explanation));
   }
 
   public static class ScoreNormalizerRescorerContext extends RescoreContext {
-    private String normalizerType;
-    private float minScore;
-    private float maxScore;
-    private float factor;
-    private String factorMode;
-    private String onScoresSame;
+    private final NormalizerType normalizerType;
+    private final float minScore;
+    private final float maxScore;
+    private final float factor;
+    private final NormalizerFactorMathOp factorMode;
+    private final MinMaxSameScoreStrategy onScoresSame;
+    private final Normalizer normalizer;
+    private final ScoreKernel kernel;
+    private final float sameScore;
+    private final NormalizerScope scope;
+    private final ScoreStats globalStats;
+    private final float rankConstant;
+    private String statsCacheKey;
+    private ScoreStats cachedStats;
+    private String staticStatsName;
+    private ScoreStats staticStats;
+    private int pageSize;
+    private StatsSource statsSource = StatsSource.window;
+    private ScoreStatsCollector hitStatsCollector;
+    private ScoreStats hitStats;
+    private float clipQuantile;
+    private float winsorize;
+    private float temperature = NormalizerRescorerBuilder.DEFAULT_TEMPERATURE;
+    private boolean fastExp;
+    private boolean allScoresSame;
+    private ScoreNormalizerSlowLog slowLog;
+    private int shardId;
+    private ScoreNormalizerProfiler profiler;
+    private boolean explain;
+    private ScoreExplainer explainer;
+    private FieldBlender fieldBlender;
+    private NormalizerPipeline pipeline;
+
+    public ScoreNormalizerRescorerContext(
+        int windowSize,
+        NormalizerType normalizerType,
+        float minScore,
+        float maxScore,
+        float factor,
+        NormalizerFactorMathOp factorMode,
+        MinMaxSameScoreStrategy onScoresSame) {
+      this(
+          windowSize,
+          normalizerType,
+          minScore,
+          maxScore,
+          factor,
+          factorMode,
+          onScoresSame,
+          NormalizerScope.shard,
+          null,
+          NormalizerRescorerBuilder.DEFAULT_RANK_CONSTANT);
+    }
 
     public ScoreNormalizerRescorerContext(
         int windowSize,
-        @Nullable String normalizerType,
-        @Nullable float minScore,
-        @Nullable float maxScore,
-        @Nullable float factor,
-        @Nullable String factorMode,
-        @Nullable String onScoresSame) {
+        NormalizerType normalizerType,
+        float minScore,
+        float maxScore,
+        float factor,
+        NormalizerFactorMathOp factorMode,
+        MinMaxSameScoreStrategy onScoresSame,
+        NormalizerScope scope,
+        ScoreStats globalStats,
+        float rankConstant) {
       super(windowSize, INSTANCE);
+      NormalizerRescorerBuilder.validate(
+          normalizerType, minScore, maxScore, factor, factorMode, rankConstant);
       this.minScore = minScore;
       this.maxScore = maxScore;
       this.normalizerType = normalizerType;
       this.factorMode = factorMode;
       this.factor = factor;
       this.onScoresSame = onScoresSame;
+      this.normalizer = NormalizerServiceLocator.getInstance(normalizerType);
+      this.kernel = normalizer.compile(factorMode, factor);
+      this.sameScore = onScoresSame.score(minScore, maxScore);
+      this.scope = scope;
+      this.rankConstant = rankConstant;
+      // a global pre-phase that matched nothing leaves nothing to normalize against, the shard
+      // windows are empty as well then
+      this.globalStats =
+          scope == NormalizerScope.global && globalStats != null && globalStats.getCount() > 0
+              ? globalStats
+              : null;
     }
 
-    public void setFactor(float factor) {
-      this.factor = factor;
-    }
-
-    public void setFactorMode(String factorMode) {
-      this.factorMode = factorMode;
-    }
-
-    public String getNormalizerType() {
+    public NormalizerType getNormalizerType() {
       return normalizerType;
     }
 
-    public void setNormalizerType(String normalizerType) {
-      this.normalizerType = normalizerType;
-    }
-
     public float getMinScore() {
       return minScore;
     }
@@ -129,28 +323,299 @@ public class ScoreNormalizerRescorer implements Rescorer {
       return factor;
     }
 
-    public String getOnScoresSame() {
+    public MinMaxSameScoreStrategy getOnScoresSame() {
       return onScoresSame;
     }
 
-    public void setOnScoresSame(String onScoresSame) {
-      this.onScoresSame = onScoresSame;
+    public NormalizerFactorMathOp getFactorMode() {
+      return factorMode;
     }
 
-    public String getFactorMode() {
-      return factorMode;
+    public float getMaxScore() {
+      return maxScore;
     }
 
-    public void setMinScore(float minScore) {
-      this.minScore = minScore;
+    public Normalizer getNormalizer() {
+      return normalizer;
     }
 
-    public float getMaxScore() {
-      return maxScore;
+    /** @return kernel compiled from `factor` and `factor_mode` for the selected normalizer */
+    public ScoreKernel getKernel() {
+      return kernel;
     }
 
-    public void setMaxScore(float maxScore) {
-      this.maxScore = maxScore;
+    /** @return `k` of the rrf normalizer, a doc at rank r scores 1 / (k + r) */
+    public float getRankConstant() {
+      return rankConstant;
+    }
+
+    public NormalizerScope getScope() {
+      return scope;
+    }
+
+    /**
+     * @return statistics of the windows of all shards for `global` scope, null when the window of
+     *     the shard is normalized on its own
+     */
+    public ScoreStats getGlobalStats() {
+      return globalStats;
+    }
+
+    /**
+     * @return statistics to normalize against instead of the statistics of the window, the merged
+     *     statistics of all shards for `global` scope, the statistics registered in the index
+     *     settings for `static_stats` or the cached statistics of the first page for
+     *     `cache_stats`. Null when the window is normalized on its own.
+     */
+    public ScoreStats getFixedStats() {
+      if (globalStats != null) {
+        return globalStats;
+      }
+      if (staticStats != null) {
+        return staticStats;
+      }
+      return hitStats != null ? hitStats : cachedStats;
+    }
+
+    public StatsSource getStatsSource() {
+      return statsSource;
+    }
+
+    public void setStatsSource(StatsSource statsSource) {
+      this.statsSource = statsSource;
+    }
+
+    /** sets the collector gathering the statistics of all hits while the query phase runs. */
+    public void setHitStatsCollector(ScoreStatsCollector hitStatsCollector) {
+      this.hitStatsCollector = hitStatsCollector;
+    }
+
+    /**
+     * takes the statistics of all hits from the collector once the query phase collected them. A
+     * search that did not run the collector, e.g. a result from the request cache, normalizes
+     * against its window.
+     */
+    void collectHitStats() {
+      if (hitStatsCollector != null && hitStatsCollector.getCount() > 0) {
+        hitStats = hitStatsCollector.getStats();
+      }
+    }
+
+    /**
+     * @return statistics of all hits of the shard for `stats_source` [all_hits], null if the
+     *     window is normalized against its own statistics
+     */
+    public ScoreStats getHitStats() {
+      return hitStats;
+    }
+
+    /** @return quantile sketch of the scores of all hits, null unless percentile uses all hits */
+    public TDigestState getHitSketch() {
+      return hitStats != null ? hitStatsCollector.getSketch() : null;
+    }
+
+    /** @return name of the registered statistics, null if `static_stats` is not set */
+    public String getStaticStatsName() {
+      return staticStatsName;
+    }
+
+    /**
+     * sets the statistics registered in the index settings under `static_stats`.
+     *
+     * @param name name the statistics are registered under
+     * @param staticStats registered statistics
+     */
+    public void setStaticStats(String name, ScoreStats staticStats) {
+      this.staticStatsName = name;
+      this.staticStats = staticStats;
+    }
+
+    /**
+     * sets how many top docs of the shard can make it to the requested page, from + size of the
+     * search. Only the last rescore of a search gets it, a later rescore could still move any doc
+     * of the window up.
+     */
+    void setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+    }
+
+    /**
+     * cuts the window down to the docs that can make it to the requested page. With registered
+     * statistics every doc is normalized on its own and the normalization keeps the order of the
+     * window, the same on every shard, so the coordinating node picks the same page from the
+     * raw order and the docs behind from + size of a shard are never shown.
+     *
+     * @return docs to normalize, the window itself if all of it has to be
+     */
+    TopDocs page(TopDocs topDocs) {
+      if (staticStats == null
+          || pageSize <= 0
+          || pageSize >= topDocs.scoreDocs.length
+          || fieldBlender != null
+          || (factorMode != NormalizerFactorMathOp.sum && factor < 0)) {
+        // blended fields are normalized against the window and reorder it, a negative factor
+        // flips the order
+        return topDocs;
+      }
+      return new TopDocs(topDocs.totalHits, Arrays.copyOf(topDocs.scoreDocs, pageSize));
+    }
+
+    /** @return key of the query in the statistics cache, null if `cache_stats` is off */
+    public String getStatsCacheKey() {
+      return statsCacheKey;
+    }
+
+    public void setStatsCacheKey(String statsCacheKey) {
+      this.statsCacheKey = statsCacheKey;
+    }
+
+    void setCachedStats(ScoreStats cachedStats) {
+      this.cachedStats = cachedStats;
+    }
+
+    /**
+     * @return quantile of the window used as lower bound by min_max instead of the lowest score,
+     *     one minus it is used as upper bound. 0 when the bounds are the extremes of the window.
+     */
+    public float getClipQuantile() {
+      return clipQuantile;
+    }
+
+    public void setClipQuantile(float clipQuantile) {
+      NormalizerRescorerBuilder.validateClipQuantile(normalizerType, clipQuantile);
+      this.clipQuantile = clipQuantile;
+    }
+
+    /**
+     * @return bound robust_z scores are clamped to, in both directions, before the factor is
+     *     applied. 0 when the scores are not clamped.
+     */
+    public float getWinsorize() {
+      return winsorize;
+    }
+
+    public void setWinsorize(float winsorize) {
+      NormalizerRescorerBuilder.validateWinsorize(normalizerType, winsorize);
+      this.winsorize = winsorize;
+    }
+
+    /** @return temperature of sigmoid and softmax, higher values flatten the scores */
+    public float getTemperature() {
+      return temperature;
+    }
+
+    public void setTemperature(float temperature) {
+      NormalizerRescorerBuilder.validateExp(normalizerType, temperature, fastExp);
+      this.temperature = temperature;
+    }
+
+    /** @return true if sigmoid and softmax approximate exp, see FastExp for the error bound */
+    public boolean isFastExp() {
+      return fastExp;
+    }
+
+    public void setFastExp(boolean fastExp) {
+      NormalizerRescorerBuilder.validateExp(normalizerType, temperature, fastExp);
+      this.fastExp = fastExp;
+    }
+
+    /** @return slow log of the index of the shard, null outside of a shard search */
+    public ScoreNormalizerSlowLog getSlowLog() {
+      return slowLog;
+    }
+
+    public int getShardId() {
+      return shardId;
+    }
+
+    public void setSlowLog(ScoreNormalizerSlowLog slowLog, int shardId) {
+      this.slowLog = slowLog;
+      this.shardId = shardId;
+    }
+
+    /** @return profiler of the rescore, null unless the search is profiled */
+    public ScoreNormalizerProfiler getProfiler() {
+      return profiler;
+    }
+
+    public void setProfiler(ScoreNormalizerProfiler profiler) {
+      this.profiler = profiler;
+    }
+
+    /**
+     * called by the normalizers once the statistics of the window are collected, right before
+     * the scores are mapped.
+     */
+    public void startKernel() {
+      if (profiler != null) {
+        profiler.startKernel();
+      }
+    }
+
+    /**
+     * @return true if the search explains its hits, the normalizers then capture the statistics
+     *     of the window for {@link #getExplainer()}
+     */
+    public boolean isExplain() {
+      return explain;
+    }
+
+    public void setExplain(boolean explain) {
+      this.explain = explain;
+    }
+
+    /** @return explainer of the last window rescored, null if none was captured */
+    public ScoreExplainer getExplainer() {
+      return explainer;
+    }
+
+    public void setExplainer(ScoreExplainer explainer) {
+      this.explainer = explainer;
+    }
+
+    /**
+     * explains the final score of a doc from its normalized score.
+     *
+     * @param normalized explanation of the normalized score
+     * @return explanation of the normalized score with the factor applied
+     */
+    public Explanation explainFactor(Explanation normalized) {
+      return Explanation.match(
+          kernel.apply(normalized.getValue().floatValue()),
+          "factor_mode [" + factorMode + "] with factor [" + factor + "]",
+          normalized);
+    }
+
+    /** @return compiled stages of `normalizer_type` [pipeline], null for the other types */
+    public NormalizerPipeline getPipeline() {
+      return pipeline;
+    }
+
+    public void setPipeline(NormalizerPipeline pipeline) {
+      this.pipeline = pipeline;
+    }
+
+    /** @return blender of the doc-value fields of the request, null if it blends none */
+    public FieldBlender getFieldBlender() {
+      return fieldBlender;
+    }
+
+    public void setFieldBlender(FieldBlender fieldBlender) {
+      this.fieldBlender = fieldBlender;
+    }
+
+    /** marks that all docs of the window had the same score, counted by the node metrics. */
+    public void markAllScoresSame() {
+      this.allScoresSame = true;
+    }
+
+    public boolean isAllScoresSame() {
+      return allScoresSame;
+    }
+
+    /** @return score every doc gets when all scores in the window are same, see on_score_same */
+    public float getSameScore() {
+      return sameScore;
     }
   }
 }
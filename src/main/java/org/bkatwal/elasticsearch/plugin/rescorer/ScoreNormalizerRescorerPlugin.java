@@ -23,20 +23,162 @@ SOFTWARE.
  */
 package org.bkatwal.elasticsearch.plugin.rescorer;
 
+import org.apache.lucene.util.SetOnce;
+import org.bkatwal.elasticsearch.plugin.action.FusedSearchAction;
+import org.bkatwal.elasticsearch.plugin.action.ScoreNormalizerSearchFilter;
+import org.bkatwal.elasticsearch.plugin.action.ScoreNormalizerStatsAction;
+import org.bkatwal.elasticsearch.plugin.action.TransportFusedSearchAction;
+import org.bkatwal.elasticsearch.plugin.action.TransportScoreNormalizerStatsAction;
+import org.bkatwal.elasticsearch.plugin.aggregation.InternalScoreStats;
+import org.bkatwal.elasticsearch.plugin.aggregation.ScoreStatsAggregationBuilder;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStatsCache;
+import org.bkatwal.elasticsearch.plugin.helper.StaticScoreStats;
+import org.bkatwal.elasticsearch.plugin.helper.WindowExecutor;
+import org.bkatwal.elasticsearch.plugin.rest.RestFusedSearchAction;
+import org.bkatwal.elasticsearch.plugin.rest.RestNormalizerProfileAction;
+import org.bkatwal.elasticsearch.plugin.rest.RestScoreNormalizerStatsAction;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerSlowLog;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.support.ActionFilter;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static java.util.Collections.singletonList;
 
-public class ScoreNormalizerRescorerPlugin extends Plugin implements SearchPlugin {
+public class ScoreNormalizerRescorerPlugin extends Plugin implements SearchPlugin, ActionPlugin {
+
+  private final SetOnce<Client> client = new SetOnce<>();
+  private final SetOnce<ClusterService> clusterService = new SetOnce<>();
+
+  @Override
+  public Collection<Object> createComponents(
+      Client client,
+      ClusterService clusterService,
+      ThreadPool threadPool,
+      ResourceWatcherService resourceWatcherService,
+      ScriptService scriptService,
+      NamedXContentRegistry xContentRegistry,
+      Environment environment,
+      NodeEnvironment nodeEnvironment,
+      NamedWriteableRegistry namedWriteableRegistry) {
+    this.client.set(client);
+    this.clusterService.set(clusterService);
+    Settings settings = environment.settings();
+    if (ScoreStatsCache.CACHE_SIZE.get(settings) > 0) {
+      ScoreStatsCache.init(new ScoreStatsCache(settings));
+    }
+    NormalizerProfiles.init(new NormalizerProfiles(settings, clusterService.getClusterSettings()));
+    WindowExecutor.init(
+        new WindowExecutor(
+            threadPool.executor(WindowExecutor.THREAD_POOL_NAME),
+            threadPool.info(WindowExecutor.THREAD_POOL_NAME).getMax(),
+            WindowExecutor.MIN_WINDOW.get(settings)));
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+    return singletonList(WindowExecutor.executorBuilder(settings));
+  }
+
+  @Override
+  public List<Setting<?>> getSettings() {
+    return Arrays.asList(
+        ScoreStatsCache.CACHE_SIZE,
+        ScoreStatsCache.CACHE_EXPIRE,
+        WindowExecutor.MIN_WINDOW,
+        StaticScoreStats.STATIC_STATS,
+        NormalizerProfiles.PROFILES,
+        ScoreNormalizerSlowLog.THRESHOLD_WARN,
+        ScoreNormalizerSlowLog.THRESHOLD_INFO,
+        ScoreNormalizerSlowLog.THRESHOLD_DEBUG,
+        ScoreNormalizerSlowLog.THRESHOLD_TRACE);
+  }
+
+  @Override
+  public void onIndexModule(IndexModule indexModule) {
+    ScoreNormalizerSlowLog.register(indexModule);
+    StaticScoreStats.register(indexModule);
+    indexModule.addSearchOperationListener(ScoreNormalizerSearchListener.INSTANCE);
+  }
+
   @Override
   public List<SearchPlugin.RescorerSpec<?>> getRescorers() {
-    return singletonList(
+    return Arrays.asList(
         new SearchPlugin.RescorerSpec<>(
             NormalizerRescorerBuilder.NAME,
             NormalizerRescorerBuilder::new,
-            NormalizerRescorerBuilder::fromXContent));
+            NormalizerRescorerBuilder::fromXContent),
+        new SearchPlugin.RescorerSpec<>(
+            FusionRescorerBuilder.NAME,
+            FusionRescorerBuilder::new,
+            FusionRescorerBuilder::fromXContent));
+  }
+
+  @Override
+  public List<AggregationSpec> getAggregations() {
+    return singletonList(
+        new AggregationSpec(
+                ScoreStatsAggregationBuilder.NAME,
+                ScoreStatsAggregationBuilder::new,
+                ScoreStatsAggregationBuilder::parse)
+            .addResultReader(InternalScoreStats::new));
+  }
+
+  @Override
+  public List<ActionFilter> getActionFilters() {
+    // components are created before the action filters are collected
+    return singletonList(new ScoreNormalizerSearchFilter(client.get(), clusterService.get()));
+  }
+
+  @Override
+  public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+    return Arrays.asList(
+        new ActionHandler<>(
+            ScoreNormalizerStatsAction.INSTANCE, TransportScoreNormalizerStatsAction.class),
+        new ActionHandler<>(FusedSearchAction.INSTANCE, TransportFusedSearchAction.class));
+  }
+
+  @Override
+  public List<RestHandler> getRestHandlers(
+      Settings settings,
+      RestController restController,
+      ClusterSettings clusterSettings,
+      IndexScopedSettings indexScopedSettings,
+      SettingsFilter settingsFilter,
+      IndexNameExpressionResolver indexNameExpressionResolver,
+      Supplier<DiscoveryNodes> nodesInCluster) {
+    return Arrays.asList(
+        new RestScoreNormalizerStatsAction(restController),
+        new RestNormalizerProfileAction(restController),
+        new RestFusedSearchAction(restController));
   }
 }
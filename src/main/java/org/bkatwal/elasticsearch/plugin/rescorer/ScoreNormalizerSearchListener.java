@@ -0,0 +1,111 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStatsCollector;
+import org.bkatwal.elasticsearch.plugin.stats.ScoreNormalizerProfiler;
+import org.elasticsearch.index.shard.SearchOperationListener;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.profile.Profilers;
+import org.elasticsearch.search.rescore.RescoreContext;
+
+import java.util.List;
+
+/**
+ * hands the score_normalizer rescore contexts of a shard search what only the search context
+ * knows, whether the search is profiled, whether it explains its hits and, for rescores on
+ * registered statistics, how many docs the requested page needs. Rescores on the statistics of
+ * all hits get a collector added to the query phase. Other searches leave the contexts as they
+ * are and pay nothing for either.
+ */
+final class ScoreNormalizerSearchListener implements SearchOperationListener {
+
+  static final ScoreNormalizerSearchListener INSTANCE = new ScoreNormalizerSearchListener();
+
+  private ScoreNormalizerSearchListener() {}
+
+  @Override
+  public void onPreQueryPhase(SearchContext searchContext) {
+    List<RescoreContext> rescore = searchContext.rescore();
+    if (rescore == null || rescore.isEmpty()) {
+      return;
+    }
+    for (int i = 0; i < rescore.size(); i++) {
+      if (rescore.get(i) instanceof ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) {
+        ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+            (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) rescore.get(i);
+        if (context.getStatsSource() == StatsSource.all_hits) {
+          collectHitStats(searchContext, context, i);
+        }
+      }
+    }
+    RescoreContext last = rescore.get(rescore.size() - 1);
+    if (last instanceof ScoreNormalizerRescorer.ScoreNormalizerRescorerContext
+        && searchContext.scrollContext() == null) {
+      // a scroll pages through the whole window, every doc of it is shown at some point
+      ((ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) last)
+          .setPageSize(Math.max(0, searchContext.from()) + searchContext.size());
+    }
+    Profilers profilers = searchContext.getProfilers();
+    boolean explain = searchContext.explain();
+    if (profilers == null && !explain) {
+      return;
+    }
+    for (RescoreContext rescoreContext : rescore) {
+      if (rescoreContext instanceof ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) {
+        ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+            (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) rescoreContext;
+        context.setExplain(explain);
+        if (profilers != null) {
+          context.setProfiler(new ScoreNormalizerProfiler(profilers::getCurrentQueryProfiler));
+        }
+      }
+      if (rescoreContext instanceof FusionRescorer.FusionRescoreContext) {
+        ((FusionRescorer.FusionRescoreContext) rescoreContext).setExplain(explain);
+      }
+    }
+  }
+
+  /**
+   * adds the collector of the statistics of all hits to the query phase.
+   *
+   * @throws IllegalArgumentException if the rescore is not the first one, the scores of the later
+   *     windows are the results of the earlier rescores and not those of the query
+   */
+  private static void collectHitStats(
+      SearchContext searchContext,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context,
+      int position) {
+    if (position > 0) {
+      throw new IllegalArgumentException(
+          "`stats_source` [all_hits] is only supported for the first rescorer of a search");
+    }
+    ScoreStatsCollector collector = new ScoreStatsCollector();
+    if (context.getNormalizerType() == NormalizerType.percentile) {
+      collector.enableSketch();
+    }
+    searchContext.queryCollectors().put(ScoreStatsCollector.class, collector);
+    context.setHitStatsCollector(collector);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.optionalConstructorArg;
+
+/**
+ * numeric doc-value field of the `score_normalizer` rescorer, its normalized and weighted value
+ * is added to the normalized score of the doc.
+ */
+public final class WeightedField implements Writeable, ToXContentObject {
+
+  private static final ParseField FIELD = new ParseField("field");
+  private static final ParseField WEIGHT = new ParseField("weight");
+  private static final ParseField NORMALIZATION = new ParseField("normalization");
+  private static final ParseField MISSING = new ParseField("missing");
+  private static final float DEFAULT_WEIGHT = 1.0f;
+  private static final FieldNormalization DEFAULT_NORMALIZATION = FieldNormalization.min_max;
+  private static final float DEFAULT_MISSING = 0.0f;
+
+  private static final ConstructingObjectParser<WeightedField, Void> PARSER =
+      new ConstructingObjectParser<>(
+          "field",
+          args ->
+              new WeightedField(
+                  (String) args[0],
+                  args[1] == null ? DEFAULT_WEIGHT : (float) args[1],
+                  args[2] == null
+                      ? DEFAULT_NORMALIZATION
+                      : FieldNormalization.fromString((String) args[2]),
+                  args[3] == null ? DEFAULT_MISSING : (float) args[3]));
+
+  static {
+    PARSER.declareString(constructorArg(), FIELD);
+    PARSER.declareFloat(optionalConstructorArg(), WEIGHT);
+    PARSER.declareString(optionalConstructorArg(), NORMALIZATION);
+    PARSER.declareFloat(optionalConstructorArg(), MISSING);
+  }
+
+  private final String field;
+  private final float weight;
+  private final FieldNormalization normalization;
+  private final float missing;
+
+  public WeightedField(String field, float weight) {
+    this(field, weight, DEFAULT_NORMALIZATION, DEFAULT_MISSING);
+  }
+
+  /**
+   * @param field name of a numeric field with doc values
+   * @param weight weight of the normalized value, added to the normalized score
+   * @param normalization how the values are scaled before they are weighted
+   * @param missing value of docs without a value for the field
+   * @throws IllegalArgumentException if the weight or the missing value is not finite
+   */
+  public WeightedField(
+      String field, float weight, FieldNormalization normalization, float missing) {
+    this.field = Objects.requireNonNull(field, "`field` must not be null");
+    this.normalization =
+        Objects.requireNonNull(normalization, "`normalization` must not be null");
+    if (!Float.isFinite(weight)) {
+      throw new IllegalArgumentException("`weight` of field [" + field + "] must be finite");
+    }
+    if (!Float.isFinite(missing)) {
+      throw new IllegalArgumentException("`missing` of field [" + field + "] must be finite");
+    }
+    this.weight = weight;
+    this.missing = missing;
+  }
+
+  public WeightedField(StreamInput in) throws IOException {
+    field = in.readString();
+    weight = in.readFloat();
+    normalization = in.readEnum(FieldNormalization.class);
+    missing = in.readFloat();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeString(field);
+    out.writeFloat(weight);
+    out.writeEnum(normalization);
+    out.writeFloat(missing);
+  }
+
+  public static WeightedField fromXContent(XContentParser parser) throws IOException {
+    return PARSER.parse(parser, null);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject();
+    builder.field(FIELD.getPreferredName(), field);
+    builder.field(WEIGHT.getPreferredName(), weight);
+    builder.field(NORMALIZATION.getPreferredName(), normalization.name());
+    builder.field(MISSING.getPreferredName(), missing);
+    builder.endObject();
+    return builder;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public float getWeight() {
+    return weight;
+  }
+
+  public FieldNormalization getNormalization() {
+    return normalization;
+  }
+
+  public float getMissing() {
+    return missing;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    WeightedField that = (WeightedField) o;
+    return Float.compare(that.weight, weight) == 0
+        && Float.compare(that.missing, missing) == 0
+        && field.equals(that.field)
+        && normalization == that.normalization;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(field, weight, normalization, missing);
+  }
+}
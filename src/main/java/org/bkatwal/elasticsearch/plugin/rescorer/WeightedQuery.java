@@ -0,0 +1,139 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.query.AbstractQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.optionalConstructorArg;
+
+/** named sub-query of the `score_fusion` rescorer and the weight of its normalized score. */
+public final class WeightedQuery implements Writeable, ToXContentObject {
+
+  private static final ParseField NAME = new ParseField("name");
+  private static final ParseField QUERY = new ParseField("query");
+  private static final ParseField WEIGHT = new ParseField("weight");
+  private static final float DEFAULT_WEIGHT = 1.0f;
+
+  private static final ConstructingObjectParser<WeightedQuery, Void> PARSER =
+      new ConstructingObjectParser<>(
+          "query",
+          args ->
+              new WeightedQuery(
+                  (String) args[0],
+                  (QueryBuilder) args[1],
+                  args[2] == null ? DEFAULT_WEIGHT : (float) args[2]));
+
+  static {
+    PARSER.declareString(constructorArg(), NAME);
+    PARSER.declareObject(
+        constructorArg(), (p, c) -> AbstractQueryBuilder.parseInnerQueryBuilder(p), QUERY);
+    PARSER.declareFloat(optionalConstructorArg(), WEIGHT);
+  }
+
+  private final String name;
+  private final QueryBuilder query;
+  private final float weight;
+
+  public WeightedQuery(String name, QueryBuilder query, float weight) {
+    this.name = Objects.requireNonNull(name, "`name` must not be null");
+    this.query = Objects.requireNonNull(query, "`query` must not be null");
+    this.weight = weight;
+  }
+
+  public WeightedQuery(StreamInput in) throws IOException {
+    name = in.readString();
+    query = in.readNamedWriteable(QueryBuilder.class);
+    weight = in.readFloat();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeString(name);
+    out.writeNamedWriteable(query);
+    out.writeFloat(weight);
+  }
+
+  public static WeightedQuery fromXContent(XContentParser parser) throws IOException {
+    return PARSER.parse(parser, null);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject();
+    builder.field(NAME.getPreferredName(), name);
+    builder.field(QUERY.getPreferredName(), query);
+    builder.field(WEIGHT.getPreferredName(), weight);
+    builder.endObject();
+    return builder;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public QueryBuilder getQuery() {
+    return query;
+  }
+
+  public float getWeight() {
+    return weight;
+  }
+
+  /** @return copy of this query with the given, e.g. rewritten, query builder */
+  WeightedQuery withQuery(QueryBuilder query) {
+    return new WeightedQuery(name, query, weight);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    WeightedQuery that = (WeightedQuery) o;
+    return Float.compare(that.weight, weight) == 0
+        && name.equals(that.name)
+        && query.equals(that.query);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(name, query, weight);
+  }
+}
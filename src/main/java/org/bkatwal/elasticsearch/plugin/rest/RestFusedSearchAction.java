@@ -0,0 +1,61 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rest;
+
+import org.bkatwal.elasticsearch.plugin.action.FusedSearchAction;
+import org.bkatwal.elasticsearch.plugin.action.FusedSearchRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestToXContentListener;
+
+import java.io.IOException;
+
+/** serves {@code GET|POST _fused_search}, the searches and the normalizer are in the body. */
+public class RestFusedSearchAction extends BaseRestHandler {
+
+  public RestFusedSearchAction(RestController controller) {
+    controller.registerHandler(RestRequest.Method.GET, "/" + FusedSearchAction.REST_NAME, this);
+    controller.registerHandler(RestRequest.Method.POST, "/" + FusedSearchAction.REST_NAME, this);
+  }
+
+  @Override
+  public String getName() {
+    return "score_normalizer_fused_search_action";
+  }
+
+  @Override
+  protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client)
+      throws IOException {
+    FusedSearchRequest fusedRequest;
+    try (XContentParser parser = request.contentParser()) {
+      fusedRequest = FusedSearchRequest.fromXContent(parser);
+    }
+    return channel ->
+        client.execute(
+            FusedSearchAction.INSTANCE, fusedRequest, new RestToXContentListener<>(channel));
+  }
+}
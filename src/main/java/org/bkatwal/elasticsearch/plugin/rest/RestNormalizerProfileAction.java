@@ -0,0 +1,131 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rest;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerProfiles;
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.action.admin.cluster.settings.ClusterUpdateSettingsRequest;
+import org.elasticsearch.action.admin.cluster.settings.ClusterUpdateSettingsResponse;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.action.RestBuilderListener;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * serves {@code PUT|GET|DELETE _score_normalizer/profile/{id}}. Profiles are stored as persistent
+ * cluster settings, see {@link NormalizerProfiles}, a GET lists the profiles as the handling node
+ * sees them.
+ */
+public class RestNormalizerProfileAction extends BaseRestHandler {
+
+  public RestNormalizerProfileAction(RestController controller) {
+    controller.registerHandler(RestRequest.Method.PUT, "/_score_normalizer/profile/{id}", this);
+    controller.registerHandler(RestRequest.Method.DELETE, "/_score_normalizer/profile/{id}", this);
+    controller.registerHandler(RestRequest.Method.GET, "/_score_normalizer/profile", this);
+    controller.registerHandler(RestRequest.Method.GET, "/_score_normalizer/profile/{id}", this);
+  }
+
+  @Override
+  public String getName() {
+    return "score_normalizer_profile_action";
+  }
+
+  @Override
+  protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client)
+      throws IOException {
+    String id = request.param("id");
+    if (request.method() == RestRequest.Method.GET) {
+      return channel -> channel.sendResponse(getProfiles(channel.newBuilder(), id));
+    }
+    if (!Strings.hasText(id) || id.contains(".")) {
+      throw new IllegalArgumentException(
+          "invalid score_normalizer profile id [" + id + "], it must not be empty or contain '.'");
+    }
+    Settings.Builder settings = Settings.builder();
+    if (request.method() == RestRequest.Method.PUT) {
+      String body =
+          XContentHelper.convertToJson(request.requiredContent(), false, request.getXContentType());
+      // rejected here with the parse error, the settings validator would only report the key
+      NormalizerProfiles.parse(body);
+      settings.put(NormalizerProfiles.PREFIX + id, body);
+    } else {
+      settings.putNull(NormalizerProfiles.PREFIX + id);
+    }
+    ClusterUpdateSettingsRequest updateRequest =
+        new ClusterUpdateSettingsRequest().persistentSettings(settings);
+    updateRequest.masterNodeTimeout(
+        request.paramAsTime("master_timeout", updateRequest.masterNodeTimeout()));
+    return channel ->
+        client
+            .admin()
+            .cluster()
+            .updateSettings(
+                updateRequest,
+                new RestBuilderListener<ClusterUpdateSettingsResponse>(channel) {
+                  @Override
+                  public RestResponse buildResponse(
+                      ClusterUpdateSettingsResponse response, XContentBuilder builder)
+                      throws IOException {
+                    builder.startObject().field("acknowledged", response.isAcknowledged());
+                    return new BytesRestResponse(RestStatus.OK, builder.endObject());
+                  }
+                });
+  }
+
+  private static RestResponse getProfiles(XContentBuilder builder, String id) throws IOException {
+    NormalizerProfiles profiles = NormalizerProfiles.getInstance();
+    Map<String, String> bodies = new TreeMap<>();
+    if (profiles != null) {
+      bodies.putAll(profiles.getBodies());
+    }
+    if (id != null) {
+      String body = bodies.get(id);
+      if (body == null) {
+        throw new ResourceNotFoundException("score_normalizer profile [" + id + "] not found");
+      }
+      bodies.clear();
+      bodies.put(id, body);
+    }
+    builder.startObject();
+    for (Map.Entry<String, String> profile : bodies.entrySet()) {
+      builder.rawField(
+          profile.getKey(), new BytesArray(profile.getValue()).streamInput(), XContentType.JSON);
+    }
+    return new BytesRestResponse(RestStatus.OK, builder.endObject());
+  }
+}
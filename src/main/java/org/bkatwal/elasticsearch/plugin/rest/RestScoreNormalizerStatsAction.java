@@ -0,0 +1,65 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rest;
+
+import org.bkatwal.elasticsearch.plugin.action.ScoreNormalizerStatsAction;
+import org.bkatwal.elasticsearch.plugin.action.ScoreNormalizerStatsRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+/** serves {@code GET _nodes/score_normalizer/stats}, optionally limited to some nodes. */
+public class RestScoreNormalizerStatsAction extends BaseRestHandler {
+
+  public RestScoreNormalizerStatsAction(RestController controller) {
+    controller.registerHandler(RestRequest.Method.GET, "/_nodes/score_normalizer/stats", this);
+    controller.registerHandler(
+        RestRequest.Method.GET, "/_nodes/{nodeId}/score_normalizer/stats", this);
+  }
+
+  @Override
+  public String getName() {
+    return "score_normalizer_stats_action";
+  }
+
+  @Override
+  protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+    String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+    ScoreNormalizerStatsRequest statsRequest = new ScoreNormalizerStatsRequest(nodesIds);
+    statsRequest.timeout(request.param("timeout"));
+    return channel ->
+        client.execute(
+            ScoreNormalizerStatsAction.INSTANCE,
+            statsRequest,
+            new RestActions.NodesResponseRestListener<>(channel));
+  }
+
+  @Override
+  public boolean canTripCircuitBreaker() {
+    return false;
+  }
+}
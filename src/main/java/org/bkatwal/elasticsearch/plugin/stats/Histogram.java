@@ -0,0 +1,63 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * histogram with fixed bucket bounds, every bucket is a striped counter, so search threads
+ * recording at the same time do not contend on one cache line.
+ */
+final class Histogram {
+
+  private final long[] bounds;
+  private final LongAdder[] counts;
+
+  /** @param bounds inclusive upper bounds of the buckets in ascending order */
+  Histogram(long[] bounds) {
+    this.bounds = bounds;
+    // one more bucket for the values above the last bound
+    this.counts = new LongAdder[bounds.length + 1];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  void record(long value) {
+    int bucket = 0;
+    while (bucket < bounds.length && value > bounds[bucket]) {
+      bucket++;
+    }
+    counts[bucket].increment();
+  }
+
+  /** @return count of every bucket, the last one counts the values above the last bound */
+  long[] counts() {
+    long[] snapshot = new long[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      snapshot[i] = counts[i].sum();
+    }
+    return snapshot;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/** point in time copy of the metrics of one normalizer type on one node. */
+public final class NormalizerTypeStats implements Writeable, ToXContentFragment {
+
+  private final NormalizerType normalizerType;
+  private final long invocations;
+  private final long docs;
+  private final long timeInNanos;
+  private final long sameScoreFallbacks;
+  private final long validationFailures;
+  private final long[] windowSizes;
+  private final long[] latencies;
+
+  public NormalizerTypeStats(
+      NormalizerType normalizerType,
+      long invocations,
+      long docs,
+      long timeInNanos,
+      long sameScoreFallbacks,
+      long validationFailures,
+      long[] windowSizes,
+      long[] latencies) {
+    this.normalizerType = normalizerType;
+    this.invocations = invocations;
+    this.docs = docs;
+    this.timeInNanos = timeInNanos;
+    this.sameScoreFallbacks = sameScoreFallbacks;
+    this.validationFailures = validationFailures;
+    this.windowSizes = windowSizes;
+    this.latencies = latencies;
+  }
+
+  public NormalizerTypeStats(StreamInput in) throws IOException {
+    normalizerType = NormalizerType.fromString(in.readString());
+    invocations = in.readVLong();
+    docs = in.readVLong();
+    timeInNanos = in.readVLong();
+    sameScoreFallbacks = in.readVLong();
+    validationFailures = in.readVLong();
+    windowSizes = in.readVLongArray();
+    latencies = in.readVLongArray();
+  }
+
+  @Override
+  public void writeTo(StreamOutput out) throws IOException {
+    out.writeString(normalizerType.name());
+    out.writeVLong(invocations);
+    out.writeVLong(docs);
+    out.writeVLong(timeInNanos);
+    out.writeVLong(sameScoreFallbacks);
+    out.writeVLong(validationFailures);
+    out.writeVLongArray(windowSizes);
+    out.writeVLongArray(latencies);
+  }
+
+  @Override
+  public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+    builder.startObject(normalizerType.name());
+    builder.field("invocations", invocations);
+    builder.field("docs", docs);
+    builder.field("time_in_nanos", timeInNanos);
+    builder.field("same_score_fallbacks", sameScoreFallbacks);
+    builder.field("validation_failures", validationFailures);
+    // buckets are keyed by their inclusive upper bound, the last one holds everything above
+    histogram(builder, "window_size", ScoreNormalizerMetrics.WINDOW_SIZE_BOUNDS, 1, windowSizes);
+    histogram(builder, "latency_micros", ScoreNormalizerMetrics.LATENCY_BOUNDS, 1000, latencies);
+    builder.endObject();
+    return builder;
+  }
+
+  private static void histogram(
+      XContentBuilder builder, String name, long[] bounds, long unit, long[] counts)
+      throws IOException {
+    builder.startObject(name);
+    for (int i = 0; i < bounds.length; i++) {
+      builder.field(Long.toString(bounds[i] / unit), counts[i]);
+    }
+    builder.field("+Inf", counts[bounds.length]);
+    builder.endObject();
+  }
+
+  public NormalizerType getNormalizerType() {
+    return normalizerType;
+  }
+
+  public long getInvocations() {
+    return invocations;
+  }
+
+  public long getDocs() {
+    return docs;
+  }
+
+  public long getTimeInNanos() {
+    return timeInNanos;
+  }
+
+  public long getSameScoreFallbacks() {
+    return sameScoreFallbacks;
+  }
+
+  public long getValidationFailures() {
+    return validationFailures;
+  }
+
+  /** @return invocations per window size bucket, see ScoreNormalizerMetrics#WINDOW_SIZE_BOUNDS */
+  public long[] getWindowSizes() {
+    return windowSizes;
+  }
+
+  /** @return invocations per latency bucket, see ScoreNormalizerMetrics#LATENCY_BOUNDS */
+  public long[] getLatencies() {
+    return latencies;
+  }
+}
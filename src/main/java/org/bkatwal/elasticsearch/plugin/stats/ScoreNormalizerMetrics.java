@@ -0,0 +1,117 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * node level metrics of the score_normalizer rescorer per normalizer type, read through the
+ * `_nodes/score_normalizer/stats` endpoint. All counters are striped, recording never takes a
+ * lock or spins on a shared counter.
+ */
+public final class ScoreNormalizerMetrics {
+
+  /** inclusive upper bounds of the window size buckets, in docs */
+  static final long[] WINDOW_SIZE_BOUNDS = {10, 100, 1_000, 10_000};
+  /** inclusive upper bounds of the latency buckets, in nanoseconds */
+  static final long[] LATENCY_BOUNDS = {
+    10_000, 50_000, 100_000, 500_000, 1_000_000, 5_000_000, 10_000_000, 50_000_000, 100_000_000
+  };
+
+  // after the bounds, the metrics of every type are created with them
+  public static final ScoreNormalizerMetrics INSTANCE = new ScoreNormalizerMetrics();
+
+  private final TypeMetrics[] metrics;
+
+  ScoreNormalizerMetrics() {
+    NormalizerType[] types = NormalizerType.values();
+    metrics = new TypeMetrics[types.length];
+    for (NormalizerType type : types) {
+      metrics[type.ordinal()] = new TypeMetrics();
+    }
+  }
+
+  /**
+   * records one rescore of a shard window.
+   *
+   * @param normalizerType normalizer of the window
+   * @param windowSize number of docs in the window
+   * @param tookNanos time spent on the window
+   * @param sameScore true if all docs of the window had the same score
+   */
+  public void onRescore(
+      NormalizerType normalizerType, int windowSize, long tookNanos, boolean sameScore) {
+    // four striped updates per window, invocations are the sum of the window size buckets
+    TypeMetrics typeMetrics = metrics[normalizerType.ordinal()];
+    typeMetrics.docs.add(windowSize);
+    typeMetrics.timeInNanos.add(tookNanos);
+    typeMetrics.windowSizes.record(windowSize);
+    typeMetrics.latencies.record(tookNanos);
+    if (sameScore) {
+      typeMetrics.sameScoreFallbacks.increment();
+    }
+  }
+
+  /** records a rejected score_normalizer request of the given normalizer type. */
+  public void onValidationFailure(NormalizerType normalizerType) {
+    metrics[normalizerType.ordinal()].validationFailures.increment();
+  }
+
+  /** @return metrics of every normalizer type, in the order of NormalizerType */
+  public List<NormalizerTypeStats> stats() {
+    List<NormalizerTypeStats> stats = new ArrayList<>(metrics.length);
+    for (NormalizerType type : NormalizerType.values()) {
+      TypeMetrics typeMetrics = metrics[type.ordinal()];
+      long[] windowSizes = typeMetrics.windowSizes.counts();
+      long invocations = 0;
+      for (long count : windowSizes) {
+        invocations += count;
+      }
+      stats.add(
+          new NormalizerTypeStats(
+              type,
+              invocations,
+              typeMetrics.docs.sum(),
+              typeMetrics.timeInNanos.sum(),
+              typeMetrics.sameScoreFallbacks.sum(),
+              typeMetrics.validationFailures.sum(),
+              windowSizes,
+              typeMetrics.latencies.counts()));
+    }
+    return stats;
+  }
+
+  private static final class TypeMetrics {
+    private final LongAdder docs = new LongAdder();
+    private final LongAdder timeInNanos = new LongAdder();
+    private final LongAdder sameScoreFallbacks = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final Histogram windowSizes = new Histogram(WINDOW_SIZE_BOUNDS);
+    private final Histogram latencies = new Histogram(LATENCY_BOUNDS);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.elasticsearch.search.profile.Timer;
+import org.elasticsearch.search.profile.query.QueryProfiler;
+import org.elasticsearch.search.profile.query.QueryTimingType;
+
+import java.util.function.Supplier;
+
+/**
+ * times the phases of a score_normalizer rescore for the profile API. The rescore shows up as
+ * one more entry in the `query` section of the shard, with one child per phase. The query
+ * profiler only knows the timings of a query, so the time of each entry is reported as `score`.
+ */
+public final class ScoreNormalizerProfiler {
+
+  static final String CACHE_LOOKUP = "stats_cache_lookup";
+  static final String STATISTICS = "statistics";
+  static final String KERNEL = "kernel";
+
+  private final Supplier<QueryProfiler> queryProfiler;
+  private QueryProfiler profiler;
+  private Timer total;
+  private Timer phase;
+
+  /** @param queryProfiler profiler of the query the rescore belongs to */
+  public ScoreNormalizerProfiler(Supplier<QueryProfiler> queryProfiler) {
+    this.queryProfiler = queryProfiler;
+  }
+
+  /**
+   * starts the entry of a rescore.
+   *
+   * @param description window size and parameters of the rescore
+   */
+  public void start(String description) {
+    profiler = queryProfiler.get();
+    total =
+        profiler
+            .getQueryBreakdown(new ScoreNormalizerPhase(description))
+            .getTimer(QueryTimingType.SCORE);
+    total.start();
+  }
+
+  /** starts the lookup of the cached statistics of the query. */
+  public void startCacheLookup() {
+    startPhase(CACHE_LOOKUP);
+  }
+
+  /** starts collecting the statistics of the window, e.g. min and max or the ranks. */
+  public void startStatistics() {
+    startPhase(STATISTICS);
+  }
+
+  /** starts mapping the scores of the window onto their normalized scores. */
+  public void startKernel() {
+    startPhase(KERNEL);
+  }
+
+  /** stops the entry of the rescore and its last phase. */
+  public void stop() {
+    stopPhase();
+    total.stop();
+    profiler.pollLastElement();
+  }
+
+  private void startPhase(String name) {
+    stopPhase();
+    // the entry of the rescore is still on the stack of the profiler, so this is its child
+    phase =
+        profiler.getQueryBreakdown(new ScoreNormalizerPhase(name)).getTimer(QueryTimingType.SCORE);
+    phase.start();
+  }
+
+  private void stopPhase() {
+    if (phase != null) {
+      phase.stop();
+      profiler.pollLastElement();
+      phase = null;
+    }
+  }
+
+  /** stands in for a query in the profile tree, never executed. */
+  private static final class ScoreNormalizerPhase extends Query {
+    private final String description;
+
+    private ScoreNormalizerPhase(String description) {
+      this.description = description;
+    }
+
+    @Override
+    public String toString(String field) {
+      return description;
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {}
+
+    @Override
+    public boolean equals(Object obj) {
+      return sameClassAs(obj) && description.equals(((ScoreNormalizerPhase) obj).description);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * classHash() + description.hashCode();
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * slow log of the score_normalizer rescorer, one per index with dynamic thresholds like the
+ * search slow log. Entries go to the `index.score_normalizer.slowlog` logger.
+ */
+public final class ScoreNormalizerSlowLog {
+
+  private static final Logger logger = LogManager.getLogger("index.score_normalizer.slowlog");
+  private static final String THRESHOLD_PREFIX = "index.score_normalizer.slowlog.threshold.";
+
+  public static final Setting<TimeValue> THRESHOLD_WARN = threshold("warn");
+  public static final Setting<TimeValue> THRESHOLD_INFO = threshold("info");
+  public static final Setting<TimeValue> THRESHOLD_DEBUG = threshold("debug");
+  public static final Setting<TimeValue> THRESHOLD_TRACE = threshold("trace");
+
+  // slow logs of the indices with a shard on this node
+  private static final Map<Index, ScoreNormalizerSlowLog> SLOW_LOGS = new ConcurrentHashMap<>();
+
+  private final Index index;
+  // thresholds in nanoseconds, negative when the level is off
+  private volatile long warnThreshold;
+  private volatile long infoThreshold;
+  private volatile long debugThreshold;
+  private volatile long traceThreshold;
+  // smallest threshold that is on, the rescorer compares against it only
+  private volatile long minThreshold;
+
+  ScoreNormalizerSlowLog(Index index, Settings settings) {
+    this.index = index;
+    this.warnThreshold = THRESHOLD_WARN.get(settings).nanos();
+    this.infoThreshold = THRESHOLD_INFO.get(settings).nanos();
+    this.debugThreshold = THRESHOLD_DEBUG.get(settings).nanos();
+    this.traceThreshold = THRESHOLD_TRACE.get(settings).nanos();
+    updateMinThreshold();
+  }
+
+  private static Setting<TimeValue> threshold(String level) {
+    return Setting.timeSetting(
+        THRESHOLD_PREFIX + level,
+        TimeValue.timeValueNanos(-1),
+        TimeValue.timeValueMillis(-1),
+        Setting.Property.Dynamic,
+        Setting.Property.IndexScope);
+  }
+
+  /**
+   * creates the slow log of the index and keeps it until the index is removed from the node.
+   *
+   * @param indexModule module of the index being created
+   */
+  public static void register(IndexModule indexModule) {
+    ScoreNormalizerSlowLog slowLog =
+        new ScoreNormalizerSlowLog(indexModule.getIndex(), indexModule.getSettings());
+    indexModule.addSettingsUpdateConsumer(THRESHOLD_WARN, slowLog::setWarnThreshold);
+    indexModule.addSettingsUpdateConsumer(THRESHOLD_INFO, slowLog::setInfoThreshold);
+    indexModule.addSettingsUpdateConsumer(THRESHOLD_DEBUG, slowLog::setDebugThreshold);
+    indexModule.addSettingsUpdateConsumer(THRESHOLD_TRACE, slowLog::setTraceThreshold);
+    indexModule.addIndexEventListener(
+        new IndexEventListener() {
+          @Override
+          public void afterIndexRemoved(
+              Index index,
+              IndexSettings indexSettings,
+              IndicesClusterStateService.AllocatedIndices.IndexRemovalReason reason) {
+            // only if no newer index service of the same index registered in between
+            SLOW_LOGS.remove(index, slowLog);
+          }
+        });
+    SLOW_LOGS.put(indexModule.getIndex(), slowLog);
+  }
+
+  /** @return slow log of the index, null if the index has no shard on this node */
+  public static ScoreNormalizerSlowLog forIndex(Index index) {
+    return SLOW_LOGS.get(index);
+  }
+
+  /** @return smallest threshold that is on in nanoseconds, Long.MAX_VALUE if all are off */
+  public long getMinThreshold() {
+    return minThreshold;
+  }
+
+  /**
+   * logs a rescore at the highest level whose threshold it reached, callers check {@link
+   * #getMinThreshold()} first.
+   */
+  public void log(int shardId, NormalizerType normalizerType, int windowSize, long tookNanos) {
+    Level level = level(tookNanos);
+    if (level == null) {
+      return;
+    }
+    logger.log(
+        level,
+        new ParameterizedMessage(
+            "[{}][{}] took[{}], took_nanos[{}], normalizer_type[{}], window_size[{}]",
+            index.getName(),
+            shardId,
+            TimeValue.timeValueNanos(tookNanos),
+            tookNanos,
+            normalizerType,
+            windowSize));
+  }
+
+  /** @return highest level whose threshold the time reached, null if none */
+  Level level(long tookNanos) {
+    if (warnThreshold >= 0 && tookNanos >= warnThreshold) {
+      return Level.WARN;
+    }
+    if (infoThreshold >= 0 && tookNanos >= infoThreshold) {
+      return Level.INFO;
+    }
+    if (debugThreshold >= 0 && tookNanos >= debugThreshold) {
+      return Level.DEBUG;
+    }
+    if (traceThreshold >= 0 && tookNanos >= traceThreshold) {
+      return Level.TRACE;
+    }
+    return null;
+  }
+
+  void setWarnThreshold(TimeValue threshold) {
+    this.warnThreshold = threshold.nanos();
+    updateMinThreshold();
+  }
+
+  void setInfoThreshold(TimeValue threshold) {
+    this.infoThreshold = threshold.nanos();
+    updateMinThreshold();
+  }
+
+  void setDebugThreshold(TimeValue threshold) {
+    this.debugThreshold = threshold.nanos();
+    updateMinThreshold();
+  }
+
+  void setTraceThreshold(TimeValue threshold) {
+    this.traceThreshold = threshold.nanos();
+    updateMinThreshold();
+  }
+
+  private void updateMinThreshold() {
+    long min = Long.MAX_VALUE;
+    for (long threshold :
+        new long[] {warnThreshold, infoThreshold, debugThreshold, traceThreshold}) {
+      if (threshold >= 0) {
+        min = Math.min(min, threshold);
+      }
+    }
+    this.minThreshold = min;
+  }
+}
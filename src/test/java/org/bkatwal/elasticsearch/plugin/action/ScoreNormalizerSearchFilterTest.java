@@ -0,0 +1,333 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.bkatwal.elasticsearch.plugin.aggregation.ScoreStatsAggregationBuilder;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStatsCache;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchResponseSections;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.rescore.QueryRescorerBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class ScoreNormalizerSearchFilterTest {
+
+  @Test
+  public void assertShardScopeIsSkipped() {
+    SearchSourceBuilder source =
+        new SearchSourceBuilder().addRescorer(new NormalizerRescorerBuilder());
+    Assert.assertTrue(ScoreNormalizerSearchFilter.globalRescorers(source).isEmpty());
+    Assert.assertTrue(ScoreNormalizerSearchFilter.globalRescorers(null).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertGlobalScopeOnlyOnFirstRescorer() {
+    SearchSourceBuilder source =
+        new SearchSourceBuilder()
+            .addRescorer(new QueryRescorerBuilder(QueryBuilders.matchAllQuery()))
+            .addRescorer(new NormalizerRescorerBuilder().setScope("global"));
+    ScoreNormalizerSearchFilter.globalRescorers(source);
+  }
+
+  @Test
+  public void assertStatsRequest() {
+    SearchSourceBuilder source =
+        new SearchSourceBuilder()
+            .query(QueryBuilders.matchQuery("title", "shoes"))
+            .postFilter(QueryBuilders.termQuery("color", "red"))
+            .from(40)
+            .size(20)
+            .addRescorer(new NormalizerRescorerBuilder().setScope("global").windowSize(50));
+    SearchRequest searchRequest = new SearchRequest(new String[] {"products"}, source);
+
+    SearchRequest statsRequest = ScoreNormalizerSearchFilter.statsRequest(searchRequest);
+    Assert.assertArrayEquals(new String[] {"products"}, statsRequest.indices());
+    Assert.assertEquals(0, statsRequest.source().size());
+    Assert.assertTrue(statsRequest.source().query() instanceof BoolQueryBuilder);
+    ScoreStatsAggregationBuilder aggregation =
+        (ScoreStatsAggregationBuilder)
+            statsRequest.source().aggregations().getAggregatorFactories().iterator().next();
+    // shards collect from + size hits when that is larger than the rescore window
+    Assert.assertEquals(60, aggregation.windowSize());
+  }
+
+  @Test
+  public void assertMissingIndexLeavesNoGlobalStats() {
+    // what an index pattern that matches nothing returns, no aggregations at all
+    SearchResponse missingIndex = statsResponse(null);
+    Assert.assertNull(ScoreNormalizerSearchFilter.globalStats(missingIndex));
+    SearchResponse noStats = statsResponse(new Aggregations(Collections.emptyList()));
+    Assert.assertNull(ScoreNormalizerSearchFilter.globalStats(noStats));
+  }
+
+  private static SearchResponse statsResponse(Aggregations aggregations) {
+    return new SearchResponse(
+        new SearchResponseSections(SearchHits.empty(), aggregations, null, false, null, null, 1),
+        null,
+        0,
+        0,
+        0,
+        1,
+        ShardSearchFailure.EMPTY_ARRAY,
+        SearchResponse.Clusters.EMPTY);
+  }
+
+  @Test
+  public void assertStatsCacheKeySharedByPages() throws IOException {
+    SearchRequest firstPage = cachedSearch(QueryBuilders.matchQuery("title", "shoes"), 0);
+    SearchRequest secondPage = cachedSearch(QueryBuilders.matchQuery("title", "shoes"), 10);
+    SearchRequest otherQuery = cachedSearch(QueryBuilders.matchQuery("title", "boots"), 0);
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(firstPage);
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(secondPage);
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(otherQuery);
+
+    String key = statsCacheKey(firstPage);
+    Assert.assertNotNull(key);
+    Assert.assertEquals(key, statsCacheKey(secondPage));
+    Assert.assertNotEquals(key, statsCacheKey(otherQuery));
+  }
+
+  @Test
+  public void assertStatsCacheKeyCoversRescorer() throws IOException {
+    SearchRequest window10 = cachedSearch(QueryBuilders.matchQuery("title", "shoes"), 0);
+    SearchRequest window50 = cachedSearch(QueryBuilders.matchQuery("title", "shoes"), 0);
+    window50.source().rescores().get(0).windowSize(50);
+    SearchRequest minMax = cachedSearch(QueryBuilders.matchQuery("title", "shoes"), 0);
+    ((NormalizerRescorerBuilder) minMax.source().rescores().get(0)).setNormalizerType("min_max");
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(window10);
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(window50);
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(minMax);
+
+    Assert.assertNotEquals(statsCacheKey(window10), statsCacheKey(window50));
+    Assert.assertNotEquals(statsCacheKey(window10), statsCacheKey(minMax));
+    String key = statsCacheKey(window10);
+    // a second pass over the same request keeps its key
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(window10);
+    Assert.assertEquals(key, statsCacheKey(window10));
+  }
+
+  @Test
+  public void assertWindowSizesDoNotShareStats() throws IOException {
+    try (Directory directory = new ByteBuffersDirectory()) {
+      try (IndexWriter writer =
+          new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+        writer.addDocument(new Document());
+      }
+      try (DirectoryReader reader = DirectoryReader.open(directory)) {
+        ScoreStatsCache.init(new ScoreStatsCache(Settings.EMPTY));
+        IndexSearcher searcher = new IndexSearcher(reader);
+        float[] small = {9f, 5f, 4f};
+        float[] large = {9f, 5f, 4f, 2f, 1f};
+        TopDocs smallWindow = normalizeCached(searcher, small);
+        TopDocs largeWindow = normalizeCached(searcher, large);
+
+        // the larger window is scaled against its own range, not the one of the smaller window
+        Assert.assertEquals(1.0f, largeWindow.scoreDocs[4].score, 1e-6f);
+        Assert.assertNotEquals(
+            smallWindow.scoreDocs[2].score, largeWindow.scoreDocs[2].score, 1e-6f);
+      } finally {
+        ScoreStatsCache.init(null);
+      }
+    }
+  }
+
+  private static TopDocs normalizeCached(IndexSearcher searcher, float[] scores)
+      throws IOException {
+    SearchRequest searchRequest =
+        new SearchRequest()
+            .source(
+                new SearchSourceBuilder()
+                    .query(QueryBuilders.matchQuery("title", "shoes"))
+                    .addRescorer(
+                        new NormalizerRescorerBuilder()
+                            .setNormalizerType("min_max")
+                            .setCacheStats(true)
+                            .windowSize(scores.length)));
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(searchRequest);
+    return ScoreNormalizerRescorer.INSTANCE.rescore(
+        topDocs(scores), searcher, searchRequest.source().rescores().get(0).buildContext(null));
+  }
+
+  @Test
+  public void assertNoStatsCacheKeyWithoutCacheStats() throws IOException {
+    SearchRequest searchRequest =
+        new SearchRequest()
+            .source(new SearchSourceBuilder().addRescorer(new NormalizerRescorerBuilder()));
+    ScoreNormalizerSearchFilter.setStatsCacheKeys(searchRequest);
+    Assert.assertNull(statsCacheKey(searchRequest));
+  }
+
+  @Test
+  public void assertCoordinatorRescorerIsRemoved() {
+    NormalizerRescorerBuilder coordinator = new NormalizerRescorerBuilder().setScope("coordinator");
+    SearchRequest searchRequest =
+        new SearchRequest()
+            .source(
+                new SearchSourceBuilder()
+                    .from(20)
+                    .addRescorer(new QueryRescorerBuilder(QueryBuilders.matchAllQuery()))
+                    .addRescorer(coordinator));
+    ScoreNormalizerSearchFilter.CoordinatorRescorer coordinatorRescorer =
+        ScoreNormalizerSearchFilter.coordinatorRescorer(searchRequest);
+    Assert.assertSame(coordinator, coordinatorRescorer.getRescorer());
+    SearchRequest shardRequest = coordinatorRescorer.getShardRequest();
+    Assert.assertEquals(1, shardRequest.source().rescores().size());
+    // the shards return the hits of all pages up to this one
+    Assert.assertEquals(0, shardRequest.source().from());
+    Assert.assertEquals(30, shardRequest.source().size());
+    Assert.assertNull(ScoreNormalizerSearchFilter.coordinatorRescorer(shardRequest));
+    // the request of the caller keeps its page and rescorers
+    Assert.assertEquals(20, searchRequest.source().from());
+    Assert.assertEquals(-1, searchRequest.source().size());
+    Assert.assertEquals(2, searchRequest.source().rescores().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertCoordinatorScopeOnlyOnLastRescorer() {
+    SearchRequest searchRequest =
+        new SearchRequest()
+            .source(
+                new SearchSourceBuilder()
+                    .addRescorer(new NormalizerRescorerBuilder().setScope("coordinator"))
+                    .addRescorer(new QueryRescorerBuilder(QueryBuilders.matchAllQuery())));
+    ScoreNormalizerSearchFilter.coordinatorRescorer(searchRequest);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertCoordinatorScopeRequiresScoreSort() {
+    SearchRequest searchRequest =
+        new SearchRequest()
+            .source(
+                new SearchSourceBuilder()
+                    .sort("price")
+                    .addRescorer(new NormalizerRescorerBuilder().setScope("coordinator")));
+    ScoreNormalizerSearchFilter.coordinatorRescorer(searchRequest);
+  }
+
+  @Test
+  public void assertCoordinatorNormalizesMergedHits() throws IOException {
+    NormalizerRescorerBuilder rescorer =
+        new NormalizerRescorerBuilder()
+            .setNormalizerType("min_max")
+            .setMinScore(0.0f)
+            .setMaxScore(1.0f)
+            .setFactor(-1.0f)
+            .setFactorMode("multiply")
+            .setScope("coordinator");
+
+    SearchResponse firstPage =
+        new ScoreNormalizerSearchFilter.CoordinatorRescorer(rescorer, 0, 2, null)
+            .normalize(mergedResponse());
+    SearchResponse secondPage =
+        new ScoreNormalizerSearchFilter.CoordinatorRescorer(rescorer, 2, 2, null)
+            .normalize(mergedResponse());
+    Assert.assertEquals(42, secondPage.getHits().getTotalHits().value);
+    Assert.assertEquals(2, secondPage.getTotalShards());
+    // a negative factor reverses the ranking, the hits are sorted again
+    Assert.assertEquals("4", firstPage.getHits().getAt(0).getId());
+    Assert.assertEquals("3", firstPage.getHits().getAt(1).getId());
+    Assert.assertEquals("2", secondPage.getHits().getAt(0).getId());
+    Assert.assertEquals("1", secondPage.getHits().getAt(1).getId());
+    // both pages are normalized as one set, the second page does not start at the top score
+    Assert.assertEquals(firstPage.getHits().getMaxScore(), secondPage.getHits().getMaxScore(), 0f);
+    Assert.assertTrue(
+        secondPage.getHits().getAt(0).getScore() < firstPage.getHits().getAt(1).getScore());
+    Assert.assertEquals("group", secondPage.getHits().getCollapseField());
+    Assert.assertArrayEquals(new Object[] {"c", "b"}, secondPage.getHits().getCollapseValues());
+  }
+
+  /** @return merged hits of the pages up to the second page of 2 hits, collapsed on a field */
+  private static SearchResponse mergedResponse() {
+    SearchHit[] hits = new SearchHit[5];
+    float[] scores = {9.0f, 7.0f, 5.0f, 3.0f, 1.0f};
+    for (int i = 0; i < hits.length; i++) {
+      hits[i] = new SearchHit(i, String.valueOf(i), new Text("_doc"), Collections.emptyMap());
+      hits[i].score(scores[i]);
+    }
+    return new SearchResponse(
+        new SearchResponseSections(
+            new SearchHits(
+                hits,
+                new TotalHits(42, TotalHits.Relation.EQUAL_TO),
+                9.0f,
+                null,
+                "group",
+                new Object[] {"a", "b", "c", "d", "e"}),
+            null,
+            null,
+            false,
+            null,
+            null,
+            1),
+        null,
+        2,
+        2,
+        0,
+        7,
+        ShardSearchFailure.EMPTY_ARRAY,
+        SearchResponse.Clusters.EMPTY);
+  }
+
+  private static SearchRequest cachedSearch(QueryBuilder query, int from) {
+    return new SearchRequest()
+        .source(
+            new SearchSourceBuilder()
+                .query(query)
+                .from(from)
+                .addRescorer(new NormalizerRescorerBuilder().setCacheStats(true)));
+  }
+
+  private static String statsCacheKey(SearchRequest searchRequest) {
+    return ((NormalizerRescorerBuilder) searchRequest.source().rescores().get(0))
+        .getStatsCacheKey();
+  }
+}
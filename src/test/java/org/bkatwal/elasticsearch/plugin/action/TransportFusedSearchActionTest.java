@@ -0,0 +1,172 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.action;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class TransportFusedSearchActionTest {
+
+  private static SearchHit hit(String index, String id, float score) {
+    SearchHit hit = new SearchHit(0, id, new Text("_doc"), Collections.emptyMap());
+    hit.shard(
+        new SearchShardTarget("node", new ShardId(index, "_na_", 0), null, OriginalIndices.NONE));
+    hit.score(score);
+    return hit;
+  }
+
+  private static String[] ids(SearchHit[] hits) {
+    String[] ids = new String[hits.length];
+    for (int i = 0; i < hits.length; i++) {
+      ids[i] = hits[i].getId();
+    }
+    return ids;
+  }
+
+  @Test
+  public void assertNormalizeWeightsNormalizedScores() throws IOException {
+    SearchHit[] hits = {hit("a", "1", 10.0f), hit("a", "2", 6.0f), hit("a", "3", 2.0f)};
+    SearchHit[] ranked =
+        TransportFusedSearchAction.normalize(
+            hits,
+            new NormalizerRescorerBuilder()
+                .setNormalizerType("min_max")
+                .setMinScore(0.0f)
+                .setMaxScore(1.0f),
+            0.5f,
+            "search");
+    Assert.assertArrayEquals(new String[] {"1", "2", "3"}, ids(ranked));
+    // the top doc is boosted by its lead over the runner up
+    Assert.assertEquals(0.75f, ranked[0].getScore(), 1e-6f);
+    Assert.assertEquals(0.25f, ranked[1].getScore(), 1e-6f);
+    Assert.assertEquals(0.0f, ranked[2].getScore(), 1e-6f);
+  }
+
+  @Test
+  public void assertNormalizeRanksNegativeFactorBestFirst() throws IOException {
+    SearchHit[] hits = {hit("a", "1", 10.0f), hit("a", "2", 6.0f), hit("a", "3", 2.0f)};
+    SearchHit[] ranked =
+        TransportFusedSearchAction.normalize(
+            hits,
+            new NormalizerRescorerBuilder()
+                .setNormalizerType("min_max")
+                .setFactor(-1.0f)
+                .setFactorMode("multiply"),
+            1.0f,
+            "search");
+    Assert.assertArrayEquals(new String[] {"3", "2", "1"}, ids(ranked));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertNormalizeRejectsHitsWithoutScore() throws IOException {
+    SearchHit[] hits = {hit("a", "1", Float.NaN)};
+    TransportFusedSearchAction.normalize(hits, new NormalizerRescorerBuilder(), 1.0f, "search");
+  }
+
+  @Test
+  public void assertMergeDedupesOnIndexAndId() {
+    SearchHit[][] ranked = {
+      {hit("a", "1", 0.9f), hit("a", "2", 0.5f), hit("a", "3", 0.1f)},
+      {hit("a", "2", 0.8f), hit("b", "1", 0.6f), hit("a", "4", 0.2f)}
+    };
+    SearchHit[] merged = TransportFusedSearchAction.merge(ranked, 0, 10);
+    Assert.assertArrayEquals(new String[] {"1", "2", "1", "4", "3"}, ids(merged));
+    Assert.assertEquals("a", merged[0].getIndex());
+    Assert.assertEquals("b", merged[2].getIndex());
+    // the best scored hit of a doc is kept
+    Assert.assertEquals(0.8f, merged[1].getScore(), 0.0f);
+  }
+
+  @Test
+  public void assertMergePagesUniqueHits() {
+    SearchHit[][] ranked = {
+      {hit("a", "1", 0.9f), hit("a", "2", 0.7f), hit("a", "3", 0.5f)},
+      {hit("a", "1", 0.8f), hit("a", "4", 0.6f)},
+      {}
+    };
+    SearchHit[] merged = TransportFusedSearchAction.merge(ranked, 1, 2);
+    Assert.assertArrayEquals(new String[] {"2", "4"}, ids(merged));
+    Assert.assertEquals(0, TransportFusedSearchAction.merge(ranked, 10, 2).length);
+  }
+
+  @Test
+  public void assertSearchRequestSizesPage() {
+    WeightedSearch unsized = new WeightedSearch(new SearchRequest("a"), 1.0f);
+    Assert.assertEquals(30, TransportFusedSearchAction.searchRequest(unsized, 30).source().size());
+    WeightedSearch sized =
+        new WeightedSearch(
+            new SearchRequest("a").source(new SearchSourceBuilder().size(100)), 1.0f);
+    Assert.assertEquals(100, TransportFusedSearchAction.searchRequest(sized, 30).source().size());
+  }
+
+  @Test
+  public void assertRequestValidation() {
+    FusedSearchRequest request = new FusedSearchRequest();
+    Assert.assertEquals(2, request.validate().validationErrors().size());
+
+    request
+        .setNormalizer(new NormalizerRescorerBuilder())
+        .addSearch(new WeightedSearch(new SearchRequest("a"), 1.0f));
+    Assert.assertNull(request.validate());
+
+    request
+        .setNormalizer(new NormalizerRescorerBuilder().setScope("global"))
+        .addSearch(
+            new WeightedSearch(
+                new SearchRequest("b").source(new SearchSourceBuilder().sort("price")), 0.0f));
+    Assert.assertEquals(3, request.validate().validationErrors().size());
+  }
+
+  @Test
+  public void assertRequestWireRoundTrip() throws IOException {
+    FusedSearchRequest request =
+        new FusedSearchRequest()
+            .setNormalizer(new NormalizerRescorerBuilder().setNormalizerType("z_score"))
+            .setFrom(5)
+            .setSize(20)
+            .addSearch(new WeightedSearch(new SearchRequest("a", "b"), 0.7f))
+            .addSearch(
+                new WeightedSearch(
+                    new SearchRequest("c").source(new SearchSourceBuilder().size(50)), 0.3f));
+    BytesStreamOutput out = new BytesStreamOutput();
+    request.writeTo(out);
+    FusedSearchRequest read = new FusedSearchRequest(out.bytes().streamInput());
+    Assert.assertEquals(request.getSearches(), read.getSearches());
+    Assert.assertEquals(request.getNormalizer(), read.getNormalizer());
+    Assert.assertEquals(5, read.getFrom());
+    Assert.assertEquals(20, read.getSize());
+  }
+}
@@ -0,0 +1,58 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.aggregation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TopScoresTest {
+
+  @Test
+  public void assertKeepsTopScores() {
+    Random random = new Random(3);
+    float[] scores = new float[1000];
+    TopScores topScores = new TopScores(10);
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = random.nextFloat() * 20f;
+      topScores.offer(scores[i]);
+    }
+    Arrays.sort(scores);
+    float[] kept = Arrays.copyOf(topScores.scores(), topScores.size());
+    Arrays.sort(kept);
+    Assert.assertArrayEquals(Arrays.copyOfRange(scores, 990, 1000), kept, 0.0f);
+  }
+
+  @Test
+  public void assertLessScoresThanCapacity() {
+    TopScores topScores = new TopScores(10);
+    topScores.offer(3f);
+    topScores.offer(1f);
+    topScores.offer(2f);
+    Assert.assertEquals(3, topScores.size());
+    Assert.assertEquals(1f, topScores.scores()[0], 0.0f);
+  }
+}
@@ -0,0 +1,46 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FastExpTest {
+
+  @Test
+  public void assertRelativeError() {
+    for (float x = -87f; x <= 88f; x += 0.001f) {
+      double exact = Math.exp(x);
+      Assert.assertEquals("e^" + x, 1.0, FastExp.exp(x) / exact, 1e-5);
+    }
+  }
+
+  @Test
+  public void assertOutOfRange() {
+    Assert.assertEquals(1f, FastExp.exp(0f), 0f);
+    Assert.assertEquals(Float.MIN_NORMAL, FastExp.exp(-100f), 0f);
+    Assert.assertEquals(Float.MIN_NORMAL, FastExp.exp(Float.NEGATIVE_INFINITY), 0f);
+    Assert.assertEquals(Float.MAX_VALUE, FastExp.exp(100f), Float.MAX_VALUE * 1e-5f);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.bkatwal.elasticsearch.plugin.rescorer.FieldNormalization;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.bkatwal.elasticsearch.plugin.rescorer.WeightedField;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.fielddata.plain.SortedNumericDVIndexFieldData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FieldBlenderTest {
+
+  // popularity of docs 0 to 4, doc 2 has none
+  private static final long[] POPULARITY = {10, 30, -1, 50, 0};
+
+  private Directory directory;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+  private IndexNumericFieldData popularity;
+
+  @Before
+  public void init() throws IOException {
+    directory = new ByteBuffersDirectory();
+    IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+    try (IndexWriter writer = new IndexWriter(directory, config)) {
+      // two segments, so the window is read across leaves
+      for (int doc = 0; doc < POPULARITY.length; doc++) {
+        Document document = new Document();
+        if (POPULARITY[doc] >= 0) {
+          document.add(new SortedNumericDocValuesField("popularity", POPULARITY[doc]));
+        }
+        writer.addDocument(document);
+        if (doc == 1) {
+          writer.commit();
+        }
+      }
+    }
+    reader = DirectoryReader.open(directory);
+    searcher = new IndexSearcher(reader);
+    popularity =
+        new SortedNumericDVIndexFieldData(
+            new Index("test", "_na_"), "popularity", IndexNumericFieldData.NumericType.LONG);
+  }
+
+  @After
+  public void close() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void assertBlendMinMax() throws IOException {
+    ScoreDoc[] scoreDocs = window(1f, 1f, 1f, 1f, 1f);
+    FieldBlender blender =
+        new FieldBlender(
+            Collections.singletonList(
+                new WeightedField("popularity", 2f, FieldNormalization.min_max, 20f)),
+            new IndexNumericFieldData[] {popularity});
+
+    blender.blend(scoreDocs, searcher);
+
+    // popularity 50, 30, 20 (missing), 10, 0 scaled to [0, 2]
+    assertDocs(scoreDocs, new int[] {3, 1, 2, 0, 4}, new float[] {3f, 2.2f, 1.8f, 1.4f, 1f});
+  }
+
+  @Test
+  public void assertBlendKeepsScoreOfUnmappedField() throws IOException {
+    ScoreDoc[] scoreDocs = window(5f, 4f, 3f, 2f, 1f);
+    FieldBlender blender =
+        new FieldBlender(
+            Collections.singletonList(
+                new WeightedField("unmapped", 1f, FieldNormalization.none, 2f)),
+            new IndexNumericFieldData[] {null});
+
+    blender.blend(scoreDocs, searcher);
+
+    assertDocs(scoreDocs, new int[] {3, 0, 4, 1, 2}, new float[] {7f, 6f, 5f, 4f, 3f});
+  }
+
+  @Test
+  public void assertExplainMatchesBlend() throws IOException {
+    List<WeightedField> fields =
+        Arrays.asList(
+            new WeightedField("popularity", 0.5f, FieldNormalization.z_score, 0f),
+            new WeightedField("popularity", 0.25f, FieldNormalization.log1p, 5f),
+            new WeightedField("popularity", -0.01f, FieldNormalization.none, 0f),
+            new WeightedField("unmapped", 1f, FieldNormalization.min_max, 0f));
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            5,
+            NormalizerType.min_max,
+            1,
+            5,
+            0,
+            NormalizerFactorMathOp.sum,
+            MinMaxSameScoreStrategy.avg);
+    context.setExplain(true);
+    context.setFieldBlender(
+        new FieldBlender(
+            fields, new IndexNumericFieldData[] {popularity, popularity, popularity, null}));
+    ScoreDoc[] scoreDocs = window(2.5f, 0.5f, 4f, 1f, 3f);
+    float[] firstPass = new float[scoreDocs.length];
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      firstPass[scoreDoc.doc] = scoreDoc.score;
+    }
+
+    ScoreNormalizerRescorer.INSTANCE.rescore(
+        new TopDocs(new TotalHits(5, TotalHits.Relation.EQUAL_TO), scoreDocs), searcher, context);
+
+    for (int i = 1; i < scoreDocs.length; i++) {
+      Assert.assertTrue(scoreDocs[i - 1].score >= scoreDocs[i].score);
+    }
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      Explanation source = Explanation.match(firstPass[scoreDoc.doc], "first pass");
+      Explanation explanation =
+          ScoreNormalizerRescorer.INSTANCE.explain(scoreDoc.doc, searcher, context, source);
+      Assert.assertEquals(scoreDoc.score, explanation.getValue().floatValue(), 0f);
+    }
+  }
+
+  /** @return window of docs 3, 0, 4, 1, 2 with the given scores, out of doc id order */
+  private static ScoreDoc[] window(float... scores) {
+    int[] docs = {3, 0, 4, 1, 2};
+    ScoreDoc[] scoreDocs = new ScoreDoc[docs.length];
+    for (int i = 0; i < docs.length; i++) {
+      scoreDocs[i] = new ScoreDoc(docs[i], scores[i]);
+    }
+    return scoreDocs;
+  }
+
+  private static void assertDocs(ScoreDoc[] scoreDocs, int[] docs, float[] scores) {
+    for (int i = 0; i < docs.length; i++) {
+      Assert.assertEquals(docs[i], scoreDocs[i].doc);
+      Assert.assertEquals(scores[i], scoreDocs[i].score, 1e-5f);
+    }
+  }
+}
@@ -27,6 +27,9 @@ import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHits;
 import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerScope;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
 import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
 import org.junit.Assert;
 import org.junit.Before;
@@ -54,7 +57,13 @@ public class MinMaxNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            3, "min_max", 1, 4, .6f, "increase_by_percent", null);
+            3,
+            NormalizerType.min_max,
+            1,
+            4,
+            .6f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = minMaxNormalizer.normalize(topDocs, context);
     Assert.assertEquals(7.2f, topDocs.scoreDocs[0].score, 0.1f);
@@ -64,6 +73,35 @@ public class MinMaxNormalizerTest {
     Assert.assertEquals(1.6f, topDocs.scoreDocs[4].score, 0.1f);
   }
 
+  @Test
+  public void assertClipQuantile() {
+    // one outlier on top of 0 to 19, shuffled
+    ScoreDoc[] scoreDocs = new ScoreDoc[21];
+    for (int i = 0; i < 20; i++) {
+      scoreDocs[i] = new ScoreDoc(i, (i * 7) % 20);
+    }
+    scoreDocs[20] = new ScoreDoc(20, 1000f);
+    TopDocs topDocs = new TopDocs(new TotalHits(21, TotalHits.Relation.EQUAL_TO), scoreDocs);
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            21,
+            NormalizerType.min_max,
+            1,
+            5,
+            0,
+            NormalizerFactorMathOp.sum,
+            MinMaxSameScoreStrategy.avg);
+    context.setClipQuantile(0.05f);
+
+    minMaxNormalizer.normalize(topDocs, context);
+    // the p5 and p95 scores, 1 and 19, are the bounds, the outlier is clamped to p95
+    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+      int original = scoreDoc.doc == 20 ? 1000 : (scoreDoc.doc * 7) % 20;
+      float clamped = Math.min(Math.max(original, 1), 19);
+      Assert.assertEquals(1f + (clamped - 1f) * 4f / 18f, scoreDoc.score, 1e-5f);
+    }
+  }
+
   @Test
   public void assertMinMaxNormalizerZeroDocs() {
     TotalHits totalHits = new TotalHits(0, TotalHits.Relation.EQUAL_TO);
@@ -72,7 +110,13 @@ public class MinMaxNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            3, "min_max", 1, 4, .6f, "increase_by_percent", null);
+            3,
+            NormalizerType.min_max,
+            1,
+            4,
+            .6f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = minMaxNormalizer.normalize(topDocs, context);
     Assert.assertNotNull(topDocs);
@@ -87,7 +131,13 @@ public class MinMaxNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            3, "min_max", 1, 4, .6f, "increase_by_percent", null);
+            3,
+            NormalizerType.min_max,
+            1,
+            4,
+            .6f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = minMaxNormalizer.normalize(topDocs, context);
     Assert.assertEquals(6.4f, topDocs.scoreDocs[0].score, 0.0f);
@@ -106,7 +156,13 @@ public class MinMaxNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            3, "min_max", 1, 5, .6f, "increase_by_percent", MinMaxSameScoreStrategy.avg.name());
+            3,
+            NormalizerType.min_max,
+            1,
+            5,
+            .6f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = minMaxNormalizer.normalize(topDocs, context);
     Assert.assertEquals(3f, topDocs.scoreDocs[0].score, 0.0f);
@@ -126,10 +182,101 @@ public class MinMaxNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            2, "min_max", 5, 20, 0.0f, "increase_by_percent", null);
+            2,
+            NormalizerType.min_max,
+            5,
+            20,
+            0.0f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = minMaxNormalizer.normalize(topDocs, context);
     Assert.assertEquals(20f, topDocs.scoreDocs[0].score, 0.0f);
     Assert.assertEquals(5f, topDocs.scoreDocs[1].score, 0.0f);
   }
+
+  @Test
+  public void assertUnsortedWindow() {
+    TotalHits totalHits = new TotalHits(5, TotalHits.Relation.EQUAL_TO);
+    ScoreDoc[] scoreDocs = new ScoreDoc[5];
+    scoreDocs[0] = new ScoreDoc(4, 6.5f);
+    scoreDocs[1] = new ScoreDoc(2, 9);
+    scoreDocs[2] = new ScoreDoc(5, 2f);
+    scoreDocs[3] = new ScoreDoc(1, 10.5f);
+    scoreDocs[4] = new ScoreDoc(3, 8);
+    TopDocs topDocs = new TopDocs(totalHits, scoreDocs);
+
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            3,
+            NormalizerType.min_max,
+            1,
+            4,
+            .6f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
+
+    // same scores per doc as the sorted window in assertMinMaxNormalizer
+    topDocs = minMaxNormalizer.normalize(topDocs, context);
+    Assert.assertEquals(4.1f, topDocs.scoreDocs[0].score, 0.1f);
+    Assert.assertEquals(5.5, topDocs.scoreDocs[1].score, 0.1f);
+    Assert.assertEquals(1.6f, topDocs.scoreDocs[2].score, 0.1f);
+    Assert.assertEquals(7.2f, topDocs.scoreDocs[3].score, 0.1f);
+    Assert.assertEquals(4.9, topDocs.scoreDocs[4].score, 0.1f);
+  }
+
+  @Test
+  public void assertNoBoostOnTiedTopDocs() {
+    TotalHits totalHits = new TotalHits(3, TotalHits.Relation.EQUAL_TO);
+    ScoreDoc[] scoreDocs = new ScoreDoc[3];
+    scoreDocs[0] = new ScoreDoc(1, 2f);
+    scoreDocs[1] = new ScoreDoc(2, 10f);
+    scoreDocs[2] = new ScoreDoc(3, 10f);
+    TopDocs topDocs = new TopDocs(totalHits, scoreDocs);
+
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            3,
+            NormalizerType.min_max,
+            1,
+            5,
+            0.0f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
+
+    topDocs = minMaxNormalizer.normalize(topDocs, context);
+    Assert.assertEquals(1f, topDocs.scoreDocs[0].score, 0.0f);
+    Assert.assertEquals(5f, topDocs.scoreDocs[1].score, 0.0f);
+    Assert.assertEquals(5f, topDocs.scoreDocs[2].score, 0.0f);
+  }
+
+  @Test
+  public void assertGlobalScope() {
+    TotalHits totalHits = new TotalHits(3, TotalHits.Relation.EQUAL_TO);
+    ScoreDoc[] scoreDocs = new ScoreDoc[3];
+    scoreDocs[0] = new ScoreDoc(1, 6f);
+    scoreDocs[1] = new ScoreDoc(2, 4f);
+    scoreDocs[2] = new ScoreDoc(3, 3f);
+    TopDocs topDocs = new TopDocs(totalHits, scoreDocs);
+
+    // other shards had hits from 2 to 10, this shard is scaled against those bounds and its top
+    // doc is not boosted
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            10,
+            NormalizerType.min_max,
+            1,
+            5,
+            0,
+            NormalizerFactorMathOp.sum,
+            MinMaxSameScoreStrategy.avg,
+            NormalizerScope.global,
+            ScoreStats.of(new float[] {10f, 6f, 4f, 3f, 2f}, 5),
+            60);
+
+    topDocs = minMaxNormalizer.normalize(topDocs, context);
+    Assert.assertEquals(3f, topDocs.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals(2f, topDocs.scoreDocs[1].score, 1e-6f);
+    Assert.assertEquals(1.5f, topDocs.scoreDocs[2].score, 1e-6f);
+  }
 }
@@ -0,0 +1,79 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+
+/** windows and rescore contexts shared by the normalizer tests */
+public final class NormalizerFixtures {
+
+  private NormalizerFixtures() {}
+
+  /** @return window of docs 0..n-1 with the given scores, in the given order */
+  public static TopDocs topDocs(float... scores) {
+    ScoreDoc[] scoreDocs = new ScoreDoc[scores.length];
+    for (int i = 0; i < scores.length; i++) {
+      scoreDocs[i] = new ScoreDoc(i, scores[i]);
+    }
+    return new TopDocs(new TotalHits(scores.length, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  /** @return context over a window of 10 with min_score 1, max_score 5 and no factor */
+  public static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(
+      NormalizerType normalizerType) {
+    return context(10, normalizerType, 1, 5, 0, NormalizerFactorMathOp.sum);
+  }
+
+  /** @return default context of a sigmoid or softmax window with the given exp options */
+  public static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(
+      NormalizerType normalizerType, float temperature, boolean fastExp) {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context = context(normalizerType);
+    context.setTemperature(temperature);
+    context.setFastExp(fastExp);
+    return context;
+  }
+
+  public static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(
+      int windowSize,
+      NormalizerType normalizerType,
+      float minScore,
+      float maxScore,
+      float factor,
+      NormalizerFactorMathOp factorMode) {
+    return new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+        windowSize,
+        normalizerType,
+        minScore,
+        maxScore,
+        factor,
+        factorMode,
+        MinMaxSameScoreStrategy.avg);
+  }
+}
@@ -0,0 +1,122 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.PipelineStage;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.context;
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class NormalizerPipelineTest {
+
+  private static final float[] SCORES = {12f, 3.5f, 7f, 0.25f, 7f, 30f, 1f};
+
+  @Test
+  public void assertStatisticsCarryThroughStages() {
+    // z_score and sigmoid scale against the statistics of the log1p scan
+    float[] logged = new float[SCORES.length];
+    for (int i = 0; i < SCORES.length; i++) {
+      logged[i] = (float) Math.log1p(SCORES[i]);
+    }
+    ScoreStats stats = ScoreStats.of(logged, logged.length);
+    float[] expected = new float[SCORES.length];
+    for (int i = 0; i < SCORES.length; i++) {
+      double z = (logged[i] - stats.getMean()) / stats.getStandardDeviation();
+      expected[i] = (float) (1.0 / (1.0 + Math.exp(-z / 2.0)));
+    }
+    assertPipeline(
+        expected,
+        2,
+        new PipelineStage(PipelineStage.Type.log1p),
+        new PipelineStage(PipelineStage.Type.z_score),
+        new PipelineStage(PipelineStage.Type.sigmoid, 0, 1, 2f));
+  }
+
+  @Test
+  public void assertLinearStagesFold() {
+    ScoreStats stats = ScoreStats.of(SCORES, SCORES.length);
+    float[] expected = new float[SCORES.length];
+    for (int i = 0; i < SCORES.length; i++) {
+      expected[i] = 2f + 8f * (SCORES[i] - stats.getMin()) / (stats.getMax() - stats.getMin());
+    }
+    assertPipeline(
+        expected,
+        2,
+        new PipelineStage(PipelineStage.Type.z_score),
+        new PipelineStage(PipelineStage.Type.min_max, 2, 10, 1f),
+        new PipelineStage(PipelineStage.Type.z_score),
+        new PipelineStage(PipelineStage.Type.min_max, 2, 10, 1f));
+  }
+
+  @Test
+  public void assertRescanAfterNonLinearStage() {
+    // min_max knows the extremes of the sigmoid output, z_score needs another scan
+    PipelineStage sigmoid = new PipelineStage(PipelineStage.Type.sigmoid);
+    PipelineStage minMax = new PipelineStage(PipelineStage.Type.min_max);
+    PipelineStage zScore = new PipelineStage(PipelineStage.Type.z_score);
+    Assert.assertEquals(2, run(SCORES, sigmoid, minMax).getPasses());
+    Assert.assertEquals(3, run(SCORES, sigmoid, zScore).getPasses());
+    Assert.assertEquals(1, run(SCORES, new PipelineStage(PipelineStage.Type.log1p)).getPasses());
+  }
+
+  @Test
+  public void assertSameScores() {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        context(NormalizerType.pipeline);
+    ScoreDoc[] scoreDocs = topDocs(-2f, -1f, -3f).scoreDocs;
+    // log1p maps all negative scores to 0
+    new NormalizerPipeline(
+            Arrays.asList(
+                new PipelineStage(PipelineStage.Type.log1p),
+                new PipelineStage(PipelineStage.Type.z_score)))
+        .normalize(scoreDocs, context);
+    Assert.assertTrue(context.isAllScoresSame());
+    for (ScoreDoc scoreDoc : scoreDocs) {
+      Assert.assertEquals(context.getSameScore(), scoreDoc.score, 0f);
+    }
+  }
+
+  private static void assertPipeline(float[] expected, int passes, PipelineStage... stages) {
+    ScoreDoc[] scoreDocs = topDocs(SCORES).scoreDocs;
+    NormalizerPipeline pipeline = new NormalizerPipeline(Arrays.asList(stages));
+    pipeline.normalize(scoreDocs, context(NormalizerType.pipeline));
+    Assert.assertEquals(passes, pipeline.getPasses());
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals(expected[i], scoreDocs[i].score, 1e-5f);
+    }
+  }
+
+  private static NormalizerPipeline run(float[] scores, PipelineStage... stages) {
+    NormalizerPipeline pipeline = new NormalizerPipeline(Arrays.asList(stages));
+    pipeline.normalize(topDocs(scores).scoreDocs, context(NormalizerType.pipeline));
+    return pipeline;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.context;
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class PercentileNormalizerTest {
+
+  private final Normalizer normalizer = new PercentileNormalizer();
+
+  @Test
+  public void assertOutlierDoesNotCompressScores() {
+    TopDocs topDocs = topDocs(1000f, 9f, 8f, 7f, 6f);
+    normalizer.normalize(topDocs, context(NormalizerType.percentile));
+
+    Assert.assertEquals(5f, topDocs.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals(4f, topDocs.scoreDocs[1].score, 1e-6f);
+    Assert.assertEquals(3f, topDocs.scoreDocs[2].score, 1e-6f);
+    Assert.assertEquals(2f, topDocs.scoreDocs[3].score, 1e-6f);
+    Assert.assertEquals(1f, topDocs.scoreDocs[4].score, 1e-6f);
+  }
+
+  @Test
+  public void assertUnsortedWindowWithTies() {
+    TopDocs topDocs = topDocs(2f, -1f, 7f, 2f, 0f);
+    normalizer.normalize(topDocs, context(NormalizerType.percentile));
+
+    // the two docs scoring 2 share the mid rank of ranks 2 and 3
+    Assert.assertEquals(3.5f, topDocs.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals(1f, topDocs.scoreDocs[1].score, 1e-6f);
+    Assert.assertEquals(5f, topDocs.scoreDocs[2].score, 1e-6f);
+    Assert.assertEquals(3.5f, topDocs.scoreDocs[3].score, 1e-6f);
+    Assert.assertEquals(2f, topDocs.scoreDocs[4].score, 1e-6f);
+  }
+
+  @Test
+  public void assertSameScores() {
+    TopDocs topDocs = topDocs(4f, 4f, 4f);
+    normalizer.normalize(topDocs, context(NormalizerType.percentile));
+
+    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+      Assert.assertEquals(3f, scoreDoc.score, 1e-6f);
+    }
+  }
+}
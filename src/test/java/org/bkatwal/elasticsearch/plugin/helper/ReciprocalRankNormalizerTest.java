@@ -0,0 +1,88 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerScope;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class ReciprocalRankNormalizerTest {
+
+  private final Normalizer normalizer = new ReciprocalRankNormalizer();
+
+  @Test
+  public void assertSortedWindow() {
+    TopDocs topDocs = topDocs(1000f, 9f, 8f, 8f);
+    normalizer.normalize(topDocs, context(60, NormalizerFactorMathOp.sum, 0));
+
+    // the outlier on top does not move the scores of the other docs
+    Assert.assertEquals(1f / 61, topDocs.scoreDocs[0].score, 1e-7f);
+    Assert.assertEquals(1f / 62, topDocs.scoreDocs[1].score, 1e-7f);
+    Assert.assertEquals(1f / 63, topDocs.scoreDocs[2].score, 1e-7f);
+    Assert.assertEquals(1f / 64, topDocs.scoreDocs[3].score, 1e-7f);
+  }
+
+  @Test
+  public void assertUnsortedWindow() {
+    TopDocs topDocs = topDocs(2f, -1f, 7f, 2f, 0f);
+    normalizer.normalize(topDocs, context(1, NormalizerFactorMathOp.sum, 0));
+
+    Assert.assertEquals(1f / 3, topDocs.scoreDocs[0].score, 1e-7f);
+    Assert.assertEquals(1f / 6, topDocs.scoreDocs[1].score, 1e-7f);
+    Assert.assertEquals(1f / 2, topDocs.scoreDocs[2].score, 1e-7f);
+    Assert.assertEquals(1f / 4, topDocs.scoreDocs[3].score, 1e-7f);
+    Assert.assertEquals(1f / 5, topDocs.scoreDocs[4].score, 1e-7f);
+  }
+
+  @Test
+  public void assertFactor() {
+    TopDocs topDocs = topDocs(3f, 2f);
+    normalizer.normalize(topDocs, context(1, NormalizerFactorMathOp.multiply, 10));
+
+    Assert.assertEquals(5f, topDocs.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals(10f / 3, topDocs.scoreDocs[1].score, 1e-6f);
+  }
+
+  private static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(
+      float rankConstant, NormalizerFactorMathOp factorMode, float factor) {
+    return new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+        10,
+        NormalizerType.rrf,
+        1,
+        5,
+        factor,
+        factorMode,
+        MinMaxSameScoreStrategy.avg,
+        NormalizerScope.shard,
+        null,
+        rankConstant);
+  }
+}
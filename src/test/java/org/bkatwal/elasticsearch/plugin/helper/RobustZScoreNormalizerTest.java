@@ -0,0 +1,86 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class RobustZScoreNormalizerTest {
+
+  private final Normalizer normalizer = new RobustZScoreNormalizer();
+
+  @Test
+  public void assertOutlierDoesNotSquashScores() {
+    TopDocs topDocs = topDocs(1000f, 9f, 8f, 7f, 6f);
+    normalizer.normalize(topDocs, context(0));
+
+    // median 8, MAD 1
+    float unit = (float) (1.0 / 1.4826);
+    Assert.assertEquals(992f * unit, topDocs.scoreDocs[0].score, 1e-2f);
+    Assert.assertEquals(unit, topDocs.scoreDocs[1].score, 1e-6f);
+    Assert.assertEquals(0f, topDocs.scoreDocs[2].score, 1e-6f);
+    Assert.assertEquals(-unit, topDocs.scoreDocs[3].score, 1e-6f);
+    Assert.assertEquals(-2f * unit, topDocs.scoreDocs[4].score, 1e-6f);
+  }
+
+  @Test
+  public void assertWinsorize() {
+    TopDocs topDocs = topDocs(1000f, 9f, 8f, 7f, -1000f);
+    normalizer.normalize(topDocs, context(3));
+
+    Assert.assertEquals(3f, topDocs.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals((float) (1.0 / 1.4826), topDocs.scoreDocs[1].score, 1e-6f);
+    Assert.assertEquals(-3f, topDocs.scoreDocs[4].score, 1e-6f);
+  }
+
+  @Test
+  public void assertMedianTies() {
+    // the MAD is 0, the mean absolute deviation of 1 is used instead
+    TopDocs topDocs = topDocs(5f, 9f, 5f, 5f);
+    normalizer.normalize(topDocs, context(0));
+
+    Assert.assertEquals(0f, topDocs.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals(4f / 1.2533f, topDocs.scoreDocs[1].score, 1e-5f);
+  }
+
+  @Test
+  public void assertMedian() {
+    Assert.assertEquals(3f, RobustZScoreNormalizer.median(new float[] {5f, 1f, 3f}, 3), 0f);
+    Assert.assertEquals(
+        3.5f, RobustZScoreNormalizer.median(new float[] {6f, 1f, 3f, 4f}, 4), 0f);
+    Assert.assertEquals(2f, RobustZScoreNormalizer.median(new float[] {2f}, 1), 0f);
+  }
+
+  private static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(float winsorize) {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        NormalizerFixtures.context(NormalizerType.robust_z);
+    context.setWinsorize(winsorize);
+    return context;
+  }
+}
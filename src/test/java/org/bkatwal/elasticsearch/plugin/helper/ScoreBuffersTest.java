@@ -0,0 +1,55 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScoreBuffersTest {
+
+  @Test
+  public void assertBuffersAreReused() {
+    ScoreBuffers buffers = ScoreBuffers.get();
+    ScoreDoc[] scoreDocs = {new ScoreDoc(0, 3f), new ScoreDoc(1, 1f), new ScoreDoc(2, 2f)};
+
+    float[] scores = buffers.scores(scoreDocs);
+    Assert.assertEquals(3f, scores[0], 0f);
+    Assert.assertEquals(1f, scores[1], 0f);
+    Assert.assertEquals(2f, scores[2], 0f);
+    Assert.assertSame(scores, buffers.scores(new ScoreDoc[] {new ScoreDoc(0, 1f)}));
+    Assert.assertSame(buffers.ranks(10), buffers.ranks(5));
+    Assert.assertSame(buffers, ScoreBuffers.get());
+  }
+
+  @Test
+  public void assertHugeWindowsAreNotRetained() {
+    ScoreBuffers buffers = ScoreBuffers.get();
+    long[] retained = buffers.ranks(100);
+
+    long[] huge = buffers.ranks(ScoreBuffers.MAX_RETAINED + 1);
+    Assert.assertTrue(huge.length > ScoreBuffers.MAX_RETAINED);
+    Assert.assertSame(retained, buffers.ranks(100));
+  }
+}
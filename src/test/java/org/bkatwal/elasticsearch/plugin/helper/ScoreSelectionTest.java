@@ -0,0 +1,96 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ScoreSelectionTest {
+
+  @Test
+  public void assertSelectMatchesSort() {
+    Random random = new Random(42);
+    for (int round = 0; round < 100; round++) {
+      int n = 1 + random.nextInt(200);
+      float[] scores = new float[n];
+      for (int i = 0; i < n; i++) {
+        // few distinct values, so that there are plenty of ties
+        scores[i] = random.nextInt(round % 2 == 0 ? 5 : 1000) - 2;
+      }
+      float[] sorted = scores.clone();
+      Arrays.sort(sorted);
+      int k = random.nextInt(n);
+
+      Assert.assertEquals(sorted[k], ScoreSelection.select(scores, 0, n, k), 0.0f);
+      for (int i = 0; i < k; i++) {
+        Assert.assertTrue(scores[i] <= sorted[k]);
+      }
+      for (int i = k + 1; i < n; i++) {
+        Assert.assertTrue(scores[i] >= sorted[k]);
+      }
+    }
+  }
+
+  @Test
+  public void assertSortMatchesArraysSort() {
+    Random random = new Random(42);
+    for (int round = 0; round < 100; round++) {
+      int n = 1 + random.nextInt(round < 50 ? 50 : 5000);
+      long[] values = new long[n + 2];
+      for (int i = 0; i < values.length; i++) {
+        switch (round % 4) {
+          case 0:
+            values[i] = random.nextInt(5);
+            break;
+          case 1:
+            // presorted descending, the order of a window sorted by score
+            values[i] = values.length - i;
+            break;
+          case 2:
+            values[i] = i;
+            break;
+          default:
+            values[i] = random.nextLong();
+        }
+      }
+      long[] expected = values.clone();
+      Arrays.sort(expected, 1, n + 1);
+
+      ScoreSelection.sort(values, 1, n + 1);
+      Assert.assertArrayEquals(expected, values);
+    }
+  }
+
+  @Test
+  public void assertSortableBitsOrder() {
+    float[] scores = {Float.NEGATIVE_INFINITY, -3.5f, -0.0f, 0.0f, 1e-20f, 2f, Float.MAX_VALUE};
+    for (int i = 1; i < scores.length; i++) {
+      Assert.assertTrue(
+          ScoreSelection.sortableBits(scores[i - 1]) < ScoreSelection.sortableBits(scores[i]));
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class ScoreStatsCacheTest {
+
+  private Directory directory;
+  private DirectoryReader reader;
+  private ScoreStatsCache cache;
+
+  @Before
+  public void init() throws IOException {
+    directory = new ByteBuffersDirectory();
+    try (IndexWriter writer =
+        new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+      writer.addDocument(new Document());
+    }
+    reader = DirectoryReader.open(directory);
+    cache = new ScoreStatsCache(Settings.EMPTY);
+  }
+
+  @After
+  public void close() throws IOException {
+    ScoreStatsCache.init(null);
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void assertStatsCollectedOnce() {
+    AtomicInteger loads = new AtomicInteger();
+    ScoreStats first =
+        cache.computeIfAbsent(
+            reader,
+            "q1",
+            () -> {
+              loads.incrementAndGet();
+              return ScoreStats.of(new float[] {3f, 1f}, 2);
+            });
+    ScoreStats second =
+        cache.computeIfAbsent(
+            reader,
+            "q1",
+            () -> {
+              loads.incrementAndGet();
+              return ScoreStats.of(new float[] {9f}, 1);
+            });
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1, loads.get());
+
+    cache.computeIfAbsent(reader, "q2", () -> ScoreStats.of(new float[] {9f}, 1));
+    Assert.assertEquals(2, cache.count());
+  }
+
+  @Test
+  public void assertInvalidatedOnReaderClose() throws IOException {
+    cache.computeIfAbsent(reader, "q1", () -> ScoreStats.of(new float[] {3f, 1f}, 2));
+    Assert.assertEquals(1, cache.count());
+    reader.close();
+    Assert.assertEquals(0, cache.count());
+  }
+
+  @Test
+  public void assertCloseDropsOwnReaderOnly() throws IOException {
+    try (DirectoryReader other = DirectoryReader.open(directory)) {
+      cache.computeIfAbsent(reader, "q1", () -> ScoreStats.of(new float[] {3f, 1f}, 2));
+      cache.computeIfAbsent(other, "q1", () -> ScoreStats.of(new float[] {9f}, 1));
+      Assert.assertEquals(2, cache.count());
+      reader.close();
+      Assert.assertEquals(1, cache.count());
+    }
+    Assert.assertEquals(0, cache.count());
+  }
+
+  @Test
+  public void assertPagesShareStats() throws IOException {
+    ScoreStatsCache.init(cache);
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    // first page sees 3 docs, the second page the same 3 and 2 more
+    TopDocs firstPage = topDocs(9f, 5f, 4f);
+    ScoreNormalizerRescorer.INSTANCE.rescore(firstPage, searcher, context("q1"));
+    TopDocs secondPage = topDocs(9f, 5f, 4f, 2f, 1f);
+    ScoreNormalizerRescorer.INSTANCE.rescore(secondPage, searcher, context("q1"));
+
+    for (int i = 0; i < firstPage.scoreDocs.length; i++) {
+      Assert.assertEquals(firstPage.scoreDocs[i].score, secondPage.scoreDocs[i].score, 0.0f);
+    }
+    Assert.assertEquals(5f, secondPage.scoreDocs[0].score, 1e-6f);
+    Assert.assertEquals(1f, secondPage.scoreDocs[2].score, 1e-6f);
+    // docs past the first page are scaled against the first page's range, below min_score
+    Assert.assertEquals(-0.6f, secondPage.scoreDocs[3].score, 1e-6f);
+  }
+
+  private static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(String key) {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        NormalizerFixtures.context(NormalizerType.min_max);
+    context.setStatsCacheKey(key);
+    return context;
+  }
+}
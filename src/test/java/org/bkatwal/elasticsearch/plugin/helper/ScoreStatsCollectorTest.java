@@ -0,0 +1,187 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.bkatwal.elasticsearch.plugin.rescorer.StatsSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class ScoreStatsCollectorTest {
+
+  private static final int HITS = 200;
+  private static final int WINDOW = 5;
+
+  private Directory directory;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+  // scores the value of the doc, 1 to HITS
+  private Query query;
+
+  @Before
+  public void init() throws IOException {
+    directory = new ByteBuffersDirectory();
+    IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+    try (IndexWriter writer = new IndexWriter(directory, config)) {
+      // two segments, so the hits are collected across leaves
+      for (int doc = 0; doc < HITS; doc++) {
+        Document document = new Document();
+        document.add(new NumericDocValuesField("value", doc + 1));
+        writer.addDocument(document);
+        if (doc == HITS / 2) {
+          writer.commit();
+        }
+      }
+    }
+    reader = DirectoryReader.open(directory);
+    searcher = new IndexSearcher(reader);
+    query =
+        FunctionScoreQuery.boostByValue(
+            new MatchAllDocsQuery(), DoubleValuesSource.fromLongField("value"));
+  }
+
+  @After
+  public void close() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void assertStatsOfAllHits() throws IOException {
+    ScoreStatsCollector collector = new ScoreStatsCollector();
+    collector.enableSketch();
+    search(collector);
+
+    float[] scores = new float[HITS];
+    for (int i = 0; i < HITS; i++) {
+      scores[i] = i + 1;
+    }
+    ScoreStats expected = ScoreStats.of(scores, HITS);
+    ScoreStats stats = collector.getStats();
+    Assert.assertEquals(HITS, stats.getCount());
+    Assert.assertEquals(expected.getMean(), stats.getMean(), 1e-9);
+    Assert.assertEquals(expected.getStandardDeviation(), stats.getStandardDeviation(), 1e-9);
+    Assert.assertEquals(1f, stats.getMin(), 0f);
+    Assert.assertEquals(HITS, stats.getMax(), 0f);
+    Assert.assertEquals(0.5, collector.getSketch().cdf(HITS / 2.0), 0.02);
+    Assert.assertSame(ScoreStats.EMPTY, new ScoreStatsCollector().getStats());
+  }
+
+  @Test
+  public void assertWindowNormalizedAgainstAllHits() throws IOException {
+    ScoreStatsCollector collector = new ScoreStatsCollector();
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        context(NormalizerType.z_score, collector);
+    TopDocs window = search(collector);
+    ScoreStats stats = collector.getStats();
+
+    TopDocs normalized = rescore(window, context);
+    for (int i = 0; i < WINDOW; i++) {
+      float score = HITS - i;
+      Assert.assertEquals(
+          (float) ((score - stats.getMean()) / stats.getStandardDeviation()),
+          normalized.scoreDocs[i].score,
+          1e-5f);
+    }
+  }
+
+  @Test
+  public void assertPercentileOfAllHits() throws IOException {
+    ScoreStatsCollector collector = new ScoreStatsCollector();
+    collector.enableSketch();
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        context(NormalizerType.percentile, collector);
+    TopDocs normalized = rescore(search(collector), context);
+
+    // the window holds the top few percent of the hits, not the full range of percentiles
+    for (ScoreDoc scoreDoc : normalized.scoreDocs) {
+      Assert.assertTrue(String.valueOf(scoreDoc.score), scoreDoc.score > 0.95f);
+    }
+    Assert.assertTrue(normalized.scoreDocs[0].score >= normalized.scoreDocs[WINDOW - 1].score);
+  }
+
+  private TopDocs search(ScoreStatsCollector collector) throws IOException {
+    TopScoreDocCollector topDocs = TopScoreDocCollector.create(WINDOW, Integer.MAX_VALUE);
+    searcher.search(query, MultiCollector.wrap(topDocs, collector));
+    return topDocs.topDocs();
+  }
+
+  private TopDocs rescore(
+      TopDocs window, ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context)
+      throws IOException {
+    float[] scores = new float[window.scoreDocs.length];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = window.scoreDocs[i].score;
+    }
+    TopDocs normalized = ScoreNormalizerRescorer.INSTANCE.rescore(window, searcher, context);
+    for (int i = 0; i < scores.length; i++) {
+      Explanation explanation =
+          ScoreNormalizerRescorer.INSTANCE.explain(
+              normalized.scoreDocs[i].doc,
+              searcher,
+              context,
+              Explanation.match(scores[i], "query"));
+      Assert.assertEquals(
+          explanation.toString(),
+          normalized.scoreDocs[i].score,
+          explanation.getValue().floatValue(),
+          0f);
+    }
+    return normalized;
+  }
+
+  private static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(
+      NormalizerType normalizerType, ScoreStatsCollector collector) {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        NormalizerFixtures.context(WINDOW, normalizerType, 0, 1, 0, NormalizerFactorMathOp.sum);
+    context.setStatsSource(StatsSource.all_hits);
+    context.setHitStatsCollector(collector);
+    context.setExplain(true);
+    return context;
+  }
+}
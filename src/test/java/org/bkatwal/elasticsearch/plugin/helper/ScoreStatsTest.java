@@ -0,0 +1,120 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class ScoreStatsTest {
+
+  @Test
+  public void assertStats() {
+    ScoreDoc[] scoreDocs = docs(10f, 6f, 4f, 3.5f, 3f);
+
+    ScoreStats stats = ScoreStats.of(scoreDocs);
+    Assert.assertEquals(5, stats.getCount());
+    Assert.assertEquals(5.3, stats.getMean(), 1e-6);
+    Assert.assertEquals(6.56, stats.getVariance(), 1e-6);
+    Assert.assertEquals(Math.sqrt(6.56), stats.getStandardDeviation(), 1e-6);
+    Assert.assertEquals(3f, stats.getMin(), 0.0f);
+    Assert.assertEquals(10f, stats.getMax(), 0.0f);
+  }
+
+  @Test
+  public void assertUnsortedMinMax() {
+    ScoreStats stats = ScoreStats.of(docs(4f, 9f, 1f, 7f));
+    Assert.assertEquals(1f, stats.getMin(), 0.0f);
+    Assert.assertEquals(9f, stats.getMax(), 0.0f);
+  }
+
+  @Test
+  public void assertSameScores() {
+    ScoreStats stats = ScoreStats.of(docs(7.3f, 7.3f, 7.3f));
+    Assert.assertEquals(7.3f, stats.getMean(), 1e-6);
+    Assert.assertEquals(0.0, stats.getVariance(), 0.0);
+  }
+
+  @Test
+  public void assertPrecisionOnLargeScores() {
+    // big scores with a small spread, a float accumulator loses most of the variance here
+    Random random = new Random(7);
+    float[] scores = new float[10000];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = 10000f + random.nextFloat();
+    }
+    double mean = 0.0;
+    for (float score : scores) {
+      mean += score;
+    }
+    mean /= scores.length;
+    double variance = 0.0;
+    for (float score : scores) {
+      variance += (score - mean) * (score - mean);
+    }
+    variance /= scores.length;
+
+    ScoreStats stats = ScoreStats.of(docs(scores));
+    Assert.assertEquals(mean, stats.getMean(), 1e-9);
+    Assert.assertEquals(variance, stats.getVariance(), 1e-9);
+  }
+
+  @Test
+  public void assertMergeMatchesWholeWindow() {
+    ScoreStats whole = ScoreStats.of(docs(10f, 6f, 4f, 3.5f, 3f));
+    ScoreStats merged =
+        ScoreStats.of(docs(10f, 3.5f)).merge(ScoreStats.of(docs(6f, 4f, 3f)));
+    Assert.assertEquals(whole.getCount(), merged.getCount());
+    Assert.assertEquals(whole.getMean(), merged.getMean(), 1e-9);
+    Assert.assertEquals(whole.getVariance(), merged.getVariance(), 1e-9);
+    Assert.assertEquals(whole.getMin(), merged.getMin(), 0.0f);
+    Assert.assertEquals(whole.getMax(), merged.getMax(), 0.0f);
+    Assert.assertEquals(26.5, merged.getSum(), 1e-9);
+    Assert.assertEquals(173.25, merged.getSumOfSquares(), 1e-9);
+  }
+
+  @Test
+  public void assertMergeWithEmpty() {
+    ScoreStats stats = ScoreStats.of(new float[] {2f, 4f}, 2);
+    Assert.assertSame(stats, stats.merge(ScoreStats.EMPTY));
+    Assert.assertSame(stats, ScoreStats.EMPTY.merge(stats));
+    Assert.assertEquals(ScoreStats.EMPTY, ScoreStats.of(new float[0], 0));
+  }
+
+  @Test
+  public void assertSerialization() throws IOException {
+    ScoreStats stats = ScoreStats.of(docs(10f, 6f, 4f));
+    BytesStreamOutput out = new BytesStreamOutput();
+    stats.writeTo(out);
+    Assert.assertEquals(stats, new ScoreStats(out.bytes().streamInput()));
+  }
+
+  private static ScoreDoc[] docs(float... scores) {
+    return NormalizerFixtures.topDocs(scores).scoreDocs;
+  }
+}
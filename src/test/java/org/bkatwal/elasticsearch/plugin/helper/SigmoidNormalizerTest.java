@@ -0,0 +1,50 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.context;
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class SigmoidNormalizerTest {
+
+  @Test
+  public void assertSigmoid() {
+    for (boolean fastExp : new boolean[] {false, true}) {
+      // mean 5, population standard deviation sqrt(3.2) ~ 1.79
+      TopDocs topDocs = topDocs(7f, 5f, 3f, 7f, 3f);
+      ScoreStats stats = ScoreStats.of(topDocs.scoreDocs);
+      new SigmoidNormalizer().normalize(topDocs, context(NormalizerType.sigmoid, 2, fastExp));
+
+      double z = 2 / stats.getStandardDeviation();
+      Assert.assertEquals(1 / (1 + Math.exp(-z / 2)), topDocs.scoreDocs[0].score, 1e-5);
+      Assert.assertEquals(0.5f, topDocs.scoreDocs[1].score, 1e-6);
+      Assert.assertEquals(1 / (1 + Math.exp(z / 2)), topDocs.scoreDocs[2].score, 1e-5);
+    }
+  }
+}
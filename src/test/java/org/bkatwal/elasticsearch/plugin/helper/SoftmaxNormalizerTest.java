@@ -0,0 +1,59 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.TopDocs;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.context;
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class SoftmaxNormalizerTest {
+
+  @Test
+  public void assertSoftmax() {
+    for (boolean fastExp : new boolean[] {false, true}) {
+      // large scores would overflow exp without the max subtraction
+      TopDocs topDocs = topDocs(1002f, 1000f, 1001f);
+      new SoftmaxNormalizer().normalize(topDocs, context(NormalizerType.softmax, 1, fastExp));
+
+      double sum = Math.exp(0) + Math.exp(-2) + Math.exp(-1);
+      Assert.assertEquals(1 / sum, topDocs.scoreDocs[0].score, 1e-5);
+      Assert.assertEquals(Math.exp(-2) / sum, topDocs.scoreDocs[1].score, 1e-5);
+      Assert.assertEquals(Math.exp(-1) / sum, topDocs.scoreDocs[2].score, 1e-5);
+    }
+  }
+
+  @Test
+  public void assertSoftmaxTemperature() {
+    TopDocs topDocs = topDocs(4f, 0f);
+    new SoftmaxNormalizer().normalize(topDocs, context(NormalizerType.softmax, 2, false));
+
+    double sum = 1 + Math.exp(-2);
+    Assert.assertEquals(1 / sum, topDocs.scoreDocs[0].score, 1e-6);
+    Assert.assertEquals(Math.exp(-2) / sum, topDocs.scoreDocs[1].score, 1e-6);
+  }
+}
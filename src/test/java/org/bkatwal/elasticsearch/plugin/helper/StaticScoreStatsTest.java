@@ -0,0 +1,99 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StaticScoreStatsTest {
+
+  private static final Index INDEX = new Index("test", "_na_");
+  private static final String PREFIX = StaticScoreStats.STATIC_STATS.getKey();
+
+  @Test
+  public void assertRegisteredStats() {
+    Settings settings =
+        Settings.builder()
+            .put(PREFIX + "autocomplete.mean", 7.5)
+            .put(PREFIX + "autocomplete.standard_deviation", 2.5)
+            .put(PREFIX + "autocomplete.min", 0.5)
+            .put(PREFIX + "autocomplete.max", 21)
+            .put(PREFIX + "bounds.min", -1)
+            .put(PREFIX + "bounds.max", 1)
+            .build();
+    StaticScoreStats staticStats = new StaticScoreStats(INDEX, settings);
+
+    ScoreStats stats = staticStats.get("autocomplete", NormalizerType.z_score);
+    Assert.assertEquals(7.5, stats.getMean(), 0.0);
+    Assert.assertEquals(2.5, stats.getStandardDeviation(), 1e-12);
+    Assert.assertEquals(0.5f, stats.getMin(), 0f);
+    Assert.assertEquals(21f, stats.getMax(), 0f);
+    Assert.assertEquals(-1f, staticStats.get("bounds", NormalizerType.min_max).getMin(), 0f);
+    assertRejected(() -> staticStats.get("bounds", NormalizerType.sigmoid));
+    assertRejected(() -> staticStats.get("missing", NormalizerType.min_max));
+  }
+
+  @Test
+  public void assertDynamicUpdate() {
+    StaticScoreStats staticStats = new StaticScoreStats(INDEX, Settings.EMPTY);
+    assertRejected(() -> staticStats.get("bounds", NormalizerType.min_max));
+    staticStats.setStats(
+        StaticScoreStats.STATIC_STATS.get(
+            Settings.builder()
+                .put(PREFIX + "bounds.min", 0)
+                .put(PREFIX + "bounds.max", 4)
+                .build()));
+    Assert.assertEquals(4f, staticStats.get("bounds", NormalizerType.min_max).getMax(), 0f);
+  }
+
+  @Test
+  public void assertInvalidSetsRejected() {
+    assertInvalid(Settings.builder().put(PREFIX + "a.mean", 1).build());
+    assertInvalid(
+        Settings.builder()
+            .put(PREFIX + "a.mean", 1)
+            .put(PREFIX + "a.standard_deviation", 0)
+            .build());
+    assertInvalid(Settings.builder().put(PREFIX + "a.min", 2).put(PREFIX + "a.max", 2).build());
+    assertInvalid(Settings.builder().put(PREFIX + "a.min", "low").put(PREFIX + "a.max", 2).build());
+    assertInvalid(Settings.builder().put(PREFIX + "a.median", 1).build());
+    assertInvalid(Settings.builder().put(PREFIX + "a", 1).build());
+  }
+
+  private static void assertInvalid(Settings settings) {
+    assertRejected(() -> StaticScoreStats.STATIC_STATS.get(settings));
+  }
+
+  private static void assertRejected(Runnable runnable) {
+    try {
+      runnable.run();
+      Assert.fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.helper;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class WindowExecutorTest {
+
+  private static final int WINDOW = 50_000;
+
+  private ExecutorService pool;
+
+  @After
+  public void reset() {
+    WindowExecutor.init(null);
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void assertChunks() {
+    WindowExecutor executor = new WindowExecutor(Runnable::run, 3, 32768);
+    Assert.assertEquals(1, executor.chunks(10_000));
+    Assert.assertEquals(4, executor.chunks(32768));
+    Assert.assertEquals(4, executor.chunks(1_000_000));
+    Assert.assertEquals(2, new WindowExecutor(Runnable::run, 1, 32768).chunks(50_000));
+  }
+
+  @Test
+  public void assertParallelMatchesSequential() {
+    pool = Executors.newFixedThreadPool(2);
+    assertParallelMatchesSequential(new WindowExecutor(pool, 2, 2 * WindowExecutor.MIN_CHUNK));
+  }
+
+  @Test
+  public void assertRejectedChunksRunOnCaller() {
+    assertParallelMatchesSequential(
+        new WindowExecutor(
+            task -> {
+              throw new RejectedExecutionException();
+            },
+            4,
+            2 * WindowExecutor.MIN_CHUNK));
+  }
+
+  private static void assertParallelMatchesSequential(WindowExecutor executor) {
+    Random random = new Random(42);
+    float[] scores = new float[WINDOW];
+    for (int i = 0; i < WINDOW; i++) {
+      scores[i] = random.nextFloat() * 20;
+    }
+    // the top doc sits in a later chunk and ties with a doc of an even later chunk
+    scores[WINDOW / 2] = 25f;
+    scores[WINDOW - 1] = 25f;
+
+    for (NormalizerType normalizerType :
+        new NormalizerType[] {NormalizerType.min_max, NormalizerType.z_score}) {
+      WindowExecutor.init(null);
+      ScoreDoc[] sequential = normalize(normalizerType, scores);
+      WindowExecutor.init(executor);
+      ScoreDoc[] parallel = normalize(normalizerType, scores);
+      for (int i = 0; i < WINDOW; i++) {
+        // chunked sums of z_score round differently, min_max is exact
+        Assert.assertEquals(
+            normalizerType.name(),
+            sequential[i].score,
+            parallel[i].score,
+            normalizerType == NormalizerType.min_max ? 0f : 1e-5f);
+      }
+    }
+  }
+
+  private static ScoreDoc[] normalize(NormalizerType normalizerType, float[] scores) {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        NormalizerFixtures.context(
+            scores.length, normalizerType, 0, 1, 0.5f, NormalizerFactorMathOp.increase_by_percent);
+    return context.getNormalizer().normalize(NormalizerFixtures.topDocs(scores), context).scoreDocs;
+  }
+}
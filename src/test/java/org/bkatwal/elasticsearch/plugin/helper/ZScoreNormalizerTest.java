@@ -26,6 +26,9 @@ package org.bkatwal.elasticsearch.plugin.helper;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHits;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
 import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
 import org.junit.Assert;
 import org.junit.Before;
@@ -52,7 +55,13 @@ public class ZScoreNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            5, "z_score", 1, 4, 0.0f, "increase_by_percent", null);
+            5,
+            NormalizerType.z_score,
+            1,
+            4,
+            0.0f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = zScoreNormalizer.normalize(topDocs, context);
     Assert.assertEquals(1.8f, topDocs.scoreDocs[0].score, 0.1f);
@@ -73,7 +82,13 @@ public class ZScoreNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            3, "z_score", 1, 4, 0.0f, "increase_by_percent", null);
+            3,
+            NormalizerType.z_score,
+            1,
+            4,
+            0.0f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = zScoreNormalizer.normalize(topDocs, context);
     Assert.assertEquals(0.0f, topDocs.scoreDocs[0].score, 0.1f);
@@ -94,7 +109,13 @@ public class ZScoreNormalizerTest {
 
     ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
         new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
-            5, "z_score", 1, 4, 0.5f, "increase_by_percent", null);
+            5,
+            NormalizerType.z_score,
+            1,
+            4,
+            0.5f,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
 
     topDocs = zScoreNormalizer.normalize(topDocs, context);
     Assert.assertEquals(2.7f, topDocs.scoreDocs[0].score, 0.1f);
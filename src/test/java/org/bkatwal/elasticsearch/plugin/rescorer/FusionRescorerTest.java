@@ -0,0 +1,247 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchModule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class FusionRescorerTest {
+
+  private Directory directory;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+
+  @Before
+  public void init() throws IOException {
+    directory = new ByteBuffersDirectory();
+    IndexWriterConfig config =
+        new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+    try (IndexWriter writer = new IndexWriter(directory, config)) {
+      // two segments, so the window is scored across leaves
+      writer.addDocument(doc("blue shoes"));
+      writer.addDocument(doc("red"));
+      writer.commit();
+      writer.addDocument(doc("green shoes"));
+      writer.addDocument(doc("red shoes blue"));
+    }
+    reader = DirectoryReader.open(directory);
+    searcher = new IndexSearcher(reader);
+  }
+
+  @After
+  public void close() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  @Test
+  public void assertSubQueryOnly() throws IOException {
+    TopDocs topDocs = firstPass();
+    FusionRescorer.INSTANCE.rescore(topDocs, searcher, context(0f, 1f));
+
+    // doc 1 is the better "red" match, doc 3 the worse one and the others do not match
+    Assert.assertEquals(1, topDocs.scoreDocs[0].doc);
+    Assert.assertEquals(1f, topDocs.scoreDocs[0].score, 1e-6f);
+    for (int i = 1; i < topDocs.scoreDocs.length; i++) {
+      Assert.assertEquals(0f, topDocs.scoreDocs[i].score, 1e-6f);
+    }
+  }
+
+  @Test
+  public void assertWeightedSum() throws IOException {
+    TopDocs topDocs = firstPass();
+    FusionRescorer.INSTANCE.rescore(topDocs, searcher, context(1f, 2f));
+
+    // first pass 4, 3, 2, 1 min_max normalized to 0-1 with the top doc boost, plus 2 times the
+    // normalized "red" score
+    assertDoc(topDocs.scoreDocs[0], 1, 2f / 3 + 2f);
+    assertDoc(topDocs.scoreDocs[1], 0, 1f + 1f / 3);
+    assertDoc(topDocs.scoreDocs[2], 2, 1f / 3);
+    assertDoc(topDocs.scoreDocs[3], 3, 0f);
+  }
+
+  @Test
+  public void assertReciprocalRankFusion() throws IOException {
+    TopDocs topDocs = firstPass();
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            4,
+            NormalizerType.rrf,
+            1,
+            5,
+            0,
+            NormalizerFactorMathOp.sum,
+            MinMaxSameScoreStrategy.avg,
+            NormalizerScope.shard,
+            null,
+            60);
+    FusionRescorer.INSTANCE.rescore(topDocs, searcher, context(1f, 1f, normalization));
+
+    // first pass ranks 1 to 4, "red" ranks doc 1 first and doc 3 second
+    assertDoc(topDocs.scoreDocs[0], 1, 1f / 62 + 1f / 61);
+    assertDoc(topDocs.scoreDocs[1], 3, 1f / 64 + 1f / 62);
+    assertDoc(topDocs.scoreDocs[2], 0, 1f / 61);
+    assertDoc(topDocs.scoreDocs[3], 2, 1f / 63);
+  }
+
+  @Test
+  public void assertExplainSumsWeightedNormalizedScores() throws IOException {
+    TopDocs topDocs = firstPass();
+    FusionRescorer.FusionRescoreContext context = context(1f, 2f);
+    context.setExplain(true);
+    FusionRescorer.INSTANCE.rescore(topDocs, searcher, context);
+
+    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+      Explanation explanation =
+          FusionRescorer.INSTANCE.explain(
+              scoreDoc.doc, searcher, context, Explanation.match(1f, "first pass"));
+      Assert.assertEquals(scoreDoc.score, explanation.getValue().floatValue(), 0.0f);
+    }
+    // doc 0 gets its whole score from the first pass, it does not match "red"
+    Explanation explanation =
+        FusionRescorer.INSTANCE.explain(0, searcher, context, Explanation.match(4f, "first pass"));
+    Assert.assertEquals(1f + 1f / 3, explanation.getDetails()[0].getValue().floatValue(), 1e-6f);
+    Assert.assertFalse(explanation.getDetails()[1].isMatch());
+  }
+
+  @Test
+  public void assertExplainWithoutRescore() throws IOException {
+    Explanation source = Explanation.match(4f, "first pass");
+    Explanation explanation =
+        FusionRescorer.INSTANCE.explain(0, searcher, context(1f, 2f), source);
+    Assert.assertEquals(4f, explanation.getValue().floatValue(), 0.0f);
+  }
+
+  @Test
+  public void assertParse() throws IOException {
+    String json =
+        "{\"queries\":[{\"name\":\"lexical\",\"query\":{\"match\":{\"title\":\"red\"}},"
+            + "\"weight\":0.7},{\"name\":\"recency\",\"query\":{\"match_all\":{}}}],"
+            + "\"query_weight\":0.5,\"normalizer_type\":\"z_score\"}";
+    FusionRescorerBuilder builder = parse(json);
+    Assert.assertEquals(2, builder.getQueries().size());
+    Assert.assertEquals(0.7f, builder.getQueries().get(0).getWeight(), 0.0f);
+    Assert.assertEquals(1f, builder.getQueries().get(1).getWeight(), 0.0f);
+    Assert.assertEquals(
+        QueryBuilders.matchQuery("title", "red"), builder.getQueries().get(0).getQuery());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertQueriesRequired() throws IOException {
+    parse("{\"query_weight\":1}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertDuplicateNamesRejected() throws IOException {
+    parse(
+        "{\"queries\":[{\"name\":\"a\",\"query\":{\"match_all\":{}}},"
+            + "{\"name\":\"a\",\"query\":{\"match_all\":{}}}]}");
+  }
+
+  private static TopDocs firstPass() {
+    ScoreDoc[] scoreDocs = {
+      new ScoreDoc(0, 4f), new ScoreDoc(1, 3f), new ScoreDoc(2, 2f), new ScoreDoc(3, 1f)
+    };
+    return new TopDocs(new TotalHits(4, TotalHits.Relation.EQUAL_TO), scoreDocs);
+  }
+
+  private static FusionRescorer.FusionRescoreContext context(float queryWeight, float weight) {
+    return context(
+        queryWeight,
+        weight,
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            4,
+            NormalizerType.min_max,
+            0,
+            1,
+            0,
+            NormalizerFactorMathOp.sum,
+            MinMaxSameScoreStrategy.avg));
+  }
+
+  private static FusionRescorer.FusionRescoreContext context(
+      float queryWeight,
+      float weight,
+      ScoreNormalizerRescorer.ScoreNormalizerRescorerContext normalization) {
+    return new FusionRescorer.FusionRescoreContext(
+        4,
+        Collections.singletonList(
+            new WeightedQuery("red", QueryBuilders.termQuery("title", "red"), weight)),
+        new Query[] {new TermQuery(new Term("title", "red"))},
+        queryWeight,
+        normalization);
+  }
+
+  private static void assertDoc(ScoreDoc scoreDoc, int doc, float score) {
+    Assert.assertEquals(doc, scoreDoc.doc);
+    Assert.assertEquals(score, scoreDoc.score, 1e-5f);
+  }
+
+  private static Document doc(String title) {
+    Document document = new Document();
+    document.add(new TextField("title", title, Field.Store.NO));
+    return document;
+  }
+
+  private static FusionRescorerBuilder parse(String json) throws IOException {
+    NamedXContentRegistry registry =
+        new NamedXContentRegistry(
+            new SearchModule(Settings.EMPTY, false, Collections.emptyList()).getNamedXContents());
+    try (XContentParser parser =
+        JsonXContent.jsonXContent.createParser(
+            registry, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+      return FusionRescorerBuilder.fromXContent(parser);
+    }
+  }
+}
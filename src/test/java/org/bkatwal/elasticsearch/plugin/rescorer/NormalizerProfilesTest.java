@@ -0,0 +1,150 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class NormalizerProfilesTest {
+
+  private static final String AUTOCOMPLETE =
+      "{\"normalizer_type\":\"sigmoid\",\"temperature\":2,\"factor\":0.5,"
+          + "\"fields\":[{\"field\":\"popularity\",\"weight\":0.5,\"normalization\":\"log1p\"}]}";
+
+  @After
+  public void resetProfiles() {
+    NormalizerProfiles.init(null);
+  }
+
+  @Test
+  public void assertProfileResolved() throws IOException {
+    init(Settings.builder().put(NormalizerProfiles.PREFIX + "autocomplete", AUTOCOMPLETE).build());
+    NormalizerRescorerBuilder builder =
+        NormalizerRescorerBuilderTest.parse("{\"profile_id\":\"autocomplete\"}");
+    NormalizerRescorerBuilder expected = NormalizerRescorerBuilderTest.parse(AUTOCOMPLETE);
+
+    Assert.assertEquals("autocomplete", builder.getProfileId());
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) builder.buildContext(null);
+    Assert.assertEquals(NormalizerType.sigmoid, context.getNormalizerType());
+    Assert.assertEquals(2f, context.getTemperature(), 0f);
+    Assert.assertEquals(0.5f, context.getFactor(), 0f);
+    Assert.assertNotEquals(expected, builder);
+    Assert.assertEquals(
+        "{\"score_normalizer\":{\"profile_id\":\"autocomplete\"}}", Strings.toString(builder));
+  }
+
+  @Test
+  public void assertProfileSerializedResolved() throws IOException {
+    init(Settings.builder().put(NormalizerProfiles.PREFIX + "autocomplete", AUTOCOMPLETE).build());
+    NormalizerRescorerBuilder builder =
+        NormalizerRescorerBuilderTest.parse("{\"profile_id\":\"autocomplete\"}")
+            .setStatsCacheKey("key")
+            .windowSize(50);
+    BytesStreamOutput out = new BytesStreamOutput();
+    builder.writeTo(out);
+
+    // the profile changes before the shard reads the request, the shard still applies the
+    // options the coordinating node resolved
+    init(
+        Settings.builder()
+            .put(NormalizerProfiles.PREFIX + "autocomplete", "{\"normalizer_type\":\"min_max\"}")
+            .build());
+    NormalizerRescorerBuilder read = new NormalizerRescorerBuilder(out.bytes().streamInput());
+    Assert.assertEquals(builder, read);
+    Assert.assertEquals(builder.hashCode(), read.hashCode());
+    Assert.assertEquals("autocomplete", read.getProfileId());
+    Assert.assertEquals(NormalizerType.sigmoid, read.getNormalizerType());
+    Assert.assertEquals("key", read.getStatsCacheKey());
+
+    NormalizerProfiles.init(null);
+    Assert.assertEquals(builder, new NormalizerRescorerBuilder(out.bytes().streamInput()));
+  }
+
+  @Test
+  public void assertProfilesFollowClusterSettings() throws IOException {
+    ClusterSettings clusterSettings = init(Settings.EMPTY);
+    assertRejected("{\"profile_id\":\"autocomplete\"}");
+
+    clusterSettings.applySettings(
+        Settings.builder().put(NormalizerProfiles.PREFIX + "autocomplete", AUTOCOMPLETE).build());
+    Assert.assertEquals(
+        NormalizerType.sigmoid,
+        NormalizerRescorerBuilderTest.parse("{\"profile_id\":\"autocomplete\"}")
+            .getNormalizerType());
+    Assert.assertEquals(
+        Collections.singletonMap("autocomplete", AUTOCOMPLETE),
+        NormalizerProfiles.getInstance().getBodies());
+
+    clusterSettings.applySettings(Settings.EMPTY);
+    Assert.assertTrue(NormalizerProfiles.getInstance().getBodies().isEmpty());
+    assertRejected("{\"profile_id\":\"autocomplete\"}");
+  }
+
+  @Test
+  public void assertInvalidProfilesRejected() throws IOException {
+    init(Settings.builder().put(NormalizerProfiles.PREFIX + "autocomplete", AUTOCOMPLETE).build());
+    assertRejected("{\"profile_id\":\"autocomplete\",\"normalizer_type\":\"min_max\"}");
+    Setting<String> setting =
+        NormalizerProfiles.PROFILES.getConcreteSetting(NormalizerProfiles.PREFIX + "broken");
+    for (String body :
+        new String[] {
+          "{\"normalizer_type\":\"rrf\",\"rank_constant\":0}",
+          "{\"profile_id\":\"autocomplete\"}",
+          "{\"normalizer_type\":"
+        }) {
+      try {
+        setting.get(Settings.builder().put(setting.getKey(), body).build());
+        Assert.fail("expected profile [" + body + "] to be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  private static ClusterSettings init(Settings settings) {
+    ClusterSettings clusterSettings =
+        new ClusterSettings(settings, Collections.singleton(NormalizerProfiles.PROFILES));
+    NormalizerProfiles.init(new NormalizerProfiles(settings, clusterSettings));
+    return clusterSettings;
+  }
+
+  private static void assertRejected(String json) throws IOException {
+    try {
+      NormalizerRescorerBuilderTest.parse(json);
+      Assert.fail("expected [" + json + "] to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class NormalizerRescorerBuilderTest {
+
+  private static final String FIELDS =
+      "{\"normalizer_type\":\"min_max\",\"fields\":["
+          + "{\"field\":\"popularity\",\"weight\":0.5,\"normalization\":\"log1p\","
+          + "\"missing\":1},{\"field\":\"recency\"}]}";
+  private static final String PIPELINE =
+      "{\"normalizer_type\":\"pipeline\",\"pipeline\":[{\"type\":\"log1p\"},"
+          + "{\"type\":\"z_score\"},{\"type\":\"sigmoid\",\"temperature\":2}]}";
+
+  @Test
+  public void assertParseResolvesModes() throws IOException {
+    NormalizerRescorerBuilder builder =
+        parse(
+            "{\"normalizer_type\":\"min_max\",\"min_score\":2,\"max_score\":8,"
+                + "\"factor\":3,\"factor_mode\":\"multiply\",\"on_score_same\":\"max\"}");
+
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) builder.buildContext(null);
+    Assert.assertEquals(NormalizerType.min_max, context.getNormalizerType());
+    Assert.assertEquals(NormalizerFactorMathOp.multiply, context.getFactorMode());
+    Assert.assertEquals(MinMaxSameScoreStrategy.max, context.getOnScoresSame());
+    Assert.assertEquals(8f, context.getSameScore(), 0.0f);
+    Assert.assertEquals(6f, context.getKernel().apply(2f), 0.0f);
+  }
+
+  @Test
+  public void assertDefaults() throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) parse("{}").buildContext(null);
+    Assert.assertEquals(NormalizerType.z_score, context.getNormalizerType());
+    Assert.assertEquals(NormalizerFactorMathOp.increase_by_percent, context.getFactorMode());
+    Assert.assertEquals(MinMaxSameScoreStrategy.avg, context.getOnScoresSame());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertInvalidNormalizerTypeRejected() throws IOException {
+    parse("{\"normalizer_type\":\"foo\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertInvalidFactorModeRejected() throws IOException {
+    parse("{\"factor_mode\":\"divide\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertInvalidOnScoreSameRejected() throws IOException {
+    parse("{\"on_score_same\":\"median\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertIncreaseByPercentFactorRangeRejected() throws IOException {
+    parse("{\"factor\":1.5,\"factor_mode\":\"increase_by_percent\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertMinMaxRangeRejected() throws IOException {
+    parse("{\"normalizer_type\":\"min_max\",\"min_score\":5,\"max_score\":5}");
+  }
+
+  @Test
+  public void assertRankConstant() throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext)
+            parse("{\"normalizer_type\":\"rrf\",\"rank_constant\":20}").buildContext(null);
+    Assert.assertEquals(NormalizerType.rrf, context.getNormalizerType());
+    Assert.assertEquals(20f, context.getRankConstant(), 0.0f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertRankConstantRangeRejected() throws IOException {
+    parse("{\"normalizer_type\":\"rrf\",\"rank_constant\":0}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertGlobalRrfRejected() throws IOException {
+    parse("{\"normalizer_type\":\"rrf\",\"scope\":\"global\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertCachedRrfRejected() throws IOException {
+    parse("{\"normalizer_type\":\"rrf\",\"cache_stats\":true}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertCoordinatorScopeRejectsCacheStats() throws IOException {
+    parse(
+        "{\"normalizer_type\":\"min_max\",\"scope\":\"coordinator\",\"cache_stats\":true}");
+  }
+
+  @Test
+  public void assertClipQuantile() throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext)
+            parse("{\"normalizer_type\":\"min_max\",\"clip_quantile\":0.05}")
+                .buildContext(null);
+    Assert.assertEquals(0.05f, context.getClipQuantile(), 0.0f);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertClipQuantileRangeRejected() throws IOException {
+    parse("{\"normalizer_type\":\"min_max\",\"clip_quantile\":0.5}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertClipQuantileOnlyForMinMax() throws IOException {
+    parse("{\"normalizer_type\":\"z_score\",\"clip_quantile\":0.05}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertGlobalPercentileRejected() throws IOException {
+    parse("{\"normalizer_type\":\"percentile\",\"scope\":\"global\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertWinsorizeOnlyForRobustZ() throws IOException {
+    parse("{\"normalizer_type\":\"z_score\",\"winsorize\":3}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertTemperatureRangeRejected() throws IOException {
+    parse("{\"normalizer_type\":\"softmax\",\"temperature\":0}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertFastExpOnlyForExpNormalizers() throws IOException {
+    parse("{\"normalizer_type\":\"z_score\",\"fast_exp\":true}");
+  }
+
+  @Test
+  public void assertSerializationOfDefaults() throws IOException {
+    NormalizerRescorerBuilder builder = parse("{}");
+    BytesStreamOutput out = new BytesStreamOutput();
+    builder.writeTo(out);
+    // window size, wire version, normalizer type and an empty field mask
+    Assert.assertEquals(4, out.size());
+    NormalizerRescorerBuilder read = new NormalizerRescorerBuilder(out.bytes().streamInput());
+    Assert.assertEquals(builder, read);
+    Assert.assertEquals(builder.hashCode(), read.hashCode());
+  }
+
+  @Test
+  public void assertSerialization() throws IOException {
+    NormalizerRescorerBuilder builder =
+        parse(
+            "{\"normalizer_type\":\"min_max\",\"min_score\":0,\"max_score\":1,"
+                + "\"factor\":2,\"factor_mode\":\"sum\",\"on_score_same\":\"min\","
+                + "\"scope\":\"global\",\"cache_stats\":false}")
+            .setGlobalStats(ScoreStats.of(new float[] {1f, 3f}, 2))
+            .setStatsCacheKey("key")
+            .windowSize(50);
+    assertSerialization(builder);
+    assertSerialization(
+        parse("{\"normalizer_type\":\"softmax\",\"temperature\":2,\"fast_exp\":true}"));
+    assertSerialization(parse("{\"normalizer_type\":\"robust_z\",\"winsorize\":3}"));
+    assertSerialization(
+        parse("{\"normalizer_type\":\"min_max\",\"clip_quantile\":0.1,\"cache_stats\":false}"));
+    assertSerialization(parse("{\"normalizer_type\":\"rrf\",\"rank_constant\":10}"));
+    assertSerialization(parse("{\"normalizer_type\":\"z_score\",\"cache_stats\":true}"));
+    assertSerialization(parse(FIELDS));
+    assertSerialization(parse(PIPELINE));
+    assertSerialization(
+        parse("{\"normalizer_type\":\"z_score\",\"static_stats\":\"autocomplete\"}"));
+  }
+
+  @Test
+  public void assertStatsSource() throws IOException {
+    NormalizerRescorerBuilder builder =
+        parse("{\"normalizer_type\":\"percentile\",\"stats_source\":\"all_hits\"}");
+    Assert.assertEquals(StatsSource.all_hits, builder.getStatsSource());
+    Assert.assertEquals(
+        StatsSource.all_hits,
+        ((ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) builder.buildContext(null))
+            .getStatsSource());
+    Assert.assertEquals(StatsSource.window, parse("{}").getStatsSource());
+    assertSerialization(builder);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertAllHitsOfRankNormalizerRejected() throws IOException {
+    parse("{\"normalizer_type\":\"rrf\",\"stats_source\":\"all_hits\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertAllHitsWithGlobalScopeRejected() throws IOException {
+    parse(
+        "{\"normalizer_type\":\"z_score\",\"stats_source\":\"all_hits\","
+            + "\"scope\":\"global\"}");
+  }
+
+  @Test
+  public void assertStaticStats() throws IOException {
+    NormalizerRescorerBuilder builder =
+        parse("{\"normalizer_type\":\"sigmoid\",\"static_stats\":\"autocomplete\"}");
+    Assert.assertEquals("autocomplete", builder.getStaticStats());
+    Assert.assertNotEquals(builder, parse("{\"normalizer_type\":\"sigmoid\"}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertStaticStatsOfRankNormalizerRejected() throws IOException {
+    parse("{\"normalizer_type\":\"percentile\",\"static_stats\":\"autocomplete\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertStaticStatsWithCacheStatsRejected() throws IOException {
+    parse(
+        "{\"normalizer_type\":\"min_max\",\"static_stats\":\"autocomplete\","
+            + "\"cache_stats\":true}");
+  }
+
+  @Test
+  public void assertPipeline() throws IOException {
+    NormalizerRescorerBuilder builder = parse(PIPELINE);
+    Assert.assertEquals(
+        Arrays.asList(
+            new PipelineStage(PipelineStage.Type.log1p),
+            new PipelineStage(PipelineStage.Type.z_score),
+            new PipelineStage(PipelineStage.Type.sigmoid, 0, 1, 2f)),
+        builder.getPipeline());
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        (ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) builder.buildContext(null);
+    Assert.assertEquals(3, context.getPipeline().getStages().length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertPipelineRequiresPipelineType() throws IOException {
+    parse("{\"normalizer_type\":\"z_score\",\"pipeline\":[{\"type\":\"log1p\"}]}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertPipelineTypeRequiresStages() throws IOException {
+    parse("{\"normalizer_type\":\"pipeline\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertStageOptionsOfOtherStagesRejected() throws IOException {
+    parse(
+        "{\"normalizer_type\":\"pipeline\","
+            + "\"pipeline\":[{\"type\":\"z_score\",\"temperature\":2}]}");
+  }
+
+  @Test
+  public void assertFields() throws IOException {
+    NormalizerRescorerBuilder builder = parse(FIELDS);
+    Assert.assertEquals(
+        Arrays.asList(
+            new WeightedField("popularity", 0.5f, FieldNormalization.log1p, 1f),
+            new WeightedField("recency", 1f)),
+        builder.getFields());
+    Assert.assertNotNull(
+        ((ScoreNormalizerRescorer.ScoreNormalizerRescorerContext) builder.buildContext(null))
+            .getFieldBlender());
+    Assert.assertNotEquals(builder, parse("{\"normalizer_type\":\"min_max\"}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void assertInvalidFieldNormalizationRejected() throws IOException {
+    parse("{\"fields\":[{\"field\":\"popularity\",\"normalization\":\"log\"}]}");
+  }
+
+  @Test
+  public void assertEqualsAndHashCode() throws IOException {
+    NormalizerRescorerBuilder builder = parse("{\"normalizer_type\":\"sigmoid\"}");
+    NormalizerRescorerBuilder same = parse("{\"normalizer_type\":\"sigmoid\"}");
+    Assert.assertEquals(builder, same);
+    Assert.assertEquals(builder.hashCode(), same.hashCode());
+    Assert.assertNotEquals(builder, parse("{\"normalizer_type\":\"sigmoid\",\"temperature\":2}"));
+    Assert.assertNotEquals(builder, parse("{\"normalizer_type\":\"sigmoid\"}").windowSize(20));
+    Assert.assertNotEquals(
+        builder, parse("{\"normalizer_type\":\"sigmoid\"}").setStatsCacheKey("key"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void assertUnknownWireVersionRejected() throws IOException {
+    BytesStreamOutput out = new BytesStreamOutput();
+    out.writeOptionalVInt(null);
+    out.writeVInt(Integer.MAX_VALUE);
+    new NormalizerRescorerBuilder(out.bytes().streamInput());
+  }
+
+  private static void assertSerialization(NormalizerRescorerBuilder builder) throws IOException {
+    BytesStreamOutput out = new BytesStreamOutput();
+    builder.writeTo(out);
+    NormalizerRescorerBuilder read = new NormalizerRescorerBuilder(out.bytes().streamInput());
+    Assert.assertEquals(builder, read);
+    Assert.assertEquals(builder.hashCode(), read.hashCode());
+    Assert.assertEquals(Strings.toString(builder), Strings.toString(read));
+  }
+
+  static NormalizerRescorerBuilder parse(String json) throws IOException {
+    try (XContentParser parser =
+        JsonXContent.jsonXContent.createParser(
+            NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+      return NormalizerRescorerBuilder.fromXContent(parser);
+    }
+  }
+}
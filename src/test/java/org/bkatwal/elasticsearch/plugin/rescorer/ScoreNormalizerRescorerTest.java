@@ -0,0 +1,168 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.rescorer;
+
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures;
+import org.bkatwal.elasticsearch.plugin.helper.NormalizerPipeline;
+import org.bkatwal.elasticsearch.plugin.helper.ScoreStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures.topDocs;
+
+public class ScoreNormalizerRescorerTest {
+
+  private static final float[] SCORES = {4.5f, 1.25f, 9f, 4.5f, 0.5f, 7.75f, 3f, 4.5f, 2f};
+
+  @Test
+  public void assertExplainMatchesRescore() throws IOException {
+    for (NormalizerType normalizerType : NormalizerType.values()) {
+      for (NormalizerFactorMathOp factorMode : NormalizerFactorMathOp.values()) {
+        assertExplain(normalizerType, factorMode, SCORES, context -> {});
+      }
+    }
+  }
+
+  @Test
+  public void assertExplainMatchesRescoreWithOptions() throws IOException {
+    NormalizerFactorMathOp factorMode = NormalizerFactorMathOp.increase_by_percent;
+    assertExplain(NormalizerType.min_max, factorMode, SCORES, c -> c.setClipQuantile(0.2f));
+    assertExplain(NormalizerType.robust_z, factorMode, SCORES, c -> c.setWinsorize(0.5f));
+    assertExplain(NormalizerType.sigmoid, factorMode, SCORES, c -> c.setFastExp(true));
+    assertExplain(NormalizerType.softmax, factorMode, SCORES, c -> c.setTemperature(2f));
+    // a window sorted by score takes the fast path of rrf
+    assertExplain(NormalizerType.rrf, factorMode, new float[] {5f, 3f, 3f, 1f}, c -> {});
+  }
+
+  @Test
+  public void assertExplainSameScores() throws IOException {
+    for (NormalizerType normalizerType : NormalizerType.values()) {
+      assertExplain(
+          normalizerType,
+          NormalizerFactorMathOp.increase_by_percent,
+          new float[] {2f, 2f, 2f},
+          context -> {});
+      assertExplain(
+          normalizerType, NormalizerFactorMathOp.multiply, new float[] {2f}, context -> {});
+    }
+  }
+
+  @Test
+  public void assertStaticStatsNormalizeRequestedPageOnly() throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        context(NormalizerType.z_score, NormalizerFactorMathOp.sum);
+    context.setStaticStats("autocomplete", ScoreStats.registered(4, 2, 0, 10));
+    context.setPageSize(3);
+    context.setExplain(true);
+    float[] scores = {9f, 7.75f, 4.5f, 3f, 2f, 0.5f};
+    TopDocs topDocs = ScoreNormalizerRescorer.INSTANCE.rescore(topDocs(scores), null, context);
+
+    Assert.assertEquals(3, topDocs.scoreDocs.length);
+    for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+      Assert.assertEquals((scores[i] - 4f) / 2f + 0.5f, topDocs.scoreDocs[i].score, 1e-6f);
+      Explanation explanation =
+          ScoreNormalizerRescorer.INSTANCE.explain(
+              i, null, context, Explanation.match(scores[i], "query"));
+      Assert.assertEquals(
+          topDocs.scoreDocs[i].score, explanation.getValue().floatValue(), 0f);
+    }
+
+    // a negative factor flips the order, the docs behind the page could move onto it
+    context =
+        NormalizerFixtures.context(
+            10, NormalizerType.z_score, 0, 1, -1f, NormalizerFactorMathOp.multiply);
+    context.setStaticStats("autocomplete", ScoreStats.registered(4, 2, 0, 10));
+    context.setPageSize(3);
+    TopDocs window = topDocs(scores);
+    Assert.assertSame(window, context.page(window));
+  }
+
+  @Test
+  public void assertExplainWithoutRescore() throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        context(NormalizerType.min_max, NormalizerFactorMathOp.sum);
+    Explanation source = Explanation.match(2f, "query");
+    Explanation explanation = ScoreNormalizerRescorer.INSTANCE.explain(0, null, context, source);
+    Assert.assertEquals(2f, explanation.getValue().floatValue(), 0f);
+  }
+
+  private static void assertExplain(
+      NormalizerType normalizerType,
+      NormalizerFactorMathOp factorMode,
+      float[] scores,
+      Consumer<ScoreNormalizerRescorer.ScoreNormalizerRescorerContext> options)
+      throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        context(normalizerType, factorMode);
+    options.accept(context);
+    context.setExplain(true);
+    ScoreDoc[] scoreDocs = new ScoreDoc[scores.length];
+    for (int i = 0; i < scores.length; i++) {
+      scoreDocs[i] = new ScoreDoc(i * 3, scores[i]);
+    }
+    TopDocs topDocs =
+        ScoreNormalizerRescorer.INSTANCE.rescore(
+            new TopDocs(new TotalHits(scores.length, TotalHits.Relation.EQUAL_TO), scoreDocs),
+            null,
+            context);
+
+    for (int i = 0; i < scores.length; i++) {
+      Explanation explanation =
+          ScoreNormalizerRescorer.INSTANCE.explain(
+              i * 3, null, context, Explanation.match(scores[i], "query"));
+      Assert.assertEquals(
+          normalizerType + " " + factorMode + "\n" + explanation,
+          topDocs.scoreDocs[i].score,
+          explanation.getValue().floatValue(),
+          0f);
+    }
+    Explanation outside =
+        ScoreNormalizerRescorer.INSTANCE.explain(1, null, context, Explanation.match(1f, "query"));
+    Assert.assertNotNull(outside);
+  }
+
+  private static ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context(
+      NormalizerType normalizerType, NormalizerFactorMathOp factorMode) {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        NormalizerFixtures.context(10, normalizerType, 0, 1, 0.5f, factorMode);
+    if (normalizerType == NormalizerType.pipeline) {
+      context.setPipeline(
+          new NormalizerPipeline(
+              Arrays.asList(
+                  new PipelineStage(PipelineStage.Type.log1p),
+                  new PipelineStage(PipelineStage.Type.z_score),
+                  new PipelineStage(PipelineStage.Type.sigmoid, 0, 1, 2f),
+                  new PipelineStage(PipelineStage.Type.min_max, -1, 1, 1f))));
+    }
+    return context;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.bkatwal.elasticsearch.plugin.helper.NormalizerFixtures;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerProfiles;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerRescorerBuilder;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class ScoreNormalizerMetricsTest {
+
+  @Test
+  public void assertHistogramBuckets() {
+    ScoreNormalizerMetrics metrics = new ScoreNormalizerMetrics();
+    metrics.onRescore(NormalizerType.min_max, 10, 10_000, false);
+    metrics.onRescore(NormalizerType.min_max, 11, 10_001, true);
+    metrics.onRescore(NormalizerType.min_max, 50_000, 1_000_000_000, false);
+
+    NormalizerTypeStats stats = metrics.stats().get(NormalizerType.min_max.ordinal());
+    Assert.assertEquals(NormalizerType.min_max, stats.getNormalizerType());
+    Assert.assertEquals(3, stats.getInvocations());
+    Assert.assertEquals(50_021, stats.getDocs());
+    Assert.assertEquals(1_000_020_001, stats.getTimeInNanos());
+    Assert.assertEquals(1, stats.getSameScoreFallbacks());
+    Assert.assertArrayEquals(new long[] {1, 1, 0, 0, 1}, stats.getWindowSizes());
+    Assert.assertArrayEquals(new long[] {1, 1, 0, 0, 0, 0, 0, 0, 0, 1}, stats.getLatencies());
+    Assert.assertEquals(0, metrics.stats().get(NormalizerType.z_score.ordinal()).getInvocations());
+  }
+
+  @Test
+  public void assertSerialization() throws IOException {
+    ScoreNormalizerMetrics metrics = new ScoreNormalizerMetrics();
+    metrics.onRescore(NormalizerType.rrf, 100, 20_000, false);
+    metrics.onValidationFailure(NormalizerType.rrf);
+    NormalizerTypeStats stats = metrics.stats().get(NormalizerType.rrf.ordinal());
+
+    BytesStreamOutput out = new BytesStreamOutput();
+    stats.writeTo(out);
+    StreamInput in = out.bytes().streamInput();
+    NormalizerTypeStats read = new NormalizerTypeStats(in);
+    Assert.assertEquals(Strings.toString(stats, false, false), Strings.toString(read));
+    Assert.assertEquals(
+        "{\"rrf\":{\"invocations\":1,\"docs\":100,\"time_in_nanos\":20000,"
+            + "\"same_score_fallbacks\":0,\"validation_failures\":1,"
+            + "\"window_size\":{\"10\":0,\"100\":1,\"1000\":0,\"10000\":0,\"+Inf\":0},"
+            + "\"latency_micros\":{\"10\":0,\"50\":1,\"100\":0,\"500\":0,\"1000\":0,"
+            + "\"5000\":0,\"10000\":0,\"50000\":0,\"100000\":0,\"+Inf\":0}}}",
+        Strings.toString(read));
+  }
+
+  @Test
+  public void assertRescoreRecorded() throws IOException {
+    NormalizerTypeStats before = typeStats(NormalizerType.percentile);
+    ScoreDoc[] scoreDocs = {new ScoreDoc(0, 2f), new ScoreDoc(1, 2f)};
+    ScoreNormalizerRescorer.INSTANCE.rescore(
+        new TopDocs(new TotalHits(2, TotalHits.Relation.EQUAL_TO), scoreDocs),
+        null,
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            10,
+            NormalizerType.percentile,
+            1,
+            5,
+            0,
+            NormalizerFactorMathOp.sum,
+            MinMaxSameScoreStrategy.avg));
+
+    NormalizerTypeStats after = typeStats(NormalizerType.percentile);
+    Assert.assertEquals(1, after.getInvocations() - before.getInvocations());
+    Assert.assertEquals(2, after.getDocs() - before.getDocs());
+    Assert.assertEquals(1, after.getSameScoreFallbacks() - before.getSameScoreFallbacks());
+  }
+
+  @Test
+  public void assertValidationFailureRecorded() throws IOException {
+    NormalizerTypeStats before = typeStats(NormalizerType.min_max);
+    try (XContentParser parser =
+        JsonXContent.jsonXContent.createParser(
+            NamedXContentRegistry.EMPTY,
+            DeprecationHandler.THROW_UNSUPPORTED_OPERATION,
+            "{\"normalizer_type\":\"min_max\",\"min_score\":5,\"max_score\":1}")) {
+      NormalizerRescorerBuilder.fromXContent(parser);
+      Assert.fail("expected the inverted range to be rejected");
+    } catch (IllegalArgumentException e) {
+      NormalizerTypeStats after = typeStats(NormalizerType.min_max);
+      Assert.assertEquals(1, after.getValidationFailures() - before.getValidationFailures());
+    }
+  }
+
+  @Test
+  public void assertUnknownTypeNotRecorded() throws IOException {
+    long before = validationFailures();
+    try (XContentParser parser =
+        JsonXContent.jsonXContent.createParser(
+            NamedXContentRegistry.EMPTY,
+            DeprecationHandler.THROW_UNSUPPORTED_OPERATION,
+            "{\"normalizer_type\":\"l2\"}")) {
+      NormalizerRescorerBuilder.fromXContent(parser);
+      Assert.fail("expected the unknown type to be rejected");
+    } catch (IllegalArgumentException e) {
+      // not counted against the default z_score or any other type
+      Assert.assertEquals(before, validationFailures());
+    }
+  }
+
+  @Test
+  public void assertMergedHitsNotRecorded() throws IOException {
+    NormalizerTypeStats before = typeStats(NormalizerType.softmax);
+    ScoreNormalizerRescorer.normalizeMerged(
+        NormalizerFixtures.topDocs(3f, 2f, 1f),
+        NormalizerFixtures.context(NormalizerType.softmax));
+
+    NormalizerTypeStats after = typeStats(NormalizerType.softmax);
+    Assert.assertEquals(before.getInvocations(), after.getInvocations());
+    Assert.assertEquals(before.getDocs(), after.getDocs());
+  }
+
+  @Test
+  public void assertRejectedProfileNotRecorded() {
+    NormalizerTypeStats before = typeStats(NormalizerType.min_max);
+    try {
+      NormalizerProfiles.parse("{\"normalizer_type\":\"min_max\",\"min_score\":5,\"max_score\":1}");
+      Assert.fail("expected the inverted range to be rejected");
+    } catch (IllegalArgumentException e) {
+      NormalizerTypeStats after = typeStats(NormalizerType.min_max);
+      Assert.assertEquals(before.getValidationFailures(), after.getValidationFailures());
+    }
+  }
+
+  private static long validationFailures() {
+    long validationFailures = 0;
+    for (NormalizerTypeStats stats : ScoreNormalizerMetrics.INSTANCE.stats()) {
+      validationFailures += stats.getValidationFailures();
+    }
+    return validationFailures;
+  }
+
+  private static NormalizerTypeStats typeStats(NormalizerType normalizerType) {
+    return ScoreNormalizerMetrics.INSTANCE.stats().get(normalizerType.ordinal());
+  }
+}
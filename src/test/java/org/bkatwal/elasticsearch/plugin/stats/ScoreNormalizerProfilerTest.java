@@ -0,0 +1,76 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.bkatwal.elasticsearch.plugin.rescorer.MinMaxSameScoreStrategy;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerFactorMathOp;
+import org.bkatwal.elasticsearch.plugin.rescorer.NormalizerType;
+import org.bkatwal.elasticsearch.plugin.rescorer.ScoreNormalizerRescorer;
+import org.elasticsearch.search.profile.ProfileResult;
+import org.elasticsearch.search.profile.query.QueryProfiler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class ScoreNormalizerProfilerTest {
+
+  @Test
+  public void assertPhasesProfiled() throws IOException {
+    ScoreNormalizerRescorer.ScoreNormalizerRescorerContext context =
+        new ScoreNormalizerRescorer.ScoreNormalizerRescorerContext(
+            3,
+            NormalizerType.min_max,
+            0,
+            1,
+            1,
+            NormalizerFactorMathOp.increase_by_percent,
+            MinMaxSameScoreStrategy.avg);
+    QueryProfiler queryProfiler = new QueryProfiler();
+    context.setProfiler(new ScoreNormalizerProfiler(() -> queryProfiler));
+    ScoreDoc[] scoreDocs = {new ScoreDoc(0, 3f), new ScoreDoc(1, 2f), new ScoreDoc(2, 1f)};
+    ScoreNormalizerRescorer.INSTANCE.rescore(
+        new TopDocs(new TotalHits(3, TotalHits.Relation.EQUAL_TO), scoreDocs), null, context);
+
+    List<ProfileResult> tree = queryProfiler.getTree();
+    Assert.assertEquals(1, tree.size());
+    ProfileResult rescore = tree.get(0);
+    Assert.assertEquals("ScoreNormalizerPhase", rescore.getQueryName());
+    Assert.assertTrue(
+        rescore.getLuceneDescription(),
+        rescore
+            .getLuceneDescription()
+            .startsWith("score_normalizer(normalizer_type=min_max, window_size=3,"));
+    Assert.assertEquals(1L, (long) rescore.getTimeBreakdown().get("score_count"));
+    List<ProfileResult> phases = rescore.getProfiledChildren();
+    Assert.assertEquals(2, phases.size());
+    Assert.assertEquals(ScoreNormalizerProfiler.STATISTICS, phases.get(0).getLuceneDescription());
+    Assert.assertEquals(ScoreNormalizerProfiler.KERNEL, phases.get(1).getLuceneDescription());
+    Assert.assertTrue(rescore.getTime() >= phases.get(0).getTime() + phases.get(1).getTime());
+  }
+}
@@ -0,0 +1,70 @@
+/*
+The MIT License (MIT)
+
+Copyright (c) Bikas Katwal - bikas.katwal10@gmail.com
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+ */
+package org.bkatwal.elasticsearch.plugin.stats;
+
+import org.apache.logging.log4j.Level;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.Index;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScoreNormalizerSlowLogTest {
+
+  private static final Index INDEX = new Index("test", "_na_");
+
+  @Test
+  public void assertThresholdsOffByDefault() {
+    ScoreNormalizerSlowLog slowLog = new ScoreNormalizerSlowLog(INDEX, Settings.EMPTY);
+    Assert.assertEquals(Long.MAX_VALUE, slowLog.getMinThreshold());
+    Assert.assertNull(slowLog.level(Long.MAX_VALUE - 1));
+  }
+
+  @Test
+  public void assertLevelSelection() {
+    Settings settings =
+        Settings.builder()
+            .put(ScoreNormalizerSlowLog.THRESHOLD_WARN.getKey(), "10ms")
+            .put(ScoreNormalizerSlowLog.THRESHOLD_INFO.getKey(), "1ms")
+            .put(ScoreNormalizerSlowLog.THRESHOLD_TRACE.getKey(), "100micros")
+            .build();
+    ScoreNormalizerSlowLog slowLog = new ScoreNormalizerSlowLog(INDEX, settings);
+    Assert.assertEquals(100_000, slowLog.getMinThreshold());
+    Assert.assertNull(slowLog.level(99_999));
+    Assert.assertEquals(Level.TRACE, slowLog.level(100_000));
+    Assert.assertEquals(Level.TRACE, slowLog.level(999_999));
+    Assert.assertEquals(Level.INFO, slowLog.level(1_000_000));
+    Assert.assertEquals(Level.WARN, slowLog.level(10_000_000));
+  }
+
+  @Test
+  public void assertDynamicUpdate() {
+    ScoreNormalizerSlowLog slowLog = new ScoreNormalizerSlowLog(INDEX, Settings.EMPTY);
+    slowLog.setDebugThreshold(TimeValue.timeValueMillis(2));
+    Assert.assertEquals(2_000_000, slowLog.getMinThreshold());
+    Assert.assertEquals(Level.DEBUG, slowLog.level(2_000_000));
+    slowLog.setDebugThreshold(TimeValue.timeValueMillis(-1));
+    Assert.assertEquals(Long.MAX_VALUE, slowLog.getMinThreshold());
+  }
+}